@@ -17,6 +17,7 @@ package one.util.huntbugs.ant;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.ConnectException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.jar.JarFile;
@@ -28,6 +29,8 @@ import javax.xml.parsers.ParserConfigurationException;
 import one.util.huntbugs.analysis.AnalysisOptions;
 import one.util.huntbugs.analysis.Context;
 import one.util.huntbugs.analysis.HuntBugsResult;
+import one.util.huntbugs.daemon.AnalysisJob;
+import one.util.huntbugs.daemon.DaemonClient;
 import one.util.huntbugs.input.XmlReportReader;
 import one.util.huntbugs.output.Reports;
 import one.util.huntbugs.repo.AuxRepository;
@@ -64,16 +67,20 @@ public class HuntBugsTask extends Task {
 	
 	private LogLevel log = LogLevel.VERBOSE; 
 	
+	private int daemonPort;
+	
 	@Override
 	public void execute() throws BuildException {
 		// Disable unwanted Procyon logging 
 		Logger.getLogger(Reifier.class.getSimpleName()).setLevel(Level.OFF);
 		
-		List<Repository> repos = createRepository();
 		if(xml == null && html == null) {
 			throw new BuildException("Either xml or html must be specified");
 		}
-		Repository repo = new CompositeRepository(repos);
+		if(daemonPort > 0 && analyzeInDaemon()) {
+			return;
+		}
+		Repository repo = new CompositeRepository(createRepository());
 		AnalysisOptions opt = new AnalysisOptions();
 		Context ctx = new Context(repo, opt);
 		if(log == LogLevel.VERBOSE)
@@ -92,6 +99,34 @@ public class HuntBugsTask extends Task {
 				: html.toPath(), result);
 	}
 
+	private boolean analyzeInDaemon() {
+		checkClassPath();
+		AnalysisJob job = new AnalysisJob();
+		for(String path : classPath.list()) {
+			job.addClassPath(new File(path).getAbsolutePath());
+		}
+		if(auxClassPath != null) {
+			for(String path : auxClassPath.list()) {
+				job.addAuxClassPath(new File(path).getAbsolutePath());
+			}
+		}
+		job.setXml(xml == null ? null : xml.getAbsolutePath());
+		job.setHtml(html == null ? null : html.getAbsolutePath());
+		job.setDiff(diff == null ? null : diff.getAbsolutePath());
+		try {
+			new DaemonClient(daemonPort).submit(job, msg -> {
+				if(log == LogLevel.VERBOSE)
+					System.err.println("HuntBugs: " + msg);
+			});
+		} catch (ConnectException e) {
+			System.err.println("HuntBugs: daemon is not running on port " + daemonPort + ", analyzing in-process");
+			return false;
+		} catch (IOException e) {
+			throw new BuildException(e);
+		}
+		return true;
+	}
+
 	private void addListener(Context ctx) {
 		long[] lastPrint = {0};
         ctx.addListener((stepName, className, count, total) -> {
@@ -103,10 +138,14 @@ public class HuntBugsTask extends Task {
         });
 	}
 
-	private List<Repository> createRepository() {
+	private void checkClassPath() {
 		if(classPath == null || classPath.size() == 0) {
 			throw new BuildException("Please specify classPath!");
 		}
+	}
+
+	private List<Repository> createRepository() {
+		checkClassPath();
 		List<Repository> repos = new ArrayList<>();
 		for(String path : classPath.list()) {
 			File file = new File(path);
@@ -172,4 +211,12 @@ public class HuntBugsTask extends Task {
 	public void setLog(LogLevel log) {
 		this.log = log;
 	}
+	
+	/**
+	 * @param daemonPort if positive, delegate the analysis to the HuntBugs
+	 *        daemon listening on this local port when it's running
+	 */
+	public void setDaemonPort(int daemonPort) {
+		this.daemonPort = daemonPort;
+	}
 }
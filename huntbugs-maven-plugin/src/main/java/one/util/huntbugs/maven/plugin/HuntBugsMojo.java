@@ -15,13 +15,12 @@
  */
 package one.util.huntbugs.maven.plugin;
 
-import com.strobel.assembler.metadata.ClasspathTypeLoader;
 import com.strobel.assembler.metadata.CompositeTypeLoader;
 import com.strobel.assembler.metadata.ITypeLoader;
-import com.strobel.assembler.metadata.JarTypeLoader;
-import one.util.huntbugs.analysis.AnalysisOptions;
 import one.util.huntbugs.analysis.Context;
 import one.util.huntbugs.analysis.HuntBugsResult;
+import one.util.huntbugs.daemon.AnalysisJob;
+import one.util.huntbugs.daemon.DaemonClient;
 import one.util.huntbugs.input.XmlReportReader;
 import one.util.huntbugs.output.Reports;
 import one.util.huntbugs.repo.AuxRepository;
@@ -49,12 +48,13 @@ import org.apache.maven.shared.dependency.tree.traversal.CollectingDependencyNod
 
 import java.io.File;
 import java.io.IOException;
+import java.net.ConnectException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.jar.JarFile;
 
 /**
  * Goal which launches the HuntBugs static analyzer tool.
@@ -97,6 +97,14 @@ public class HuntBugsMojo extends AbstractMojo {
     @Parameter(defaultValue = "true", property = "diff", required = true)
     private boolean diff;
     
+    /**
+     * If positive, delegate the analysis to the HuntBugs daemon listening on
+     * this local port (started via {@code HuntBugs -daemon}). The analysis is
+     * performed in-process if the daemon is not running.
+     */
+    @Parameter(defaultValue = "0", property = "daemonPort", required = false)
+    private int daemonPort;
+    
     @Parameter( defaultValue = "${project.compileClasspathElements}", readonly = true, required = true )
     private List<String> classpathElements;
     
@@ -112,22 +120,27 @@ public class HuntBugsMojo extends AbstractMojo {
     @Override
     public void execute() throws MojoExecutionException {
         try {
-            Context ctx = new Context(constructRepository(), constructOptions());
-
-            if (!quiet) {
-                addAnalysisProgressListener(ctx);
+            List<Path> deps = collectDependencies();
+            if (daemonPort > 0 && analyzeInDaemon(deps)) {
+                return;
             }
+            ReactorCache cache = ReactorCache.get(session);
+            try (ReactorCache.Lease lease = cache.lease()) {
+                Context ctx = cache.getEngine(minScore).newSession(constructRepository(lease, deps));
+
+                if (!quiet) {
+                    addAnalysisProgressListener(ctx);
+                }
 
-            ctx.analyzePackage("");
-            writeReports(ctx);
+                ctx.analyzePackage("");
+                writeReports(ctx);
+            }
         } catch (Exception e) {
             throw new MojoExecutionException("Failed to run HuntBugs", e);
         }
     }
     
-    private Repository constructRepository() throws IOException {
-        Repository repo = new DirRepository(classesDirectory.toPath());
-        
+    private List<Path> collectDependencies() {
         if (!quiet) {
             getLog().info("HuntBugs: +dir " + classesDirectory);
         }
@@ -143,9 +156,8 @@ public class HuntBugsMojo extends AbstractMojo {
         CollectingDependencyNodeVisitor visitor = new CollectingDependencyNodeVisitor();
         rootNode.accept(visitor);
 
-        // converting dependencies to type loaders
         List<DependencyNode> nodes = visitor.getNodes();
-        List<ITypeLoader> deps = new ArrayList<>();
+        List<Path> deps = new ArrayList<>();
         for (DependencyNode dependencyNode : nodes) {
             int state = dependencyNode.getState();
 
@@ -155,16 +167,10 @@ public class HuntBugsMojo extends AbstractMojo {
                 addDependency(artifact, deps);
             }
         }
-        
-        if (deps.isEmpty()) {
-            return repo;
-        }
-        
-        return new CompositeRepository(
-            Arrays.asList(repo, new AuxRepository(new CompositeTypeLoader(deps.toArray(new ITypeLoader[0])))));
+        return deps;
     }
 
-    private void addDependency(Artifact art, List<ITypeLoader> deps) throws IOException {
+    private void addDependency(Artifact art, List<Path> deps) {
         if ("compile".equals(art.getScope())) {
             ArtifactRepository localRepository = session.getLocalRepository();
             File f = localRepository.find(art).getFile();
@@ -173,22 +179,68 @@ public class HuntBugsMojo extends AbstractMojo {
                 if (!quiet) {
                     getLog().info("HuntBugs: +dep " + path);
                 }
-                if (Files.isRegularFile(path) && art.getType().equals("jar")) {
-                    deps.add(new JarTypeLoader(new JarFile(path.toFile())));
-                } else if (Files.isDirectory(path)) {
-                    deps.add(new ClasspathTypeLoader(path.toString()));
+                if ((Files.isRegularFile(path) && art.getType().equals("jar")) || Files.isDirectory(path)) {
+                    deps.add(path);
                 }
             }
         }
     }
 
-    private AnalysisOptions constructOptions() {
-        AnalysisOptions options = new AnalysisOptions();
-        options.minScore = minScore;
+    private Repository constructRepository(ReactorCache.Lease lease, List<Path> depPaths) throws IOException {
+        Repository repo = new DirRepository(classesDirectory.toPath());
+
+        // converting dependencies to type loaders
+        List<ITypeLoader> deps = new ArrayList<>();
+        for (Path path : depPaths) {
+            deps.add(lease.getTypeLoader(path));
+        }
+        
+        if (deps.isEmpty()) {
+            return repo;
+        }
         
-        return options;
+        return new CompositeRepository(
+            Arrays.asList(repo, new AuxRepository(new CompositeTypeLoader(deps.toArray(new ITypeLoader[0])))));
     }
-    
+
+    private boolean analyzeInDaemon(List<Path> deps) throws Exception {
+        Path path = outputDirectory.toPath();
+        Files.createDirectories(path);
+        Path xmlFile = path.resolve("report.xml");
+        AnalysisJob job = new AnalysisJob();
+        job.addClassPath(classesDirectory.getAbsolutePath());
+        for (Path dep : deps) {
+            job.addAuxClassPath(dep.toAbsolutePath().toString());
+        }
+        job.setOption("minScore", String.valueOf(minScore));
+        job.setXml(xmlFile.toAbsolutePath().toString());
+        job.setHtml(path.resolve("report.html").toAbsolutePath().toString());
+        // The daemon overwrites report.xml, so the diff is made with its snapshot
+        Path oldXmlFile = path.resolve("report.old.xml");
+        if (diff && Files.isRegularFile(xmlFile)) {
+            Files.copy(xmlFile, oldXmlFile, StandardCopyOption.REPLACE_EXISTING);
+            job.setDiff(oldXmlFile.toAbsolutePath().toString());
+        }
+        DaemonClient.Result res;
+        try {
+            res = new DaemonClient(daemonPort).submit(job, msg -> {
+                if (!quiet) {
+                    getLog().info("HuntBugs: " + msg);
+                }
+            });
+        } catch (ConnectException e) {
+            getLog().info("HuntBugs: daemon is not running on port " + daemonPort + ", analyzing in-process");
+            return false;
+        } finally {
+            Files.deleteIfExists(oldXmlFile);
+        }
+        getLog().info("HuntBugs: Report written by daemon (" + res.getWarnings() + " warnings)");
+        if (failScore > 0 && res.getMaxScore() >= failScore) {
+            throw new MojoFailureException("There are warnings with score higher than " + failScore);
+        }
+        return true;
+    }
+
     private void addAnalysisProgressListener(Context ctx) {
         long[] lastPrint = {0};
         ctx.addListener((stepName, className, count, total) -> {
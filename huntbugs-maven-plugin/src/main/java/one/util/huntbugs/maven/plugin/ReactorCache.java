@@ -0,0 +1,303 @@
+/*
+ * Copyright 2016 HuntBugs contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.maven.plugin;
+
+import com.strobel.assembler.metadata.ClasspathTypeLoader;
+import com.strobel.assembler.metadata.ITypeLoader;
+import com.strobel.assembler.metadata.JarTypeLoader;
+import one.util.huntbugs.analysis.AnalysisEngine;
+import one.util.huntbugs.analysis.AnalysisOptions;
+import one.util.huntbugs.repo.SynchronizedTypeLoader;
+import org.apache.maven.execution.AbstractExecutionListener;
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.ExecutionListener;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarFile;
+
+/**
+ * Analysis state shared by all the modules analyzed within single Maven
+ * invocation (including parallel builds): analysis engines (with detector
+ * metadata) and dependency jar type loaders, so jars used by several modules
+ * are opened only once. Type databases are not shared as they are collected
+ * from the classes of the analyzed module. The cached jars are closed when
+ * the session ends.
+ */
+final class ReactorCache {
+    // keyed by request as parallel builds use cloned sessions sharing the request
+    private static final Map<MavenExecutionRequest, ReactorCache> caches = new WeakHashMap<>();
+
+    static final class CachedJar {
+        final long lastModified, size;
+        final JarFile jar;
+        final ITypeLoader loader;
+        // guarded by ReactorCache.this
+        int users;
+        boolean stale;
+
+        CachedJar(long lastModified, long size, JarFile jar) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.jar = jar;
+            this.loader = new SynchronizedTypeLoader(new JarTypeLoader(jar));
+        }
+    }
+
+    /**
+     * Type loaders used by the analysis of single module. Jars replaced in
+     * the cache while the lease is open stay open until it's closed.
+     */
+    final class Lease implements Closeable {
+        private final List<CachedJar> jars = new ArrayList<>();
+
+        /**
+         * @param path dependency jar or directory
+         * @return thread-safe type loader for given path; jars are reopened
+         *         only if they were changed (e.g. a sibling module was
+         *         repackaged); directories are always read anew
+         * @throws IOException if jar cannot be opened
+         */
+        ITypeLoader getTypeLoader(Path path) throws IOException {
+            if (Files.isDirectory(path)) {
+                return new SynchronizedTypeLoader(new ClasspathTypeLoader(path.toString()));
+            }
+            CachedJar jar = acquire(path);
+            jars.add(jar);
+            return jar.loader;
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException ex = null;
+            for (CachedJar jar : jars) {
+                try {
+                    release(jar);
+                } catch (IOException e) {
+                    ex = e;
+                }
+            }
+            jars.clear();
+            if (ex != null)
+                throw ex;
+        }
+    }
+
+    private final Map<Integer, AnalysisEngine> engines = new ConcurrentHashMap<>();
+    // guarded by this
+    private final Map<Path, CachedJar> jars = new HashMap<>();
+
+    /**
+     * Closes the cache when the session ends. Lifecycle participants are not
+     * loaded for the plugins which are not declared as build extensions, so
+     * the listener is chained into the request instead.
+     */
+    private static final class SessionEndListener implements ExecutionListener {
+        private final ExecutionListener delegate;
+        private final MavenExecutionRequest request;
+        private final ReactorCache cache;
+
+        SessionEndListener(ExecutionListener delegate, MavenExecutionRequest request, ReactorCache cache) {
+            this.delegate = delegate == null ? new AbstractExecutionListener() : delegate;
+            this.request = request;
+            this.cache = cache;
+        }
+
+        @Override
+        public void sessionEnded(ExecutionEvent event) {
+            try {
+                delegate.sessionEnded(event);
+            } finally {
+                synchronized (caches) {
+                    caches.remove(request);
+                }
+                try {
+                    cache.close();
+                } catch (IOException e) {
+                    // the build is already finished: nowhere to report
+                }
+            }
+        }
+
+        @Override
+        public void projectDiscoveryStarted(ExecutionEvent event) {
+            delegate.projectDiscoveryStarted(event);
+        }
+
+        @Override
+        public void sessionStarted(ExecutionEvent event) {
+            delegate.sessionStarted(event);
+        }
+
+        @Override
+        public void projectSkipped(ExecutionEvent event) {
+            delegate.projectSkipped(event);
+        }
+
+        @Override
+        public void projectStarted(ExecutionEvent event) {
+            delegate.projectStarted(event);
+        }
+
+        @Override
+        public void projectSucceeded(ExecutionEvent event) {
+            delegate.projectSucceeded(event);
+        }
+
+        @Override
+        public void projectFailed(ExecutionEvent event) {
+            delegate.projectFailed(event);
+        }
+
+        @Override
+        public void mojoSkipped(ExecutionEvent event) {
+            delegate.mojoSkipped(event);
+        }
+
+        @Override
+        public void mojoStarted(ExecutionEvent event) {
+            delegate.mojoStarted(event);
+        }
+
+        @Override
+        public void mojoSucceeded(ExecutionEvent event) {
+            delegate.mojoSucceeded(event);
+        }
+
+        @Override
+        public void mojoFailed(ExecutionEvent event) {
+            delegate.mojoFailed(event);
+        }
+
+        @Override
+        public void forkStarted(ExecutionEvent event) {
+            delegate.forkStarted(event);
+        }
+
+        @Override
+        public void forkSucceeded(ExecutionEvent event) {
+            delegate.forkSucceeded(event);
+        }
+
+        @Override
+        public void forkFailed(ExecutionEvent event) {
+            delegate.forkFailed(event);
+        }
+
+        @Override
+        public void forkedProjectStarted(ExecutionEvent event) {
+            delegate.forkedProjectStarted(event);
+        }
+
+        @Override
+        public void forkedProjectSucceeded(ExecutionEvent event) {
+            delegate.forkedProjectSucceeded(event);
+        }
+
+        @Override
+        public void forkedProjectFailed(ExecutionEvent event) {
+            delegate.forkedProjectFailed(event);
+        }
+    }
+
+    static ReactorCache get(MavenSession session) {
+        return get(session.getRequest());
+    }
+
+    static ReactorCache get(MavenExecutionRequest request) {
+        synchronized (caches) {
+            return caches.computeIfAbsent(request, k -> {
+                ReactorCache cache = new ReactorCache();
+                request.setExecutionListener(new SessionEndListener(request.getExecutionListener(), request, cache));
+                return cache;
+            });
+        }
+    }
+
+    AnalysisEngine getEngine(int minScore) {
+        return engines.computeIfAbsent(minScore, k -> {
+            AnalysisOptions options = new AnalysisOptions();
+            options.minScore = minScore;
+            return new AnalysisEngine(options);
+        });
+    }
+
+    /**
+     * @return new lease to get the dependency type loaders for single module
+     *         analysis
+     */
+    Lease lease() {
+        return new Lease();
+    }
+
+    synchronized CachedJar acquire(Path path) throws IOException {
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        long size = Files.size(path);
+        CachedJar cached = jars.get(path);
+        if (cached == null || cached.lastModified != lastModified || cached.size != size) {
+            CachedJar newJar = new CachedJar(lastModified, size, new JarFile(path.toFile()));
+            if (cached != null) {
+                cached.stale = true;
+                if (cached.users == 0) {
+                    cached.jar.close();
+                }
+            }
+            jars.put(path, newJar);
+            cached = newJar;
+        }
+        cached.users++;
+        return cached;
+    }
+
+    synchronized void release(CachedJar jar) throws IOException {
+        if (--jar.users == 0 && jar.stale) {
+            jar.jar.close();
+        }
+    }
+
+    /**
+     * Closes all the cached jars. Jars still used by open leases are closed
+     * when released.
+     * 
+     * @throws IOException if some jar cannot be closed
+     */
+    synchronized void close() throws IOException {
+        IOException ex = null;
+        for (CachedJar jar : jars.values()) {
+            jar.stale = true;
+            if (jar.users == 0) {
+                try {
+                    jar.jar.close();
+                } catch (IOException e) {
+                    ex = e;
+                }
+            }
+        }
+        jars.clear();
+        if (ex != null)
+            throw ex;
+    }
+}
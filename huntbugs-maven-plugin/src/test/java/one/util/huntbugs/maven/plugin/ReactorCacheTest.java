@@ -0,0 +1,203 @@
+/*
+ * Copyright 2016 HuntBugs contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.maven.plugin;
+
+import com.strobel.assembler.metadata.Buffer;
+import com.strobel.assembler.metadata.ITypeLoader;
+import org.apache.maven.execution.AbstractExecutionListener;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ReactorCacheTest {
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("huntbugs-reactor");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        Files.walk(dir).forEach(paths::add);
+        for (int i = paths.size() - 1; i >= 0; i--) {
+            Files.deleteIfExists(paths.get(i));
+        }
+    }
+
+    private static final String A = ReactorCacheTest.class.getName().replace('.', '/');
+    private static final String B = ReactorCache.class.getName().replace('.', '/');
+
+    private static byte[] classBytes(String internalName) throws IOException {
+        try (InputStream in = ReactorCacheTest.class.getClassLoader().getResourceAsStream(internalName + ".class")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int read;
+            while ((read = in.read(buf)) > 0) {
+                out.write(buf, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private Path writeJar(String... classNames) throws IOException {
+        Path jar = dir.resolve("dep.jar");
+        FileTime oldTime = Files.exists(jar) ? Files.getLastModifiedTime(jar) : null;
+        // replace rather than overwrite, as the old version may be still open
+        Path tmp = dir.resolve("dep.jar.tmp");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(tmp))) {
+            for (String className : classNames) {
+                out.putNextEntry(new ZipEntry(className + ".class"));
+                out.write(classBytes(className));
+                out.closeEntry();
+            }
+        }
+        Files.move(tmp, jar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (oldTime != null) {
+            // make sure the change is visible even with coarse timestamps
+            Files.setLastModifiedTime(jar, FileTime.fromMillis(oldTime.toMillis() + 2000));
+        }
+        return jar;
+    }
+
+    private static void assertClosed(ReactorCache.CachedJar jar) {
+        try {
+            jar.jar.getEntry(A + ".class");
+            fail("Jar is still open");
+        } catch (IllegalStateException e) {
+            // expected: zip file closed
+        }
+    }
+
+    @Test
+    public void testUnchangedJarIsShared() throws IOException {
+        ReactorCache cache = new ReactorCache();
+        Path jar = writeJar(A);
+        try (ReactorCache.Lease first = cache.lease(); ReactorCache.Lease second = cache.lease()) {
+            ITypeLoader loader = first.getTypeLoader(jar);
+            assertSame(loader, second.getTypeLoader(jar));
+            assertTrue(loader.tryLoadType(A, new Buffer()));
+        }
+        ReactorCache.CachedJar cached = cache.acquire(jar);
+        // not closed as it's still cached
+        assertNotNull(cached.jar.getEntry(A + ".class"));
+        cache.release(cached);
+    }
+
+    @Test
+    public void testChangedJarIsReopened() throws IOException {
+        ReactorCache cache = new ReactorCache();
+        Path jar = writeJar(A);
+        ReactorCache.CachedJar old = cache.acquire(jar);
+        writeJar(A, B);
+        ReactorCache.CachedJar updated = cache.acquire(jar);
+        assertNotSame(old, updated);
+        assertTrue(updated.loader.tryLoadType(B, new Buffer()));
+        // still used by the old lease
+        assertNotNull(old.jar.getEntry(A + ".class"));
+        cache.release(old);
+        assertClosed(old);
+        cache.release(updated);
+    }
+
+    @Test
+    public void testUnusedChangedJarIsClosed() throws IOException {
+        ReactorCache cache = new ReactorCache();
+        Path jar = writeJar(A);
+        ReactorCache.CachedJar old = cache.acquire(jar);
+        cache.release(old);
+        writeJar(A, B);
+        try (ReactorCache.Lease lease = cache.lease()) {
+            assertTrue(lease.getTypeLoader(jar).tryLoadType(B, new Buffer()));
+        }
+        assertClosed(old);
+    }
+
+    @Test
+    public void testDirectoryIsReadAnew() throws IOException {
+        ReactorCache cache = new ReactorCache();
+        Path classes = Files.createDirectories(dir.resolve("classes"));
+        try (ReactorCache.Lease lease = cache.lease()) {
+            assertFalse(lease.getTypeLoader(classes).tryLoadType(A, new Buffer()));
+        }
+        Path classFile = classes.resolve(A + ".class");
+        Files.createDirectories(classFile.getParent());
+        Files.write(classFile, classBytes(A));
+        try (ReactorCache.Lease lease = cache.lease()) {
+            assertTrue(lease.getTypeLoader(classes).tryLoadType(A, new Buffer()));
+        }
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        ReactorCache cache = new ReactorCache();
+        Path jar = writeJar(A);
+        ReactorCache.CachedJar unused = cache.acquire(jar);
+        cache.release(unused);
+        Path jar2 = Files.copy(jar, dir.resolve("dep2.jar"));
+        ReactorCache.CachedJar used = cache.acquire(jar2);
+        cache.close();
+        assertClosed(unused);
+        // still used by the module being analyzed
+        assertNotNull(used.jar.getEntry(A + ".class"));
+        cache.release(used);
+        assertClosed(used);
+    }
+
+    @Test
+    public void testClosedOnSessionEnd() throws IOException {
+        MavenExecutionRequest request = new DefaultMavenExecutionRequest();
+        AtomicBoolean ended = new AtomicBoolean();
+        request.setExecutionListener(new AbstractExecutionListener() {
+            @Override
+            public void sessionEnded(ExecutionEvent event) {
+                ended.set(true);
+            }
+        });
+        ReactorCache cache = ReactorCache.get(request);
+        assertSame(cache, ReactorCache.get(request));
+        ReactorCache.CachedJar cached = cache.acquire(writeJar(A));
+        cache.release(cached);
+        request.getExecutionListener().sessionEnded(null);
+        assertTrue(ended.get());
+        assertClosed(cached);
+        assertNotSame(cache, ReactorCache.get(request));
+    }
+}
@@ -40,6 +40,7 @@ import com.strobel.assembler.metadata.JarTypeLoader;
 import one.util.huntbugs.analysis.AnalysisOptions;
 import one.util.huntbugs.analysis.Context;
 import one.util.huntbugs.analysis.HuntBugsResult;
+import one.util.huntbugs.daemon.AnalysisDaemon;
 import one.util.huntbugs.input.XmlReportReader;
 import one.util.huntbugs.output.Reports;
 import one.util.huntbugs.repo.AuxRepository;
@@ -64,6 +65,7 @@ public class HuntBugs {
     private final AnalysisOptions options = new AnalysisOptions();
     private Repository repo;
     private Path compareTo;
+    private int daemonPort = -1;
 
     private void parseCommandLine(String[] args) {
         List<Repository> repos = new ArrayList<>();
@@ -78,6 +80,14 @@ public class HuntBugs {
                 listDatabases = true;
             } else if (arg.equals("-lm")) {
                 listMessages = true;
+            } else if (arg.equals("-daemon")) {
+                daemonPort = AnalysisDaemon.DEFAULT_PORT;
+            } else if (arg.startsWith("-daemon=")) {
+                try {
+                    daemonPort = Integer.parseInt(arg.substring("-daemon=".length()));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Illegal option: " + arg + " (expected -daemon=port)");
+                }
             } else if (arg.startsWith("-C")) {
                 compareTo = Paths.get(arg.substring(2));
             } else if (arg.startsWith("-D")) {
@@ -134,6 +144,10 @@ public class HuntBugs {
                 }
             }
         }
+        if (daemonPort >= 0 && args.length > 1) {
+            // The daemon takes the options and the classes to analyze from its clients
+            throw new IllegalArgumentException("Option -daemon cannot be combined with other options");
+        }
         if (!deps.isEmpty()) {
             repos.add(new AuxRepository(new CompositeTypeLoader(deps.toArray(new ITypeLoader[0]))));
         }
@@ -176,6 +190,8 @@ public class HuntBugs {
             System.out.println("    -Apath                     -- dependency path");
             System.out.println("    -Dname=value               -- set given variable");
             System.out.println("    -Rruletype:rule=adjustment -- adjust score for warnings");
+            System.out.println("    -daemon[=port]             -- serve analysis jobs from build plugins (default port "
+                + AnalysisDaemon.DEFAULT_PORT + ")");
             return -1;
         }
         try {
@@ -184,6 +200,15 @@ public class HuntBugs {
             System.err.println(ex.getMessage());
             return -3;
         }
+        if (daemonPort >= 0) {
+            try {
+                new AnalysisDaemon(daemonPort, System.out).run();
+            } catch (IOException e) {
+                System.err.println("Unable to start daemon: " + e);
+                return -4;
+            }
+            return 0;
+        }
         boolean list = false;
         Context ctx = new Context(repo, options);
         if (listDetectors) {
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 HuntBugs contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.analysis;
+
+import java.util.Objects;
+
+import com.strobel.assembler.metadata.ClasspathTypeLoader;
+import com.strobel.assembler.metadata.CompositeTypeLoader;
+import com.strobel.assembler.metadata.ITypeLoader;
+
+import one.util.huntbugs.registry.DetectorCatalog;
+import one.util.huntbugs.repo.Repository;
+import one.util.huntbugs.repo.SynchronizedTypeLoader;
+import one.util.huntbugs.warning.Messages;
+
+/**
+ * Holds the setup which does not depend on the analyzed repository (options,
+ * messages, boot classpath loader, detector metadata), so it could be shared
+ * by many analysis sessions, possibly running in parallel. Thread-safe.
+ * 
+ * <p>
+ * Usage: create the engine once, then call {@link #newSession(Repository)}
+ * for every repository to analyze.
+ */
+public class AnalysisEngine {
+    private final AnalysisOptions options;
+    private final ITypeLoader bootLoader;
+    private final DetectorCatalog detectors;
+    private volatile Messages msgs;
+
+    public AnalysisEngine(AnalysisOptions options) {
+        this.options = Objects.requireNonNull(options);
+        this.bootLoader = options.addBootClassPath ? new SynchronizedTypeLoader(new ClasspathTypeLoader(System
+                .getProperty("sun.boot.class.path"))) : null;
+        this.detectors = new DetectorCatalog(options);
+    }
+
+    /**
+     * @param repository repository to analyze (may be null)
+     * @return new analysis session which collects its own warnings, errors
+     *         and statistics
+     */
+    public Context newSession(Repository repository) {
+        return new Context(this, repository);
+    }
+
+    public AnalysisOptions getOptions() {
+        return options;
+    }
+
+    public Messages getMessages() {
+        Messages result = msgs;
+        if (result == null) {
+            synchronized (this) {
+                result = msgs;
+                if (result == null) {
+                    msgs = result = Messages.load();
+                }
+            }
+        }
+        return result;
+    }
+
+    DetectorCatalog getDetectorCatalog() {
+        return detectors;
+    }
+
+    ITypeLoader createTypeLoader(Repository repository) {
+        ITypeLoader loader = repository.createTypeLoader();
+        return bootLoader == null ? loader : new CompositeTypeLoader(bootLoader, loader);
+    }
+}
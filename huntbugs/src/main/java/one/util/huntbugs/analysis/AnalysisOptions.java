@@ -31,6 +31,7 @@ public class AnalysisOptions {
     public int maxMethodSize = 8000;
     public int classesPerFlush = 1000;
     public int minScore = 1;
+    public boolean coarseBlocks = true;
     private Rule rule = Rule.NULL;
 
     public void set(String name, String valueString) {
@@ -32,8 +32,6 @@ import java.util.stream.Stream;
 
 import com.strobel.assembler.ir.ConstantPool;
 import com.strobel.assembler.ir.ConstantPool.TypeInfoEntry;
-import com.strobel.assembler.metadata.ClasspathTypeLoader;
-import com.strobel.assembler.metadata.CompositeTypeLoader;
 import com.strobel.assembler.metadata.ITypeLoader;
 import com.strobel.assembler.metadata.MetadataSystem;
 import com.strobel.assembler.metadata.TypeDefinition;
@@ -42,6 +40,8 @@ import com.strobel.assembler.metadata.TypeReference;
 import one.util.huntbugs.registry.DetectorRegistry;
 import one.util.huntbugs.repo.Repository;
 import one.util.huntbugs.repo.RepositoryVisitor;
+import one.util.huntbugs.util.SymbolTable;
+import one.util.huntbugs.util.TypeHierarchy;
 import one.util.huntbugs.warning.Messages;
 import one.util.huntbugs.warning.Warning;
 import one.util.huntbugs.warning.WarningType;
@@ -62,26 +62,34 @@ public class Context implements HuntBugsResult {
     private final AnalysisOptions options;
     private final List<AnalysisListener> listeners = new CopyOnWriteArrayList<>();
     private final Map<String, Long> stat = new ConcurrentHashMap<>();
-    private Messages msgs;
+    private final AnalysisEngine engine;
     private final ITypeLoader loader;
+    private final SymbolTable symbols = new SymbolTable();
+    private final TypeHierarchy hierarchy = new TypeHierarchy();
 
     public Context(Repository repository, AnalysisOptions options) {
-        this.options = options;
-        registry = new DetectorRegistry(this);
+        this(new AnalysisEngine(options), repository);
+    }
+
+    Context(AnalysisEngine engine, Repository repository) {
+        this.engine = engine;
+        this.options = engine.getOptions();
+        registry = new DetectorRegistry(this, engine.getDetectorCatalog());
         this.repository = repository == null ? Repository.createNullRepository() : repository;
-        ITypeLoader loader = this.repository.createTypeLoader();
-        if (options.addBootClassPath) {
-            loader = new CompositeTypeLoader(new ClasspathTypeLoader(System.getProperty("sun.boot.class.path")), loader);
-        }
-        this.loader = loader;
+        this.loader = engine.createTypeLoader(this.repository);
     }
     
     @Override
     public Messages getMessages() {
-        if(msgs == null) {
-            msgs = Messages.load();
-        }
-        return msgs;
+        return engine.getMessages();
+    }
+
+    /**
+     * @return the table of type and member ids shared by everything analyzed
+     *         within this context
+     */
+    public SymbolTable getSymbols() {
+        return symbols;
     }
 
     public AnalysisOptions getOptions() {
@@ -175,27 +183,39 @@ public class Context implements HuntBugsResult {
     }
 
     MetadataSystem createMetadataSystem() {
-        return new MetadataSystem(loader) {
-            Set<String> loadedTypes = new HashSet<>();
-            
-            @Override
-            protected TypeDefinition resolveType(String descriptor, boolean mightBePrimitive) {
-                if(missingClasses.contains(descriptor)) {
-                    return null;
-                }
-                try {
-                    if(loadedTypes.add(descriptor))
-                        incStat("ClassLoadingEfficiency.Total");
-                    if(classes.add(descriptor))
-                        incStat("ClassLoadingEfficiency");
-                    return super.resolveType(descriptor, mightBePrimitive);
-                } catch (Throwable t) {
-                    addError(new ErrorMessage(null, descriptor, null, null, -1, t));
-                    missingClasses.add(descriptor);
-                    return null;
-                }
+        return new ContextMetadataSystem();
+    }
+
+    // Named class, as the loaded types find the hierarchy cache through their resolver
+    private class ContextMetadataSystem extends MetadataSystem implements TypeHierarchy.Provider {
+        Set<String> loadedTypes = new HashSet<>();
+
+        ContextMetadataSystem() {
+            super(loader);
+        }
+
+        @Override
+        public TypeHierarchy getTypeHierarchy() {
+            return hierarchy;
+        }
+
+        @Override
+        protected TypeDefinition resolveType(String descriptor, boolean mightBePrimitive) {
+            if(missingClasses.contains(descriptor)) {
+                return null;
             }
-        };
+            try {
+                if(loadedTypes.add(descriptor))
+                    incStat("ClassLoadingEfficiency.Total");
+                if(classes.add(descriptor))
+                    incStat("ClassLoadingEfficiency");
+                return super.resolveType(descriptor, mightBePrimitive);
+            } catch (Throwable t) {
+                addError(new ErrorMessage(null, descriptor, null, null, -1, t));
+                missingClasses.add(descriptor);
+                return null;
+            }
+        }
     }
 
     private TypeDefinition lookUp(MetadataSystem ms, String className) {
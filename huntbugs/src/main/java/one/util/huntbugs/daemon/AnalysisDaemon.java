@@ -0,0 +1,314 @@
+/*
+ * Copyright 2016 HuntBugs contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.daemon;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.AclEntry;
+import java.nio.file.attribute.AclEntryPermission;
+import java.nio.file.attribute.AclEntryType;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.jar.JarFile;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.xml.sax.SAXException;
+
+import one.util.huntbugs.analysis.AnalysisEngine;
+import one.util.huntbugs.analysis.AnalysisListener;
+import one.util.huntbugs.analysis.Context;
+import one.util.huntbugs.analysis.HuntBugsResult;
+import one.util.huntbugs.input.XmlReportReader;
+import one.util.huntbugs.output.Reports;
+import one.util.huntbugs.warning.Warning;
+
+/**
+ * Long-running analysis server which accepts {@link AnalysisJob}s from
+ * {@link DaemonClient}s over the loopback socket. Analysis engines are
+ * created once per distinct set of options and reused by the subsequent jobs
+ * (only a few most recently used engines are kept), so every job after the first one starts with the warm JIT, loaded messages,
+ * detector index and JDK types. The analyzed classes and dependencies are
+ * loaded anew for every job, so they can change between the requests.
+ * 
+ * <p>
+ * Only the clients of the same user are served: on start the daemon writes a
+ * random token to the file readable by its owner only (see
+ * {@link #getTokenFile(int)}) and removes it on exit.
+ * 
+ * <p>
+ * Protocol: the client sends {@code AUTH <token>} line, then the job (see
+ * {@link AnalysisJob#write}), the daemon answers with zero or more
+ * {@code INFO <message>} lines followed by either
+ * {@code DONE <warnings> <maxScore>} or {@code ERROR <message>} line. The job
+ * is not read at all if the token does not match.
+ */
+public class AnalysisDaemon {
+    public static final int DEFAULT_PORT = 7337;
+    static final String AUTH = "AUTH ";
+    private static final long PROGRESS_INTERVAL = 2000;
+    // Time to wait for the client to authenticate and send the job
+    private static final int REQUEST_TIMEOUT = 10000;
+    private static final int MAX_ENGINES = 4;
+
+    private final int port;
+    private final PrintStream log;
+    private final Path tokenFile;
+    private volatile ServerSocket server;
+    // Least recently used engines are dropped, so clients with many distinct
+    // option sets cannot exhaust the memory
+    private final Map<Map<String, String>, AnalysisEngine> engines = Collections.synchronizedMap(
+        new LinkedHashMap<Map<String, String>, AnalysisEngine>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Map<String, String>, AnalysisEngine> eldest) {
+                return size() > MAX_ENGINES;
+            }
+        });
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "HuntBugs daemon worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param port loopback port to listen
+     * @param log stream to log the served jobs
+     */
+    public AnalysisDaemon(int port, PrintStream log) {
+        this(port, log, getTokenFile(port));
+    }
+
+    /**
+     * @param port loopback port to listen
+     * @param log stream to log the served jobs
+     * @param tokenFile file to write the authentication token to
+     */
+    public AnalysisDaemon(int port, PrintStream log, Path tokenFile) {
+        this.port = port;
+        this.log = log;
+        this.tokenFile = tokenFile;
+    }
+
+    /**
+     * @param port daemon port
+     * @return default location of the authentication token of the daemon
+     *         listening to given port
+     */
+    public static Path getTokenFile(int port) {
+        return Paths.get(System.getProperty("user.home"), ".huntbugs", "daemon-" + port + ".token");
+    }
+
+    /**
+     * Serves the requests until the thread is interrupted, the daemon is
+     * stopped or the socket cannot be accepted anymore.
+     * 
+     * @throws IOException if the port cannot be listened or the token file
+     *         cannot be written
+     */
+    public void run() throws IOException {
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            this.server = server;
+            byte[] token = writeToken();
+            try {
+                log.println("HuntBugs daemon is listening on " + server.getLocalSocketAddress());
+                while (!Thread.currentThread().isInterrupted()) {
+                    Socket socket;
+                    try {
+                        socket = server.accept();
+                    } catch (SocketException e) {
+                        if (server.isClosed())
+                            break;
+                        throw e;
+                    }
+                    executor.execute(() -> serve(socket, token));
+                }
+            } finally {
+                Files.deleteIfExists(tokenFile);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Stops the daemon started in another thread via {@link #run()}
+     * 
+     * @throws IOException if the socket cannot be closed
+     */
+    public void stop() throws IOException {
+        ServerSocket s = server;
+        if (s != null) {
+            s.close();
+        }
+    }
+
+    private byte[] writeToken() throws IOException {
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        StringBuilder sb = new StringBuilder();
+        for (byte b : random) {
+            sb.append(String.format("%02x", b & 0xFF));
+        }
+        byte[] token = sb.toString().getBytes(StandardCharsets.US_ASCII);
+        Path dir = tokenFile.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        // Recreate the file with the owner-only access, so the token is never
+        // readable by others
+        Files.deleteIfExists(tokenFile);
+        Set<String> views = tokenFile.getFileSystem().supportedFileAttributeViews();
+        if (views.contains("posix")) {
+            Files.createFile(tokenFile, PosixFilePermissions.asFileAttribute(EnumSet.of(
+                PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE)));
+        } else if (views.contains("acl")) {
+            UserPrincipal owner = tokenFile.getFileSystem().getUserPrincipalLookupService().lookupPrincipalByName(
+                System.getProperty("user.name"));
+            List<AclEntry> acl = Collections.singletonList(AclEntry.newBuilder().setType(AclEntryType.ALLOW)
+                    .setPrincipal(owner).setPermissions(EnumSet.allOf(AclEntryPermission.class)).build());
+            Files.createFile(tokenFile, new FileAttribute<List<AclEntry>>() {
+                @Override
+                public String name() {
+                    return "acl:acl";
+                }
+
+                @Override
+                public List<AclEntry> value() {
+                    return acl;
+                }
+            });
+        } else {
+            // No way to set the access on creation: restrict it before the token is written
+            Files.createFile(tokenFile);
+            File file = tokenFile.toFile();
+            if (!file.setReadable(false, false) || !file.setReadable(true, true) || !file.setWritable(false, false)
+                || !file.setWritable(true, true)) {
+                Files.delete(tokenFile);
+                throw new IOException("Unable to restrict the access to " + tokenFile);
+            }
+        }
+        Files.write(tokenFile, token);
+        return token;
+    }
+
+    private void serve(Socket socket, byte[] token) {
+        try (Socket s = socket;
+                BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(),
+                        StandardCharsets.UTF_8));
+                PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream(),
+                        StandardCharsets.UTF_8), true)) {
+            String reply;
+            try {
+                // Do not let idle connections occupy the worker threads
+                s.setSoTimeout(REQUEST_TIMEOUT);
+                String auth = in.readLine();
+                if (auth == null || !auth.startsWith(AUTH) || !MessageDigest.isEqual(token, auth.substring(
+                    AUTH.length()).getBytes(StandardCharsets.US_ASCII))) {
+                    log.println("Rejected unauthenticated connection");
+                    out.println("ERROR Authentication failed");
+                    return;
+                }
+                AnalysisJob job = AnalysisJob.read(in);
+                s.setSoTimeout(0);
+                log.println("Analyzing " + job);
+                reply = analyze(job, out);
+            } catch (Exception e) {
+                reply = "ERROR " + String.valueOf(e).replaceAll("[\r\n]+", " ");
+            }
+            log.println(reply);
+            out.println(reply);
+        } catch (IOException e) {
+            log.println("Connection failed: " + e);
+        }
+    }
+
+    private String analyze(AnalysisJob job, PrintWriter out) throws IOException {
+        List<JarFile> jars = new ArrayList<>();
+        try {
+            AnalysisEngine engine = engines.computeIfAbsent(job.getOptions(), k -> new AnalysisEngine(job
+                    .createOptions()));
+            Context ctx = engine.newSession(job.createRepository(jars));
+            ctx.addListener(new ProgressReporter(out));
+            ctx.analyzePackage("");
+            HuntBugsResult result = ctx;
+            Path diff = job.getDiff();
+            if (diff != null && Files.isRegularFile(diff)) {
+                try {
+                    result = Reports.diff(XmlReportReader.read(ctx, diff), ctx);
+                } catch (IOException | SAXException | ParserConfigurationException e) {
+                    out.println("INFO Unable to read old report " + diff + ": " + e + "; skipping diff generation");
+                }
+            }
+            Reports.write(job.getXml(), job.getHtml(), result);
+            int maxScore = result.warnings().mapToInt(Warning::getScore).max().orElse(0);
+            return "DONE " + ctx.getStat("Warnings") + " " + maxScore;
+        } finally {
+            for (JarFile jar : jars) {
+                jar.close();
+            }
+        }
+    }
+
+    /**
+     * Sends the analysis progress to the client at most once per
+     * {@link #PROGRESS_INTERVAL} and cancels the analysis if the client is gone
+     */
+    private static class ProgressReporter implements AnalysisListener {
+        private final PrintWriter out;
+        private long lastPrint;
+
+        ProgressReporter(PrintWriter out) {
+            this.out = out;
+        }
+
+        @Override
+        public boolean eventOccurred(String stepName, String className, int count, int total) {
+            if (count == total || System.currentTimeMillis() - lastPrint > PROGRESS_INTERVAL) {
+                out.println("INFO " + stepName + " [" + count + "/" + total + "]");
+                lastPrint = System.currentTimeMillis();
+            }
+            return !out.checkError();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2016 HuntBugs contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.daemon;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.JarFile;
+
+import com.strobel.assembler.metadata.ClasspathTypeLoader;
+import com.strobel.assembler.metadata.CompositeTypeLoader;
+import com.strobel.assembler.metadata.ITypeLoader;
+import com.strobel.assembler.metadata.JarTypeLoader;
+
+import one.util.huntbugs.analysis.AnalysisOptions;
+import one.util.huntbugs.repo.AuxRepository;
+import one.util.huntbugs.repo.CompositeRepository;
+import one.util.huntbugs.repo.DirRepository;
+import one.util.huntbugs.repo.JarRepository;
+import one.util.huntbugs.repo.Repository;
+
+/**
+ * Analysis request which could be sent to the {@link AnalysisDaemon}. All the
+ * paths are resolved by the daemon, so they should be absolute.
+ */
+public class AnalysisJob {
+    static final String HEADER = "HUNTBUGS-JOB 1";
+    private static final String END = "end";
+
+    private final List<String> classPath = new ArrayList<>();
+    private final List<String> auxClassPath = new ArrayList<>();
+    private final Map<String, String> options = new TreeMap<>();
+    private String xml, html, diff;
+
+    /**
+     * @param path directory or jar file to analyze
+     */
+    public void addClassPath(String path) {
+        classPath.add(check(path));
+    }
+
+    /**
+     * @param path directory or jar file which contains dependencies
+     */
+    public void addAuxClassPath(String path) {
+        auxClassPath.add(check(path));
+    }
+
+    /**
+     * @param name name of the {@link AnalysisOptions} field
+     * @param value option value
+     */
+    public void setOption(String name, String value) {
+        options.put(check(name), check(value));
+    }
+
+    public void setXml(String xml) {
+        this.xml = xml == null ? null : check(xml);
+    }
+
+    public void setHtml(String html) {
+        this.html = html == null ? null : check(html);
+    }
+
+    /**
+     * @param diff old xml report to make a diff with (ignored if it does not
+     *        exist)
+     */
+    public void setDiff(String diff) {
+        this.diff = diff == null ? null : check(diff);
+    }
+
+    Map<String, String> getOptions() {
+        return new TreeMap<>(options);
+    }
+
+    Path getXml() {
+        return xml == null ? null : Paths.get(xml);
+    }
+
+    Path getHtml() {
+        return html == null ? null : Paths.get(html);
+    }
+
+    Path getDiff() {
+        return diff == null ? null : Paths.get(diff);
+    }
+
+    AnalysisOptions createOptions() {
+        AnalysisOptions opt = new AnalysisOptions();
+        options.forEach(opt::set);
+        return opt;
+    }
+
+    /**
+     * @param jars list to add the opened jar files to, so the caller could
+     *        close them when the analysis is finished
+     * @return repository to analyze
+     * @throws IOException if some path is not found or cannot be opened
+     */
+    Repository createRepository(List<JarFile> jars) throws IOException {
+        List<Repository> repos = new ArrayList<>();
+        for (String name : classPath) {
+            Path path = Paths.get(name);
+            if (Files.isDirectory(path)) {
+                repos.add(new DirRepository(path));
+            } else if (Files.isRegularFile(path)) {
+                repos.add(new JarRepository(open(path, jars)));
+            } else {
+                throw new IOException("Class path element not found: " + name);
+            }
+        }
+        List<ITypeLoader> auxLoaders = new ArrayList<>();
+        for (String name : auxClassPath) {
+            Path path = Paths.get(name);
+            if (Files.isDirectory(path)) {
+                auxLoaders.add(new ClasspathTypeLoader(path.toString()));
+            } else if (Files.isRegularFile(path)) {
+                auxLoaders.add(new JarTypeLoader(open(path, jars)));
+            } else {
+                throw new IOException("Aux class path element not found: " + name);
+            }
+        }
+        if (!auxLoaders.isEmpty()) {
+            repos.add(new AuxRepository(new CompositeTypeLoader(auxLoaders.toArray(new ITypeLoader[0]))));
+        }
+        return new CompositeRepository(repos);
+    }
+
+    private static JarFile open(Path path, List<JarFile> jars) throws IOException {
+        JarFile jar = new JarFile(path.toFile());
+        jars.add(jar);
+        return jar;
+    }
+
+    void write(PrintWriter out) {
+        out.println(HEADER);
+        classPath.forEach(path -> out.println("classpath " + path));
+        auxClassPath.forEach(path -> out.println("auxclasspath " + path));
+        options.forEach((name, value) -> out.println("option " + name + "=" + value));
+        if (xml != null)
+            out.println("xml " + xml);
+        if (html != null)
+            out.println("html " + html);
+        if (diff != null)
+            out.println("diff " + diff);
+        out.println(END);
+    }
+
+    static AnalysisJob read(BufferedReader in) throws IOException {
+        if (!HEADER.equals(in.readLine())) {
+            throw new IOException("Unsupported request (expected " + HEADER + ")");
+        }
+        AnalysisJob job = new AnalysisJob();
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.equals(END))
+                return job;
+            int pos = line.indexOf(' ');
+            if (pos < 0)
+                throw new IOException("Malformed request line: " + line);
+            String key = line.substring(0, pos);
+            String value = line.substring(pos + 1);
+            switch (key) {
+            case "classpath":
+                job.addClassPath(value);
+                break;
+            case "auxclasspath":
+                job.addAuxClassPath(value);
+                break;
+            case "option": {
+                int eq = value.indexOf('=');
+                if (eq < 0)
+                    throw new IOException("Malformed option: " + value + " (expected name=value)");
+                job.setOption(value.substring(0, eq), value.substring(eq + 1));
+                break;
+            }
+            case "xml":
+                job.setXml(value);
+                break;
+            case "html":
+                job.setHtml(value);
+                break;
+            case "diff":
+                job.setDiff(value);
+                break;
+            default:
+                throw new IOException("Unknown request key: " + key);
+            }
+        }
+        throw new IOException("Unexpected end of request");
+    }
+
+    private static String check(String value) {
+        if (value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0)
+            throw new IllegalArgumentException("Line breaks are not supported: " + value);
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "AnalysisJob " + classPath;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 HuntBugs contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.daemon;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Submits {@link AnalysisJob}s to the {@link AnalysisDaemon} running on the
+ * same machine.
+ */
+public class DaemonClient {
+    private final int port;
+    private final Path tokenFile;
+
+    /**
+     * @param port port the daemon listens to
+     */
+    public DaemonClient(int port) {
+        this(port, AnalysisDaemon.getTokenFile(port));
+    }
+
+    /**
+     * @param port port the daemon listens to
+     * @param tokenFile file containing the daemon authentication token
+     */
+    public DaemonClient(int port, Path tokenFile) {
+        this.port = port;
+        this.tokenFile = tokenFile;
+    }
+
+    /**
+     * Result of the job performed by the daemon
+     */
+    public static final class Result {
+        private final long warnings;
+        private final int maxScore;
+
+        Result(long warnings, int maxScore) {
+            this.warnings = warnings;
+            this.maxScore = maxScore;
+        }
+
+        /**
+         * @return number of warnings found
+         */
+        public long getWarnings() {
+            return warnings;
+        }
+
+        /**
+         * @return maximal score of reported warnings (0 if there are none)
+         */
+        public int getMaxScore() {
+            return maxScore;
+        }
+    }
+
+    /**
+     * Sends the job to the daemon and waits for its completion. The reports
+     * are written by the daemon.
+     * 
+     * @param job job to perform
+     * @param log consumer for the progress messages
+     * @return the job result
+     * @throws ConnectException if the daemon is not running (nobody listens
+     *         to the port or its token file is absent)
+     * @throws IOException if the job failed
+     */
+    public Result submit(AnalysisJob job, Consumer<String> log) throws IOException {
+        String token;
+        try {
+            token = new String(Files.readAllBytes(tokenFile), StandardCharsets.US_ASCII).trim();
+        } catch (NoSuchFileException e) {
+            throw new ConnectException("HuntBugs daemon is not running: token file " + tokenFile + " not found");
+        }
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                        StandardCharsets.UTF_8));
+                PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(),
+                        StandardCharsets.UTF_8))) {
+            out.println(AnalysisDaemon.AUTH + token);
+            job.write(out);
+            out.flush();
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("INFO ")) {
+                    log.accept(line.substring("INFO ".length()));
+                } else if (line.startsWith("DONE ")) {
+                    String[] parts = line.split(" ");
+                    try {
+                        return new Result(Long.parseLong(parts[1]), Integer.parseInt(parts[2]));
+                    } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                        throw new IOException("Malformed daemon reply: " + line);
+                    }
+                } else if (line.startsWith("ERROR ")) {
+                    throw new IOException("HuntBugs daemon failed: " + line.substring("ERROR ".length()));
+                } else {
+                    throw new IOException("Malformed daemon reply: " + line);
+                }
+            }
+            throw new IOException("HuntBugs daemon closed the connection unexpectedly");
+        }
+    }
+}
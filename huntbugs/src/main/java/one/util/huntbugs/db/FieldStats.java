@@ -19,15 +19,12 @@ import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Deque;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 
 import com.strobel.assembler.ir.Instruction;
 import com.strobel.assembler.ir.OpCode;
 import com.strobel.assembler.metadata.FieldDefinition;
 import com.strobel.assembler.metadata.FieldReference;
-import com.strobel.assembler.metadata.MethodBody;
 import com.strobel.assembler.metadata.MethodDefinition;
 import com.strobel.assembler.metadata.MethodReference;
 import com.strobel.assembler.metadata.TypeDefinition;
@@ -35,6 +32,7 @@ import com.strobel.assembler.metadata.TypeReference;
 import com.strobel.assembler.metadata.VariableReference;
 
 import one.util.huntbugs.registry.AbstractTypeDatabase;
+import one.util.huntbugs.registry.MethodScan;
 import one.util.huntbugs.registry.anno.TypeDatabase;
 import one.util.huntbugs.registry.anno.TypeDatabaseItem;
 import one.util.huntbugs.util.Types;
@@ -58,6 +56,8 @@ public class FieldStats extends AbstractTypeDatabase<FieldStats.TypeFieldStats>{
     public static final int ACCESS = READ | WRITE;
     public static final int UNRESOLVED = 0x10000000;
     
+    private final SimpleStack ss = new SimpleStack();
+    
     public FieldStats() {
         super(name -> new TypeFieldStats());
     }
@@ -66,26 +66,18 @@ public class FieldStats extends AbstractTypeDatabase<FieldStats.TypeFieldStats>{
         private static final Object UNKNOWN_CONST = new Object();
         private static final Object NULL_CONST = new Object();
 
-        Set<Instruction> seenLabels = new HashSet<>();
         Deque<Object> constStack = new ArrayDeque<>();
-        Object[] locals;
+        Object[] locals = {};
         
-        SimpleStack(int maxLocals) {
-            locals = new Object[maxLocals];
-            Arrays.fill(locals, UNKNOWN_CONST);
+        void reset(int maxLocals) {
+            if(locals.length < maxLocals)
+                locals = new Object[maxLocals];
+            reset();
         }
         
-        void registerJump(Instruction instr) {
-            if(instr.getOperandCount() == 1 && instr.getOperand(0) instanceof Instruction) {
-                seenLabels.add(instr.getOperand(0));
-            }
-        }
-
-        void preprocess(Instruction instr) {
-            if(seenLabels.contains(instr)) {
-                constStack.clear();
-                Arrays.fill(locals, UNKNOWN_CONST);
-            }
+        void reset() {
+            constStack.clear();
+            Arrays.fill(locals, UNKNOWN_CONST);
         }
         
         void set(int slot, Object cst) {
@@ -121,105 +113,105 @@ public class FieldStats extends AbstractTypeDatabase<FieldStats.TypeFieldStats>{
     @Override
     protected void visitType(TypeDefinition td) {
         getOrCreate(td);
-        for(MethodDefinition md : td.getDeclaredMethods()) {
-            MethodBody body = md.getBody();
-            if(body != null) {
-                SimpleStack ss = new SimpleStack(body.getMaxLocals());
-                for(Instruction instr : body.getInstructions()) {
-                    ss.registerJump(instr);
-                }
-                for(Instruction instr : body.getInstructions()) {
-                    ss.preprocess(instr);
-                    switch(instr.getOpCode()) {
-                    case ALOAD_0:
-                    case ALOAD_1:
-                    case ALOAD_2:
-                    case ALOAD_3:
-                        ss.push(ss.get(instr.getOpCode().getCode()-OpCode.ALOAD_0.getCode()));
-                        continue;
-                    case ALOAD:
-                        ss.push(ss.get(((VariableReference)instr.getOperand(0)).getSlot()));
-                        continue;
-                    case ASTORE_0:
-                    case ASTORE_1:
-                    case ASTORE_2:
-                    case ASTORE_3:
-                        ss.set(instr.getOpCode().getCode()-OpCode.ASTORE_0.getCode(), ss.poll());
-                        continue;
-                    case ASTORE:
-                        ss.set(((VariableReference)instr.getOperand(0)).getSlot(), ss.poll());
-                        continue;
-                    case LDC:
-                    case LDC_W:
-                        ss.push(instr.getOperand(0));
-                        continue;
-                    case INVOKESTATIC:
-                    case INVOKEVIRTUAL: {
-                        MethodReference mr = instr.getOperand(0);
-                        if (mr.getName().equals("newUpdater") && mr.getDeclaringType().getPackageName().equals(
-                            "java.util.concurrent.atomic") || mr.getName().equals("getDeclaredField") && Types.is(mr.getDeclaringType(),
-                                Class.class)) {
-                            Object fieldName = ss.poll();
-                            if(mr.getParameters().size() == 3) {
-                                ss.poll(); // field type for AtomicReferenceFieldUpdater
-                            }
-                            Object type = ss.poll();
-                            linkUncontrolled(type, fieldName);
-                        }
-                        if (mr.getDeclaringType().getInternalName().equals("java/lang/invoke/MethodHandles$Lookup")
-                            && (mr.getName().equals("findGetter") || mr.getName().equals("findSetter") || mr
-                                    .getName().startsWith("findStatic"))) {
-                            ss.poll();
-                            Object fieldName = ss.poll();
-                            Object type = ss.poll();
-                            linkUncontrolled(type, fieldName);
-                        }
-                        if (mr.getName().equals("getDeclaredFields") && Types.is(mr.getDeclaringType(), Class.class)) {
-                            Object type = ss.poll();
-                            linkUncontrolled(type, null);
-                        }
-                        break;
-                    }
-                    case ACONST_NULL:
-                        ss.push(null);
-                        continue;
-                    case PUTFIELD:
-                    case PUTSTATIC: {
-                        FieldReference fr = (FieldReference)instr.getOperand(0);
-                        FieldDefinition fd = fr.resolve();
-                        if(fd != null) {
-                            if(fd.isSynthetic())
-                                break;
-                            fr = fd;
-                        } // fd == null case is necessary to workaround procyon problem#301
-                        Object value = ss.poll();
-                        if(instr.getOpCode() == OpCode.PUTFIELD)
-                            ss.poll();
-                        getOrCreate(fr.getDeclaringType()).link(md, fr,
-                            instr.getOpCode() == OpCode.PUTSTATIC, true, value == null);
-                        continue;
-                    }
-                    case GETFIELD:
-                    case GETSTATIC:
-                        FieldReference fr = (FieldReference)instr.getOperand(0);
-                        FieldDefinition fd = fr.resolve();
-                        if(fd != null) {
-                            if(fd.isSynthetic())
-                                break;
-                            fr = fd;
-                        } // fd == null case is necessary to workaround procyon problem#301
-                        if(instr.getOpCode() == OpCode.GETFIELD)
-                            ss.poll();
-                        getOrCreate(fr.getDeclaringType()).link(md, fr,
-                            instr.getOpCode() == OpCode.GETSTATIC, false, false);
-                        ss.pushUnknown();
-                        continue;
-                    default:
-                    }
-                    ss.clear();
+    }
+    
+    @Override
+    protected boolean visitMethod(MethodScan scan) {
+        ss.reset(scan.getBody().getMaxLocals());
+        return true;
+    }
+    
+    @Override
+    protected void visitInstruction(MethodScan scan, Instruction instr) {
+        if(scan.isJumpTarget(instr))
+            ss.reset();
+        switch(instr.getOpCode()) {
+        case ALOAD_0:
+        case ALOAD_1:
+        case ALOAD_2:
+        case ALOAD_3:
+            ss.push(ss.get(instr.getOpCode().getCode()-OpCode.ALOAD_0.getCode()));
+            return;
+        case ALOAD:
+            ss.push(ss.get(((VariableReference)instr.getOperand(0)).getSlot()));
+            return;
+        case ASTORE_0:
+        case ASTORE_1:
+        case ASTORE_2:
+        case ASTORE_3:
+            ss.set(instr.getOpCode().getCode()-OpCode.ASTORE_0.getCode(), ss.poll());
+            return;
+        case ASTORE:
+            ss.set(((VariableReference)instr.getOperand(0)).getSlot(), ss.poll());
+            return;
+        case LDC:
+        case LDC_W:
+            ss.push(instr.getOperand(0));
+            return;
+        case INVOKESTATIC:
+        case INVOKEVIRTUAL: {
+            MethodReference mr = instr.getOperand(0);
+            if (mr.getName().equals("newUpdater") && mr.getDeclaringType().getPackageName().equals(
+                "java.util.concurrent.atomic") || mr.getName().equals("getDeclaredField") && Types.is(mr.getDeclaringType(),
+                    Class.class)) {
+                Object fieldName = ss.poll();
+                if(mr.getParameters().size() == 3) {
+                    ss.poll(); // field type for AtomicReferenceFieldUpdater
                 }
+                Object type = ss.poll();
+                linkUncontrolled(type, fieldName);
             }
+            if (mr.getDeclaringType().getInternalName().equals("java/lang/invoke/MethodHandles$Lookup")
+                && (mr.getName().equals("findGetter") || mr.getName().equals("findSetter") || mr
+                        .getName().startsWith("findStatic"))) {
+                ss.poll();
+                Object fieldName = ss.poll();
+                Object type = ss.poll();
+                linkUncontrolled(type, fieldName);
+            }
+            if (mr.getName().equals("getDeclaredFields") && Types.is(mr.getDeclaringType(), Class.class)) {
+                Object type = ss.poll();
+                linkUncontrolled(type, null);
+            }
+            break;
+        }
+        case ACONST_NULL:
+            ss.push(null);
+            return;
+        case PUTFIELD:
+        case PUTSTATIC: {
+            FieldReference fr = (FieldReference)instr.getOperand(0);
+            FieldDefinition fd = fr.resolve();
+            if(fd != null) {
+                if(fd.isSynthetic())
+                    break;
+                fr = fd;
+            } // fd == null case is necessary to workaround procyon problem#301
+            Object value = ss.poll();
+            if(instr.getOpCode() == OpCode.PUTFIELD)
+                ss.poll();
+            getOrCreate(fr.getDeclaringType()).link(scan.getMethod(), fr,
+                instr.getOpCode() == OpCode.PUTSTATIC, true, value == null);
+            return;
+        }
+        case GETFIELD:
+        case GETSTATIC:
+            FieldReference fr = (FieldReference)instr.getOperand(0);
+            FieldDefinition fd = fr.resolve();
+            if(fd != null) {
+                if(fd.isSynthetic())
+                    break;
+                fr = fd;
+            } // fd == null case is necessary to workaround procyon problem#301
+            if(instr.getOpCode() == OpCode.GETFIELD)
+                ss.poll();
+            getOrCreate(fr.getDeclaringType()).link(scan.getMethod(), fr,
+                instr.getOpCode() == OpCode.GETSTATIC, false, false);
+            ss.pushUnknown();
+            return;
+        default:
         }
+        ss.clear();
     }
     
     private void linkUncontrolled(Object type, Object fieldName) {
@@ -15,12 +15,12 @@
  */
 package one.util.huntbugs.db;
 
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
 import com.strobel.assembler.metadata.Flags;
-import com.strobel.assembler.metadata.IMetadataResolver;
 import com.strobel.assembler.metadata.MethodDefinition;
 import com.strobel.assembler.metadata.TypeDefinition;
 import com.strobel.assembler.metadata.TypeReference;
@@ -28,9 +28,7 @@ import com.strobel.assembler.metadata.TypeReference;
 import one.util.huntbugs.registry.AbstractTypeDatabase;
 import one.util.huntbugs.registry.anno.TypeDatabase;
 import one.util.huntbugs.registry.anno.TypeDatabaseItem;
-import one.util.huntbugs.util.Methods;
 import one.util.huntbugs.util.Types;
-import one.util.huntbugs.warning.WarningAnnotation.MemberInfo;
 
 /**
  * @author Tagir Valeev
@@ -46,6 +44,10 @@ public class Hierarchy extends AbstractTypeDatabase<Hierarchy.TypeHierarchy> {
     protected void visitType(TypeDefinition td) {
         TypeHierarchy th = getOrCreate(td);
         th.flags = td.getFlags();
+        for (MethodDefinition md : td.getDeclaredMethods())
+            th.declaredMethods.set(getSymbols().nameAndTypeId(md.getName(), parameters(md)));
+        // Declared methods of the type are part of the cached overridden methods of its supertypes
+        th.invalidate();
         link(th, td.getBaseType());
         for (TypeReference id : td.getExplicitInterfaces())
             link(th, id);
@@ -54,10 +56,17 @@ public class Hierarchy extends AbstractTypeDatabase<Hierarchy.TypeHierarchy> {
     public boolean isOverridden(MethodDefinition md) {
         if(md.isStatic() || md.isFinal() || md.getDeclaringType().isFinal())
             return false;
-        IMetadataResolver resolver = md.getDeclaringType().getResolver();
-        MemberInfo mi = new MemberInfo(md);
+        int id = getSymbols().findNameAndType(md.getName(), parameters(md));
+        if (id == -1)
+            return false;
         TypeHierarchy th = get(md.getDeclaringType());
-        return th != null && th.isOverridden(resolver, mi);
+        return th != null && th.getOverriddenMethods().get(id);
+    }
+
+    // Return type is ignored like in Methods.findMethod
+    private static String parameters(MethodDefinition md) {
+        String sig = md.getErasedSignature();
+        return sig.substring(0, sig.indexOf(')') + 1);
     }
     
     private void link(TypeHierarchy th, TypeReference superType) {
@@ -65,7 +74,9 @@ public class Hierarchy extends AbstractTypeDatabase<Hierarchy.TypeHierarchy> {
             return;
         TypeHierarchy superTh = getOrCreate(superType);
         th.superClasses.add(superTh);
-        superTh.subClasses.add(th);
+        if (superTh.subClasses.add(th)) {
+            superTh.invalidate();
+        }
     }
 
     @TypeDatabaseItem(parentDatabase = Hierarchy.class)
@@ -74,6 +85,9 @@ public class Hierarchy extends AbstractTypeDatabase<Hierarchy.TypeHierarchy> {
         long flags = Flags.LOAD_BODY_FAILED;
         final Set<TypeHierarchy> superClasses = new HashSet<>();
         final Set<TypeHierarchy> subClasses = new HashSet<>();
+        final BitSet declaredMethods = new BitSet();
+        // ids of methods declared in any subclass, computed on demand
+        private volatile BitSet overriddenMethods;
 
         public TypeHierarchy(String name) {
             this.internalName = name;
@@ -91,25 +105,34 @@ public class Hierarchy extends AbstractTypeDatabase<Hierarchy.TypeHierarchy> {
             return Collections.unmodifiableSet(subClasses);
         }
         
-        boolean isOverridden(IMetadataResolver resolver, MemberInfo mi) {
-            for(TypeHierarchy th : subClasses) {
-                TypeReference str = resolver.lookupType(th.internalName);
-                if(str == null)
-                    continue;
-                TypeDefinition std = resolver.resolve(str);
-                if(std == null)
-                    continue;
-                MethodDefinition res = Methods.findMethod(std, mi);
-                if(res != null)
-                    return true;
-            }
-            for(TypeHierarchy th : subClasses) {
-                if(th.isOverridden(resolver, mi))
-                    return true;
+        BitSet getOverriddenMethods() {
+            BitSet result = overriddenMethods;
+            if (result == null) {
+                result = new BitSet();
+                for (TypeHierarchy th : subClasses) {
+                    result.or(th.declaredMethods);
+                    result.or(th.getOverriddenMethods());
+                }
+                overriddenMethods = result;
             }
-            return false;
+            return result;
         }
         
+        /**
+         * Drops the cached overridden methods of this type and its
+         * supertypes. If the cache of some type is absent, so are the caches
+         * of its supertypes, as computing them fills the caches of all the
+         * subtypes.
+         */
+        void invalidate() {
+            if (overriddenMethods != null) {
+                overriddenMethods = null;
+                for (TypeHierarchy th : superClasses) {
+                    th.invalidate();
+                }
+            }
+        }
+
         public boolean isResolved() {
             return !hasFlag(Flags.LOAD_BODY_FAILED);
         }
@@ -16,20 +16,24 @@
 package one.util.huntbugs.db;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
+
 import com.strobel.assembler.ir.Instruction;
+import com.strobel.assembler.ir.OpCode;
 import com.strobel.assembler.metadata.FieldDefinition;
 import com.strobel.assembler.metadata.FieldReference;
 import com.strobel.assembler.metadata.Flags;
-import com.strobel.assembler.metadata.MethodBody;
 import com.strobel.assembler.metadata.MethodDefinition;
 import com.strobel.assembler.metadata.MethodReference;
 import com.strobel.assembler.metadata.TypeDefinition;
 import com.strobel.assembler.metadata.TypeReference;
 
 import one.util.huntbugs.registry.AbstractTypeDatabase;
+import one.util.huntbugs.registry.MethodScan;
 import one.util.huntbugs.registry.anno.TypeDatabase;
 import one.util.huntbugs.util.Methods;
 import one.util.huntbugs.warning.WarningAnnotation.MemberInfo;
@@ -48,15 +52,42 @@ public class MethodStats extends AbstractTypeDatabase<Boolean> {
     public static final long METHOD_FINAL = 0x20;
     public static final long METHOD_SUPPORTED = 0x40;
 
-    Map<MemberInfo, MethodData> data = new HashMap<>();
+    // Instructions which affect the method flags; only these are visited
+    private static final Map<OpCode, BiConsumer<MethodStats, Instruction>> HANDLERS = new EnumMap<>(OpCode.class);
+
+    static {
+        HANDLERS.put(OpCode.NEW, MethodStats::visitNew);
+        for (OpCode opCode : EnumSet.of(OpCode.INVOKEINTERFACE, OpCode.INVOKESPECIAL, OpCode.INVOKESTATIC,
+            OpCode.INVOKEVIRTUAL)) {
+            HANDLERS.put(opCode, MethodStats::visitInvoke);
+        }
+        HANDLERS.put(OpCode.GETFIELD, MethodStats::visitGetField);
+        HANDLERS.put(OpCode.GETSTATIC, MethodStats::visitGetField);
+        for (OpCode opCode : EnumSet.of(OpCode.PUTFIELD, OpCode.PUTSTATIC, OpCode.INVOKEDYNAMIC, OpCode.AASTORE,
+            OpCode.DASTORE, OpCode.BASTORE, OpCode.CASTORE, OpCode.SASTORE, OpCode.IASTORE, OpCode.LASTORE,
+            OpCode.FASTORE)) {
+            HANDLERS.put(opCode, setFlag(METHOD_MAY_HAVE_SIDE_EFFECT));
+        }
+        HANDLERS.put(OpCode.ATHROW, setFlag(METHOD_MAY_THROW));
+        for (OpCode opCode : EnumSet.of(OpCode.ARETURN, OpCode.IRETURN, OpCode.LRETURN, OpCode.FRETURN,
+            OpCode.DRETURN, OpCode.RETURN)) {
+            HANDLERS.put(opCode, setFlag(METHOD_MAY_RETURN_NORMALLY));
+        }
+    }
+
+    // indexed by member id
+    List<MethodData> data = new ArrayList<>();
+    // state of the method being scanned
+    private MethodData current;
+    private boolean sawUnsupported, sawOtherNew;
 
     public MethodStats() {
         super(type -> Boolean.TRUE);
     }
 
     private MethodData getMethodData(MethodDefinition md) {
-        MemberInfo mi = new MemberInfo(md);
-        MethodData mdata = data.get(mi);
+        int id = getSymbols().memberId(md);
+        MethodData mdata = get(id);
         if (mdata != null)
             return mdata;
         if (md.isAbstract()) {
@@ -67,10 +98,16 @@ public class MethodStats extends AbstractTypeDatabase<Boolean> {
         if (mdata == null) {
             mdata = new MethodData();
         }
-        data.put(mi, mdata);
+        while (data.size() <= id)
+            data.add(null);
+        data.set(id, mdata);
         return mdata;
     }
 
+    private MethodData get(int id) {
+        return id < 0 || id >= data.size() ? null : data.get(id);
+    }
+
     @Override
     protected void visitType(TypeDefinition td) {
         for (MethodDefinition md : td.getDeclaredMethods()) {
@@ -78,7 +115,7 @@ public class MethodStats extends AbstractTypeDatabase<Boolean> {
             if (md.isFinal() || td.isFinal() || md.isStatic() || md.isPrivate()) {
                 mdata.flags |= METHOD_FINAL;
             }
-            visitMethod(mdata, md);
+            visitNative(mdata, md);
             for (MethodDefinition superMethod : Methods.findSuperMethods(md)) {
                 getMethodData(superMethod).addSubMethod(mdata);
             }
@@ -86,94 +123,79 @@ public class MethodStats extends AbstractTypeDatabase<Boolean> {
     }
 
     public MethodData getStats(MemberInfo mi) {
-        return data.get(mi);
+        return get(getSymbols().findMember(mi.getTypeName(), mi.getName(), mi.getSignature()));
     }
 
     public MethodData getStats(MethodReference mr) {
-        return data.get(new MemberInfo(mr));
+        return get(getSymbols().findMember(mr));
     }
 
-    private void visitMethod(MethodData mdata, MethodDefinition md) {
-        MethodBody body = md.getBody();
+    private static void visitNative(MethodData mdata, MethodDefinition md) {
         if (Flags.testAny(md.getFlags(), Flags.NATIVE)) {
             mdata.flags |= METHOD_MAY_HAVE_SIDE_EFFECT | METHOD_MAY_RETURN_NORMALLY | METHOD_MAY_THROW
                 | METHOD_NON_TRIVIAL | METHOD_SUPPORTED;
         }
-        if (body != null) {
-            visitBody(mdata, body);
+    }
+
+    @Override
+    protected boolean visitMethod(MethodScan scan) {
+        current = getMethodData(scan.getMethod());
+        current.flags |= METHOD_HAS_BODY;
+        if (scan.getBody().getInstructions().size() > 2) {
+            current.flags |= METHOD_NON_TRIVIAL;
         }
+        sawUnsupported = sawOtherNew = false;
+        return true;
+    }
+
+    @Override
+    protected boolean isInteresting(OpCode opCode) {
+        return HANDLERS.containsKey(opCode);
+    }
+
+    @Override
+    protected void visitInstruction(MethodScan scan, Instruction instr) {
+        HANDLERS.get(instr.getOpCode()).accept(this, instr);
     }
 
-    private void visitBody(MethodData mdata, MethodBody body) {
-        mdata.flags |= METHOD_HAS_BODY;
-        if (body.getInstructions().size() > 2) {
-            mdata.flags |= METHOD_NON_TRIVIAL;
+    private void visitNew(Instruction instr) {
+        TypeReference tr = (TypeReference) instr.getOperand(0);
+        if (tr.getInternalName().equals("java/lang/UnsupportedOperationException")) {
+            sawUnsupported = true;
+        } else {
+            sawOtherNew = true;
         }
-        boolean sawUnsupported = false, sawOtherNew = false;
-        for (Instruction instr : body.getInstructions()) {
-            switch (instr.getOpCode()) {
-            case NEW: {
-                TypeReference tr = (TypeReference) instr.getOperand(0);
-                if (tr.getInternalName().equals("java/lang/UnsupportedOperationException")) {
-                    sawUnsupported = true;
-                } else {
-                    sawOtherNew = true;
-                }
-                break;
-            }
-            case INVOKEINTERFACE:
-            case INVOKESPECIAL:
-            case INVOKESTATIC:
-            case INVOKEVIRTUAL: {
-                MethodReference mr = (MethodReference) instr.getOperand(0);
-                if (!Methods.isSideEffectFree(mr)) {
-                    mdata.flags |= METHOD_MAY_HAVE_SIDE_EFFECT;
-                }
-                if (Methods.knownToThrow(mr)) {
-                    mdata.flags |= METHOD_MAY_THROW;
-                }
-                break;
-            }
-            case GETFIELD:
-            case GETSTATIC:
-                if ((mdata.flags & METHOD_MAY_HAVE_SIDE_EFFECT) == 0) {
-                    FieldReference fr = (FieldReference) instr.getOperand(0);
-                    FieldDefinition fd = fr.resolve();
-                    if (fd != null && Flags.testAny(fd.getFlags(), Flags.VOLATILE)) {
-                        mdata.flags |= METHOD_MAY_HAVE_SIDE_EFFECT;
-                    }
-                }
-                break;
-            case PUTFIELD:
-            case PUTSTATIC:
-            case INVOKEDYNAMIC:
-            case AASTORE:
-            case DASTORE:
-            case BASTORE:
-            case CASTORE:
-            case SASTORE:
-            case IASTORE:
-            case LASTORE:
-            case FASTORE:
-                mdata.flags |= METHOD_MAY_HAVE_SIDE_EFFECT;
-                break;
-            case ATHROW:
-                mdata.flags |= METHOD_MAY_THROW;
-                break;
-            case ARETURN:
-            case IRETURN:
-            case LRETURN:
-            case FRETURN:
-            case DRETURN:
-            case RETURN:
-                mdata.flags |= METHOD_MAY_RETURN_NORMALLY;
-                break;
-            default:
+    }
+
+    private void visitInvoke(Instruction instr) {
+        MethodReference mr = (MethodReference) instr.getOperand(0);
+        if (!Methods.isSideEffectFree(mr)) {
+            current.flags |= METHOD_MAY_HAVE_SIDE_EFFECT;
+        }
+        if (Methods.knownToThrow(mr)) {
+            current.flags |= METHOD_MAY_THROW;
+        }
+    }
+
+    private void visitGetField(Instruction instr) {
+        if ((current.flags & METHOD_MAY_HAVE_SIDE_EFFECT) == 0) {
+            FieldReference fr = (FieldReference) instr.getOperand(0);
+            FieldDefinition fd = fr.resolve();
+            if (fd != null && Flags.testAny(fd.getFlags(), Flags.VOLATILE)) {
+                current.flags |= METHOD_MAY_HAVE_SIDE_EFFECT;
             }
         }
-        if (!mdata.testAny(METHOD_MAY_THROW, true) || mdata.testAny(METHOD_MAY_RETURN_NORMALLY, true) || !sawUnsupported
+    }
+
+    private static BiConsumer<MethodStats, Instruction> setFlag(long flag) {
+        return (ms, instr) -> ms.current.flags |= flag;
+    }
+
+    @Override
+    protected void visitMethodEnd(MethodScan scan) {
+        if (!current.testAny(METHOD_MAY_THROW, true) || current.testAny(METHOD_MAY_RETURN_NORMALLY, true) || !sawUnsupported
             || sawOtherNew) {
-            mdata.flags |= METHOD_SUPPORTED;
+            current.flags |= METHOD_SUPPORTED;
         }
     }
 
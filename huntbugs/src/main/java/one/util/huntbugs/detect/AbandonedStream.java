@@ -35,7 +35,7 @@ import one.util.huntbugs.util.Types;
 @WarningDefinition(category="Correctness", name="AbandonedStream", maxScore=80)
 @WarningDefinition(category="BadPractice", name="StreamMethodMayNotReturnItself", maxScore=30)
 public class AbandonedStream {
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS, minVersion=8)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes=AstCode.InvokeInterface, minVersion=8)
     public void visit(Expression expr, MethodContext mc) {
         if(expr.getCode() == AstCode.InvokeInterface) {
             MethodReference mr = (MethodReference) expr.getOperand();
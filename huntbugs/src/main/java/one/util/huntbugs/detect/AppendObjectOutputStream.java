@@ -38,7 +38,7 @@ public class AppendObjectOutputStream {
     private static final LocationRole STREAM_CREATED_AT = LocationRole.forName("STREAM_CREATED_AT");
     private static final TypeRole OOS_TYPE = TypeRole.forName("OOS_TYPE");
     
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = AstCode.InitObject)
     public void visit(Expression expr, MethodContext mc) {
         if (expr.getCode() != AstCode.InitObject)
             return;
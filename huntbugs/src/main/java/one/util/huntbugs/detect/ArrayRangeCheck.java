@@ -43,7 +43,8 @@ public class ArrayRangeCheck {
     private static final NumberRole MAX_LENGTH = NumberRole.forName("MAX_LENGTH");  
     private static final long IMPOSSIBLE_ARRAY_LENGTH = Integer.MAX_VALUE + 1L;
 
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = {
+        AstCode.LoadElement, AstCode.StoreElement, AstCode.InvokeStatic })
     public void visit(MethodContext mc, NodeChain nc, Expression expr) {
         if ((expr.getCode() == AstCode.LoadElement || expr.getCode() == AstCode.StoreElement)
                 && !nc.isInTry("java/lang/ArrayIndexOutOfBoundsException", "java/lang/IndexOutOfBoundsException")) {
@@ -28,6 +28,7 @@ import one.util.huntbugs.flow.ValuesFlow;
 import one.util.huntbugs.registry.MethodContext;
 import one.util.huntbugs.registry.anno.AstNodes;
 import one.util.huntbugs.registry.anno.AstVisitor;
+import one.util.huntbugs.registry.anno.RequiredTypes;
 import one.util.huntbugs.registry.anno.WarningDefinition;
 import one.util.huntbugs.util.Exprs;
 import one.util.huntbugs.util.NodeChain;
@@ -40,11 +41,12 @@ import one.util.huntbugs.warning.Role.MemberRole;
  *
  */
 @WarningDefinition(category = "Multithreading", name = "NonAtomicOperationOnConcurrentMap", maxScore = 70)
+@RequiredTypes("java/util/concurrent/")
 public class AtomicConcurrent {
     private static final MemberRole FIRST_METHOD = MemberRole.forName("FIRST_METHOD"); 
     private static final MemberRole SECOND_METHOD = MemberRole.forName("SECOND_METHOD"); 
     
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = { AstCode.InvokeVirtual, AstCode.InvokeInterface })
     public void visit(Expression expr, NodeChain nc, MethodContext mc, MethodDefinition md) {
         if (expr.getCode() == AstCode.InvokeVirtual || expr.getCode() == AstCode.InvokeInterface) {
             MethodReference mr = (MethodReference) expr.getOperand();
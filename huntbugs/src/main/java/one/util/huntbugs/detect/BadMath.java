@@ -54,7 +54,7 @@ public class BadMath {
     private static final NumberRole AND_OPERAND = NumberRole.forName("AND_OPERAND");
     private static final NumberRole OR_OPERAND = NumberRole.forName("OR_OPERAND");
     
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = AstCode.Shl)
     public void checkWrongPriority(Expression expr, MethodContext mc, MethodDefinition md) {
         if(expr.getCode() == AstCode.Shl) {
             Expression leftOp = expr.getArguments().get(0);
@@ -39,7 +39,7 @@ import one.util.huntbugs.warning.Roles;
 public class BadMonitorObject {
     private static final TypeRole MONITOR_TYPE = TypeRole.forName("MONITOR_TYPE");
     
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes=AstCode.MonitorEnter, requires={})
     public void visit(Expression expr, MethodContext mc) {
         if(expr.getCode() == AstCode.MonitorEnter) {
             Expression arg = expr.getArguments().get(0);
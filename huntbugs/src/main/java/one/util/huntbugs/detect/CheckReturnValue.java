@@ -35,7 +35,7 @@ import one.util.huntbugs.util.Types;
 @WarningDefinition(category="BadPractice", name="ReturnValueOfRead", maxScore=60)
 @WarningDefinition(category="BadPractice", name="ReturnValueOfSkip", maxScore=50)
 public class CheckReturnValue {
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, requires={})
     public void visit(Expression expr, NodeChain nc, MethodContext mc) {
         if(nc.getNode() instanceof Expression)
             return;
@@ -38,7 +38,7 @@ import one.util.huntbugs.warning.Roles;
 @WarningDefinition(category = "BadPractice", name = "NegatingComparatorResult", maxScore = 50)
 @WarningDefinition(category = "Correctness", name = "ComparingComparatorResultWithNumber", maxScore = 70)
 public class CompareUsage {
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, requires = {})
     public void visit(Expression expr, MethodContext mc) {
         if (expr.getCode() == AstCode.Neg) {
             Expression child = ValuesFlow.findFirst(Exprs.getChild(expr, 0), this::isCompare);
@@ -40,7 +40,7 @@ import one.util.huntbugs.warning.Roles;
  */
 @WarningDefinition(category="Correctness", name="ContravariantArrayStore", maxScore=60)
 public class CovariantArrays {
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes=AstCode.StoreElement, requires={})
     public void visit(Expression expr, MethodContext mc, Hierarchy h) {
         if(expr.getCode() == AstCode.StoreElement) {
             TypeReference arrayType = ValuesFlow.reduceType(Exprs.getChild(expr, 0));
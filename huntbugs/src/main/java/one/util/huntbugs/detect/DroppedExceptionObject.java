@@ -34,7 +34,7 @@ import one.util.huntbugs.warning.Roles;
  */
 @WarningDefinition(category="Correctness", name="DroppedException", maxScore=60)
 public class DroppedExceptionObject {
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes={AstCode.InitObject, AstCode.InvokeSpecial}, requires={})
     public void visit(Expression expr, NodeChain nc, MethodContext mc) {
         if (expr.getCode() == AstCode.InitObject || expr.getCode() == AstCode.InvokeSpecial
             && expr.getArguments().get(0).getCode() == AstCode.__New) { // Probably procyon bug: invokespecial(__new) is not collapsed to InitObject 
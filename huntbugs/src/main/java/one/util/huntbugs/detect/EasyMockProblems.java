@@ -15,18 +15,14 @@
  */
 package one.util.huntbugs.detect;
 
-import java.util.stream.StreamSupport;
-
-import com.strobel.assembler.ir.ConstantPool.TypeInfoEntry;
 import com.strobel.assembler.metadata.MethodReference;
-import com.strobel.assembler.metadata.TypeDefinition;
 import com.strobel.decompiler.ast.AstCode;
 import com.strobel.decompiler.ast.Expression;
 
 import one.util.huntbugs.registry.MethodContext;
 import one.util.huntbugs.registry.anno.AstNodes;
 import one.util.huntbugs.registry.anno.AstVisitor;
-import one.util.huntbugs.registry.anno.ClassVisitor;
+import one.util.huntbugs.registry.anno.RequiredTypes;
 import one.util.huntbugs.registry.anno.WarningDefinition;
 import one.util.huntbugs.util.Exprs;
 import one.util.huntbugs.util.Nodes;
@@ -36,14 +32,9 @@ import one.util.huntbugs.util.Nodes;
  *
  */
 @WarningDefinition(category = "RedundantCode", name = "UselessEasyMockCall", maxScore = 50)
+@RequiredTypes("org/easymock/")
 public class EasyMockProblems {
-    @ClassVisitor
-    public boolean check(TypeDefinition td) {
-        return StreamSupport.stream(td.getConstantPool().spliterator(), false).anyMatch(
-            entry -> entry instanceof TypeInfoEntry && ((TypeInfoEntry) entry).getName().startsWith("org/easymock/"));
-    }
-
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = AstCode.InvokeStatic)
     public void visit(Expression expr, MethodContext mc) {
         if (expr.getCode() == AstCode.InvokeStatic) {
             MethodReference mr = (MethodReference) expr.getOperand();
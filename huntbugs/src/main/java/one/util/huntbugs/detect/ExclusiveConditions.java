@@ -50,7 +50,7 @@ public class ExclusiveConditions {
         reported = new HashSet<>();
     }
 
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = { AstCode.LogicalAnd, AstCode.LogicalOr })
     public void visit(Expression expr, MethodContext mc) {
         if (expr.getCode() == AstCode.LogicalAnd) {
             if (Nodes.isSideEffectFree(expr)) {
@@ -53,7 +53,7 @@ public class ExposeRepresentation {
         return (md.isPublic() || md.isProtected()) && !md.getParameters().isEmpty();
     }
 
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, requires = {})
     public void visit(Expression expr, NodeChain nc, MethodContext mc, MethodDefinition md, Mutability m) {
         FieldDefinition fd = getField(expr, md);
         if (fd == null)
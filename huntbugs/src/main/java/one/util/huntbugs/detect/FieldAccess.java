@@ -117,7 +117,8 @@ public class FieldAccess {
     private final Map<String, FieldRecord> fields = new HashMap<>();
     private boolean fullyAnalyzed = true;
 
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes={
+        AstCode.PutField, AstCode.PutStatic, AstCode.GetField, AstCode.GetStatic})
     public void visitCode(Expression expr, NodeChain nc, MethodContext mc, MethodDefinition md, TypeDefinition td, Mutability m) {
         if(expr.getCode() == AstCode.PutField || expr.getCode() == AstCode.PutStatic ||
                 expr.getCode() == AstCode.GetField || expr.getCode() == AstCode.GetStatic) {
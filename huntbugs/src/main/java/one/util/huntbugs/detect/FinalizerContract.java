@@ -44,7 +44,7 @@ import one.util.huntbugs.warning.Roles;
 @WarningDefinition(category = "BadPractice", name = "FinalizeOnlyNullsFields", maxScore = 65)
 @WarningDefinition(category = "MaliciousCode", name = "FinalizePublic", maxScore = 60)
 public class FinalizerContract {
-    @AstVisitor(nodes = AstNodes.ROOT, methodName = "finalize", methodSignature = "()V")
+    @AstVisitor(nodes = AstNodes.ROOT, methodName = "finalize", methodSignature = "()V", requires = {})
     public void visitFinalizer(Block body, MethodContext mc, MethodDefinition md) {
         MethodDefinition superfinalizer = getSuperfinalizer(md.getDeclaringType());
         if (md.isPublic()) {
@@ -91,7 +91,7 @@ public class FinalizerContract {
                 .getOperand()));
     }
 
-    @AstVisitor
+    @AstVisitor(requires = {})
     public void visit(Node node, MethodContext mc, MethodDefinition md) {
         if (Nodes.isOp(node, AstCode.InvokeVirtual) && isFinalizer((MethodReference) ((Expression) node)
                 .getOperand())) {
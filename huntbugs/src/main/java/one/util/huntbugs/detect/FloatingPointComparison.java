@@ -41,7 +41,7 @@ import one.util.huntbugs.warning.Roles;
  */
 @WarningDefinition(category = "BadPractice", name = "FloatComparison", maxScore = 40)
 public class FloatingPointComparison {
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes={AstCode.CmpEq, AstCode.CmpNe})
     public void visit(Expression node, MethodContext ctx, MethodDefinition md) {
         if (node.getCode() != AstCode.CmpEq && node.getCode() != AstCode.CmpNe)
             return;
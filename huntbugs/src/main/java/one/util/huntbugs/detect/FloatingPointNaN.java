@@ -32,7 +32,7 @@ import one.util.huntbugs.warning.Role.StringRole;
 public class FloatingPointNaN {
     private static final StringRole USED_TYPE = StringRole.forName("USED_TYPE");
     
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, requires={})
     public void visit(Expression node, MethodContext ctx) {
         if(node.getCode().isComparison()) {
             Nodes.ifBinaryWithConst(node, (arg, constant) -> {
@@ -37,7 +37,7 @@ import one.util.huntbugs.warning.Roles;
  */
 @WarningDefinition(category="BadPractice", name="IgnoredException", maxScore=43)
 public class IgnoredException {
-    @AstVisitor
+    @AstVisitor(requires={})
     public void visit(Node node, MethodContext mc) {
         if(node instanceof CatchBlock) {
             CatchBlock cb = (CatchBlock)node;
@@ -33,7 +33,7 @@ import one.util.huntbugs.warning.Roles;
  */
 @WarningDefinition(category="Correctness", name="PrimitiveArrayPassedAsVarArg", maxScore=60)
 public class IncorrectVarArg {
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, requires={})
     public void visit(Expression expr, MethodContext mc) {
         if(expr.getOperand() instanceof MethodReference) {
             MethodReference mr = (MethodReference) expr.getOperand();
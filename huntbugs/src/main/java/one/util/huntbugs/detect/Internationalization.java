@@ -77,7 +77,7 @@ public class Internationalization {
         add("java/util/Formatter", "<init>", "(Ljava/io/OutputStream;)V", "(Ljava/io/OutputStream;Ljava/lang/String;)V");
     }
     
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes={AstCode.InvokeVirtual, AstCode.InitObject}, requires={})
     public void visit(Expression expr, MethodContext mc) {
         if(expr.getCode() == AstCode.InvokeVirtual || expr.getCode() == AstCode.InitObject) {
             MethodReference mr = (MethodReference) expr.getOperand();
@@ -86,7 +86,7 @@ public class Internationalization {
                 mc.report("ConvertCaseWithDefaultLocale", 0, expr, Roles.REPLACEMENT_METHOD.create(mr.getDeclaringType()
                         .getInternalName(), mr.getName(), "(Ljava/util/Locale;)Ljava/lang/String;"));
             } else {
-                MemberInfo mi = new MemberInfo(mr);
+                MemberInfo mi = MemberInfo.of(mr);
                 if(defEncodingMethods.containsKey(mi)) {
                     if(!expr.getArguments().isEmpty()) {
                         Expression arg = Exprs.getChild(expr, 0);
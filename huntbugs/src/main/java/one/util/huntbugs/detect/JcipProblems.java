@@ -23,6 +23,7 @@ import com.strobel.assembler.metadata.annotations.CustomAnnotation;
 import one.util.huntbugs.registry.FieldContext;
 import one.util.huntbugs.registry.anno.ClassVisitor;
 import one.util.huntbugs.registry.anno.FieldVisitor;
+import one.util.huntbugs.registry.anno.RequiredTypes;
 import one.util.huntbugs.registry.anno.WarningDefinition;
 
 /**
@@ -30,6 +31,7 @@ import one.util.huntbugs.registry.anno.WarningDefinition;
  *
  */
 @WarningDefinition(category="BadPractice", name="NonFinalFieldInImmutableClass", maxScore=60)
+@RequiredTypes({"net/jcip/annotations/", "javax/annotation/concurrent/"})
 public class JcipProblems {
     @ClassVisitor
     public boolean checkClass(TypeDefinition td) {
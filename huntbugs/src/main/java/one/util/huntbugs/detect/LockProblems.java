@@ -26,6 +26,7 @@ import one.util.huntbugs.flow.ValuesFlow;
 import one.util.huntbugs.registry.MethodContext;
 import one.util.huntbugs.registry.anno.AstNodes;
 import one.util.huntbugs.registry.anno.AstVisitor;
+import one.util.huntbugs.registry.anno.RequiredTypes;
 import one.util.huntbugs.registry.anno.WarningDefinition;
 import one.util.huntbugs.util.Types;
 import one.util.huntbugs.warning.Roles;
@@ -36,10 +37,11 @@ import one.util.huntbugs.warning.Role.TypeRole;
  *
  */
 @WarningDefinition(category = "Multithreading", name = "IncorrectConcurrentMethod", maxScore = 70)
+@RequiredTypes("java/util/concurrent/")
 public class LockProblems {
     private static final TypeRole TARGET = TypeRole.forName("TARGET");
 
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = AstCode.InvokeVirtual, requires = {})
     public void visit(Expression expr, MethodContext mc) {
         if (expr.getCode() != AstCode.InvokeVirtual)
             return;
@@ -71,7 +71,7 @@ public class MutableServletField {
         return !md.isConstructor() && !md.getName().equals("init") && !md.getName().equals("destroy") && !Flags.testAny(md.getFlags(), Flags.SYNCHRONIZED);
     }
     
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes=AstCode.PutField)
     public void visitCode(Expression expr, NodeChain nc, MethodContext mc, MethodDefinition md, TypeDefinition td) {
         if(expr.getCode() == AstCode.PutField) {
             FieldDefinition fd = ((FieldReference) expr.getOperand()).resolve();
@@ -131,7 +131,7 @@ public class Naming {
         }
     }
 
-    @AstVisitor(nodes = AstNodes.ROOT)
+    @AstVisitor(nodes = AstNodes.ROOT, requires = {})
     public void checkSameAsConstructor(Block root, MethodDefinition md, TypeDefinition td, MethodContext mc) {
         if (md.getName().equals(td.getSimpleName()) && md.getReturnType().isVoid() && !md.isDeprecated()) {
             int priority = 0;
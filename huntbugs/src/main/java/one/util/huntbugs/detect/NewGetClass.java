@@ -15,16 +15,17 @@
  */
 package one.util.huntbugs.detect;
 
+import com.strobel.assembler.ir.Instruction;
+import com.strobel.assembler.ir.OpCode;
 import com.strobel.assembler.metadata.MethodReference;
-import com.strobel.decompiler.ast.AstCode;
-import com.strobel.decompiler.ast.Expression;
 
 import one.util.huntbugs.registry.MethodContext;
-import one.util.huntbugs.registry.anno.AstNodes;
-import one.util.huntbugs.registry.anno.AstVisitor;
+import one.util.huntbugs.registry.MethodScan;
+import one.util.huntbugs.registry.anno.BytecodeVisitor;
 import one.util.huntbugs.registry.anno.WarningDefinition;
 import one.util.huntbugs.util.Methods;
 import one.util.huntbugs.warning.Role.TypeRole;
+import one.util.huntbugs.warning.Roles;
 
 /**
  * @author Tagir Valeev
@@ -34,12 +35,21 @@ import one.util.huntbugs.warning.Role.TypeRole;
 public class NewGetClass {
     private static final TypeRole OBJECT_TYPE = TypeRole.forName("OBJECT_TYPE");
 
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
-    public void visit(Expression node, MethodContext ctx) {
-        if(node.getCode() == AstCode.InvokeVirtual) {
-            MethodReference ref = (MethodReference) node.getOperand();
-            if (Methods.isGetClass(ref) && node.getArguments().get(0).getCode() == AstCode.InitObject) {
-                ctx.report("NewForGetClass", 0, node, OBJECT_TYPE.create(ref.getDeclaringType()));
+    @BytecodeVisitor(opCodes=OpCode.INVOKEVIRTUAL)
+    public void visit(Instruction instr, MethodScan scan, MethodContext ctx) {
+        MethodReference ref = instr.getOperand(0);
+        if (Methods.isGetClass(ref) && !scan.isJumpTarget(instr)) {
+            // Constructor returns nothing, so the receiver is the newly created object
+            Instruction prev = instr.getPrevious();
+            if (prev != null && prev.getOpCode() == OpCode.INVOKESPECIAL) {
+                MethodReference ctor = prev.getOperand(0);
+                if (ctor.isConstructor()) {
+                    // Report the call on the created type as the AST-based version did,
+                    // rather than java/lang/Object.getClass() from the class file
+                    ctx.report("NewForGetClass", 0, instr, OBJECT_TYPE.create(ctor.getDeclaringType()),
+                        Roles.CALLED_METHOD.create(ctor.getDeclaringType().getInternalName(), ref.getName(), ref
+                                .getErasedSignature()));
+                }
             }
         }
     }
@@ -39,7 +39,7 @@ import one.util.huntbugs.warning.Role.TypeRole;
 public class NoRuntimeRetention {
     private static final TypeRole ANNOTATION = TypeRole.forName("ANNOTATION");
 
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = AstCode.InvokeVirtual)
     public void visit(Expression expr, MethodContext mc, DeclaredAnnotations da) {
         if (expr.getCode() == AstCode.InvokeVirtual && expr.getArguments().size() == 2) {
             MethodReference mr = (MethodReference) expr.getOperand();
@@ -37,7 +37,7 @@ import one.util.huntbugs.warning.WarningAnnotation;
 @WarningDefinition(category = "CodeStyle", name = "NonShortCircuit", maxScore = 50)
 @WarningDefinition(category = "Correctness", name = "NonShortCircuitDangerous", maxScore = 80)
 public class NonShortCircuit {
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes={AstCode.And, AstCode.Or})
     public void visitNode(Expression node, NodeChain nc, MethodContext ctx) {
         if(node.getCode() == AstCode.And || node.getCode() == AstCode.Or) {
             if (Nodes.isOp(nc.getNode(), AstCode.Store) || Nodes.isOp(nc.getNode(), AstCode.StoreElement)
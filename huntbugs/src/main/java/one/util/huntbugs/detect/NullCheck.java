@@ -55,7 +55,10 @@ public class NullCheck {
     private static final ExpressionRole NONNULL_EXPRESSION = ExpressionRole.forName("NONNULL_EXPRESSION");
     private static final ExpressionRole NULL_EXPRESSION = ExpressionRole.forName("NULL_EXPRESSION");
 
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = {
+        AstCode.MonitorEnter, AstCode.MonitorExit, AstCode.PutField, AstCode.GetField, AstCode.LoadElement,
+        AstCode.StoreElement, AstCode.InvokeInterface, AstCode.InvokeSpecial, AstCode.InvokeVirtual,
+        AstCode.InstanceOf, AstCode.CmpNe, AstCode.CmpEq })
     public void visit(Expression expr, NodeChain nc, MethodContext mc) {
         switch (expr.getCode()) {
         case MonitorEnter:
@@ -39,7 +39,7 @@ import one.util.huntbugs.warning.WarningAnnotation.MemberInfo;
 @WarningDefinition(category = "Performance", name = "NumberConstructor", maxScore = 45)
 @WarningDefinition(category = "Performance", name = "BooleanConstructor", maxScore = 55)
 public class NumberConstructor {
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = AstCode.InitObject)
     public void visit(Expression expr, MethodContext ctx, MethodDefinition md) {
         if (expr.getCode() == AstCode.InitObject && expr.getArguments().size() == 1) {
             MethodReference ctor = (MethodReference) expr.getOperand();
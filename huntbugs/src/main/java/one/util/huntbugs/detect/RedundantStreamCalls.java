@@ -42,7 +42,7 @@ import one.util.huntbugs.warning.Roles;
 @WarningDefinition(category="RedundantCode", name="RedundantCollectionStream", maxScore=48)
 @WarningDefinition(category="Performance", name="StreamCountFromCollection", maxScore=60)
 public class RedundantStreamCalls {
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS, minVersion=8)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes={AstCode.InvokeInterface, AstCode.InvokeVirtual}, minVersion=8)
     public void visit(Expression expr, MethodContext mc) {
         if(expr.getCode() == AstCode.InvokeInterface || expr.getCode() == AstCode.InvokeVirtual) {
             MethodReference mr = (MethodReference) expr.getOperand();
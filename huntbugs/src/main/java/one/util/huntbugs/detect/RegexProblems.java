@@ -44,7 +44,7 @@ import one.util.huntbugs.warning.Role.StringRole;
 public class RegexProblems {
     private static final StringRole ERROR_MESSAGE = StringRole.forName("ERROR_MESSAGE");
     
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes={AstCode.InvokeStatic, AstCode.InvokeVirtual})
     public void visit(Expression expr, MethodContext mc) {
         if(expr.getCode() == AstCode.InvokeStatic || expr.getCode() == AstCode.InvokeVirtual) {
             MethodReference mr = (MethodReference) expr.getOperand();
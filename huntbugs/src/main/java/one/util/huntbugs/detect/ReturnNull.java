@@ -59,7 +59,7 @@ public class ReturnNull {
         return true;
     }
 
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = AstCode.Return, requires = {})
     public void visit(Expression expr, NodeChain nc, MethodContext mc, MethodDefinition md, TypeDefinition td) {
         if (expr.getCode() == AstCode.Return && !expr.getArguments().isEmpty()) {
             Expression child = Exprs.getChild(expr, 0);
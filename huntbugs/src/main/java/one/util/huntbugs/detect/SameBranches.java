@@ -117,7 +117,7 @@ public class SameBranches {
         }
     }
 
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes=AstCode.TernaryOp)
     public void visitExpr(Expression expr, MethodContext mc) {
         if (expr.getCode() == AstCode.TernaryOp
             && Equi.equiExpressions(expr.getArguments().get(1), expr.getArguments().get(2))) {
@@ -41,7 +41,8 @@ import one.util.huntbugs.warning.Roles;
 @WarningDefinition(category="Correctness", name="SelfAssignmentLocalInsteadOfField", maxScore=90)
 @WarningDefinition(category="Correctness", name="SelfAssignmentArrayElement", maxScore=80)
 public class SelfAssignment {
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes={
+        AstCode.PutField, AstCode.PutStatic, AstCode.StoreElement, AstCode.Store})
     public void visit(Expression expr, MethodContext mc, MethodDefinition md, TypeDefinition td) {
         if(expr.getCode() == AstCode.PutField) {
             FieldDefinition frPut = ((FieldReference) expr.getOperand()).resolve();
@@ -24,6 +24,7 @@ import one.util.huntbugs.flow.ValuesFlow;
 import one.util.huntbugs.registry.MethodContext;
 import one.util.huntbugs.registry.anno.AstNodes;
 import one.util.huntbugs.registry.anno.AstVisitor;
+import one.util.huntbugs.registry.anno.RequiredTypes;
 import one.util.huntbugs.registry.anno.WarningDefinition;
 import one.util.huntbugs.util.Nodes;
 
@@ -33,8 +34,9 @@ import one.util.huntbugs.util.Nodes;
  */
 @WarningDefinition(category="Correctness", name="BadResultSetArgument", maxScore=75)
 @WarningDefinition(category="Correctness", name="BadPreparedStatementArgument", maxScore=75)
+@RequiredTypes("java/sql/")
 public class SqlBadArgument {
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes=AstCode.InvokeInterface)
     public void visit(Expression expr, MethodContext mc) {
         if(expr.getCode() == AstCode.InvokeInterface) {
             MethodReference mr = (MethodReference) expr.getOperand();
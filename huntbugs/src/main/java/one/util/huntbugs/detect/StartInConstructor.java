@@ -44,7 +44,7 @@ public class StartInConstructor {
         return td.isPublic() && !td.isFinal() && !md.isPrivate() && !md.isPackagePrivate();
     }
 
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS, methodName = "<init>")
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = AstCode.InvokeVirtual, methodName = "<init>", requires = {})
     public boolean visit(Expression expr, NodeChain nc, MethodContext mc, TypeHierarchy th) {
         if (expr.getCode() == AstCode.InvokeVirtual) {
             MethodReference mr = (MethodReference) expr.getOperand();
@@ -46,7 +46,7 @@ public class StaticFieldFromInstanceMethod {
         return !md.isStatic();
     }
     
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes=AstCode.PutStatic, requires={})
     public void visit(Expression expr, NodeChain nc, MethodContext mc, MethodDefinition md, TypeDefinition td) {
         if(expr.getCode() == AstCode.PutStatic) {
             FieldReference fr = (FieldReference) expr.getOperand();
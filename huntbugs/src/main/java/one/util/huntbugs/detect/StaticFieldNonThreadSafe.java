@@ -71,7 +71,7 @@ public class StaticFieldNonThreadSafe {
         return Types.isInstance(fieldType, "java/util/Calendar") || Types.isInstance(fieldType, "java/text/DateFormat");
     }
     
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes=AstCode.InvokeVirtual)
     public void visitCall(MethodContext mc, Expression expr, MethodDefinition md, NodeChain nc, TypeDefinition td) {
         if(expr.getCode() == AstCode.InvokeVirtual) {
             Expression target = expr.getArguments().get(0);
@@ -44,7 +44,7 @@ import one.util.huntbugs.util.Types;
  */
 @WarningDefinition(category = "Performance", name = "StringConcatInLoop", maxScore = 50)
 public class StringConcatInLoop {
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = AstCode.Store, requires = {})
     public void visit(Expression store, NodeChain nc, MethodContext mc, MethodDefinition md, TypeDefinition td) {
         if (store.getCode() != AstCode.Store)
             return;
@@ -37,7 +37,7 @@ import one.util.huntbugs.warning.Roles;
 @WarningDefinition(category="Performance", name="StringConstructorEmpty", maxScore=55)
 @WarningDefinition(category="RedundantCode", name="StringToString", maxScore=40)
 public class StringUsage {
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes={AstCode.InitObject, AstCode.InvokeVirtual})
     public void visit(Expression node, MethodContext mc, MethodDefinition md) {
         if(node.getCode() == AstCode.InitObject) {
             MethodReference mr = (MethodReference) node.getOperand();
@@ -15,43 +15,39 @@
  */
 package one.util.huntbugs.detect;
 
+import com.strobel.assembler.ir.Instruction;
+import com.strobel.assembler.ir.OpCode;
 import com.strobel.assembler.metadata.MethodDefinition;
 import com.strobel.assembler.metadata.MethodReference;
-import com.strobel.decompiler.ast.AstCode;
-import com.strobel.decompiler.ast.Expression;
 
 import one.util.huntbugs.registry.MethodContext;
-import one.util.huntbugs.registry.anno.AstNodes;
-import one.util.huntbugs.registry.anno.AstVisitor;
+import one.util.huntbugs.registry.anno.BytecodeVisitor;
 import one.util.huntbugs.registry.anno.MethodVisitor;
+import one.util.huntbugs.registry.anno.RequiredTypes;
 import one.util.huntbugs.registry.anno.WarningDefinition;
 import one.util.huntbugs.util.Methods;
-import one.util.huntbugs.util.NodeChain;
 
 /**
  * @author Tagir Valeev
  *
  */
 @WarningDefinition(category="BadPractice", name="SwingMethodNotInSwingThread", maxScore=40)
+@RequiredTypes("javax/swing/")
 public class SwingProblems {
     @MethodVisitor
     public boolean check(MethodDefinition md) {
         return Methods.isMain(md);
     }
     
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
-    public void visit(Expression expr, NodeChain nc, MethodContext mc) {
-        if(expr.getCode() == AstCode.InvokeVirtual) {
-            MethodReference mr = (MethodReference) expr.getOperand();
-            if(mr.getDeclaringType().getInternalName().startsWith("javax/swing/") &&
-                    (mr.getName().equals("show") && mr.getSignature().equals("()V") ||
-                            mr.getName().equals("pack") && mr.getSignature().equals("()V") ||
-                            mr.getName().equals("setVisible") && mr.getSignature().equals("(Z)V"))) {
-                if(nc.getLambdaMethod() != null) {
-                    return;
-                }
-                mc.report("SwingMethodNotInSwingThread", 0, expr);
-            }
+    // Lambda bodies are separate synthetic methods, so they are not visited here
+    @BytecodeVisitor(opCodes=OpCode.INVOKEVIRTUAL)
+    public void visit(Instruction instr, MethodContext mc) {
+        MethodReference mr = instr.getOperand(0);
+        if(mr.getDeclaringType().getInternalName().startsWith("javax/swing/") &&
+                (mr.getName().equals("show") && mr.getSignature().equals("()V") ||
+                        mr.getName().equals("pack") && mr.getSignature().equals("()V") ||
+                        mr.getName().equals("setVisible") && mr.getSignature().equals("(Z)V"))) {
+            mc.report("SwingMethodNotInSwingThread", 0, instr);
         }
     }
 }
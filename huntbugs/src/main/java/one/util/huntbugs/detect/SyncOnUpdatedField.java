@@ -31,7 +31,7 @@ import one.util.huntbugs.util.Nodes;
  */
 @WarningDefinition(category="Multithreading", name="SynchronizationOnUpdatedField", maxScore=65)
 public class SyncOnUpdatedField {
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes={AstCode.PutField, AstCode.PutStatic})
     public void visit(Expression expr, NodeChain nc, MethodContext mc) {
         if(expr.getCode() == AstCode.PutField || expr.getCode() == AstCode.PutStatic) {
             FieldReference fr = (FieldReference) expr.getOperand();
@@ -37,7 +37,7 @@ import one.util.huntbugs.warning.Role.TypeRole;
 public class ToArrayDowncast {
     private static final TypeRole TARGET_ELEMENT_TYPE = TypeRole.forName("TARGET_ELEMENT_TYPE");
 
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = AstCode.CheckCast, requires = {})
     public void visit(Expression expr, MethodContext mc) {
         if (expr.getCode() != AstCode.CheckCast)
             return;
@@ -24,6 +24,7 @@ import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 import com.strobel.assembler.ir.Instruction;
+import com.strobel.assembler.ir.OpCode;
 import com.strobel.assembler.metadata.DynamicCallSite;
 import com.strobel.assembler.metadata.MethodBody;
 import com.strobel.assembler.metadata.MethodDefinition;
@@ -33,6 +34,7 @@ import com.strobel.assembler.metadata.TypeDefinition;
 import com.strobel.assembler.metadata.TypeReference;
 import one.util.huntbugs.registry.AbstractTypeDatabase;
 import one.util.huntbugs.registry.ClassContext;
+import one.util.huntbugs.registry.MethodScan;
 import one.util.huntbugs.registry.anno.ClassVisitor;
 import one.util.huntbugs.registry.anno.TypeDatabase;
 import one.util.huntbugs.registry.anno.WarningDefinition;
@@ -56,6 +58,8 @@ public class UncalledPrivateMethod {
     @TypeDatabase
     public static class NestedAnonymousCalls extends AbstractTypeDatabase<Void> {
         Set<MemberInfo> mis = new HashSet<>();
+        // whether methods of the type being visited should be scanned
+        private boolean inAnonymous;
         
         public NestedAnonymousCalls() {
             super(tr -> null);
@@ -64,17 +68,37 @@ public class UncalledPrivateMethod {
         @Override
         protected void visitType(TypeDefinition td) {
             TypeReference tr = td.getDeclaringType();
-            if(tr == null) return;
-            TypeDefinition outer = tr.resolve();
-            if(outer == null || !outer.isAnonymous()) return;
-            for(MethodDefinition md : td.getDeclaredMethods()) {
-                extractCalls(md, mr -> {
-                    mis.add(new MemberInfo(mr));
-                    return true;
-                });
+            TypeDefinition outer = tr == null ? null : tr.resolve();
+            inAnonymous = outer != null && outer.isAnonymous();
+        }
+        
+        @Override
+        protected boolean visitMethod(MethodScan scan) {
+            return inAnonymous;
+        }
+        
+        @Override
+        protected boolean isInteresting(OpCode opCode) {
+            switch (opCode) {
+            case INVOKEVIRTUAL:
+            case INVOKESPECIAL:
+            case INVOKESTATIC:
+            case INVOKEINTERFACE:
+            case INVOKEDYNAMIC:
+                return true;
+            default:
+                return false;
             }
         }
         
+        @Override
+        protected void visitInstruction(MethodScan scan, Instruction instr) {
+            extractCalls(instr, mr -> {
+                mis.add(MemberInfo.of(mr));
+                return true;
+            });
+        }
+        
         public boolean isCalled(MemberInfo mi) {
             return mis.contains(mi);
         }
@@ -92,7 +116,7 @@ public class UncalledPrivateMethod {
                     && !md.getName().toLowerCase(Locale.ENGLISH).contains("debug")
                     && !md.getName().toLowerCase(Locale.ENGLISH).contains("trace")
                     && !Annotations.hasAnnotation(md, true)) {
-                candidates.put(new MemberInfo(md), new HashSet<>());
+                candidates.put(MemberInfo.of(md), new HashSet<>());
             }
         }
         if (td.isAnonymous() && !td.isSynthetic() && !td.getSimpleName().contains("$_invokeMethod_") && Types
@@ -100,7 +124,7 @@ public class UncalledPrivateMethod {
             for(MethodDefinition md : td.getDeclaredMethods()) {
                 if (!md.isSpecialName() && !md.isPrivate() && !md.isSynthetic() && Methods.findSuperMethod(
                     md) == null) {
-                    MemberInfo mi = new MemberInfo(md);
+                    MemberInfo mi = MemberInfo.of(md);
                     if(!nac.isCalled(mi)) {
                         candidates.put(mi, new HashSet<>());
                     }
@@ -148,28 +172,34 @@ public class UncalledPrivateMethod {
         if(body == null)
             return;
         for(Instruction inst : body.getInstructions()) {
-            for(int i=0; i<inst.getOperandCount(); i++) {
-                Object operand = inst.getOperand(i);
-                if(operand instanceof MethodReference) {
-                    if(!action.test((MethodReference)operand))
-                        return;
-                }
-                if(operand instanceof DynamicCallSite) {
-                    MethodHandle mh = Nodes.getMethodHandle((DynamicCallSite) operand);
-                    if(mh != null) {
-                        if(!action.test(mh.getMethod()))
-                            return;
-                    }
+            if(!extractCalls(inst, action))
+                return;
+        }
+    }
+    
+    private static boolean extractCalls(Instruction inst, Predicate<MethodReference> action) {
+        for(int i=0; i<inst.getOperandCount(); i++) {
+            Object operand = inst.getOperand(i);
+            if(operand instanceof MethodReference) {
+                if(!action.test((MethodReference)operand))
+                    return false;
+            }
+            if(operand instanceof DynamicCallSite) {
+                MethodHandle mh = Nodes.getMethodHandle((DynamicCallSite) operand);
+                if(mh != null) {
+                    if(!action.test(mh.getMethod()))
+                        return false;
                 }
             }
         }
+        return true;
     }
     
     private void link(MethodReference from, MethodReference to) {
-        MemberInfo miTo = new MemberInfo(to);
+        MemberInfo miTo = MemberInfo.of(to);
         if(!candidates.containsKey(miTo))
             return;
-        MemberInfo miFrom = new MemberInfo(from);
+        MemberInfo miFrom = MemberInfo.of(from);
         Set<MemberInfo> curCandidate = candidates.get(miFrom);
         if(curCandidate == null) {
             remove(miTo);
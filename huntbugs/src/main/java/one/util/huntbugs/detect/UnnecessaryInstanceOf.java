@@ -54,7 +54,8 @@ import one.util.huntbugs.warning.WarningAnnotation;
 public class UnnecessaryInstanceOf {
     private static final StringRole ETYPE = StringRole.forName("ETYPE");
 
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = {
+        AstCode.InstanceOf, AstCode.CheckCast, AstCode.CmpEq, AstCode.InvokeVirtual })
     public void visit(Expression node, MethodContext mc, TypeDefinition td) {
         if (node.getCode() == AstCode.InstanceOf) {
             TypeReference typeRef = (TypeReference) node.getOperand();
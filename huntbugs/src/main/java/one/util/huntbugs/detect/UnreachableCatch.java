@@ -30,7 +30,7 @@ import one.util.huntbugs.util.Nodes;
  */
 @WarningDefinition(category="RedundantCode", name="UnreachableCatch", maxScore=50)
 public class UnreachableCatch {
-    @AstVisitor
+    @AstVisitor(requires={})
     public void visit(Node node, MethodContext mc) {
         if(node instanceof CatchBlock) {
             Expression firstExpr = (Expression) Nodes.find(node, Expression.class::isInstance);
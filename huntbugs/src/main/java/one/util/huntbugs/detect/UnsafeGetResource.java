@@ -43,7 +43,7 @@ public class UnsafeGetResource {
         return td.isPublic() && !td.isFinal() && !md.isStatic();
     }
     
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes=AstCode.InvokeVirtual)
     public void visit(Expression expr, MethodContext mc, TypeHierarchy th) {
         if(expr.getCode() == AstCode.InvokeVirtual) {
             MethodReference getResourceCall = (MethodReference) expr.getOperand();
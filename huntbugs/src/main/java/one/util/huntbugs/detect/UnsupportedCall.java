@@ -43,7 +43,7 @@ public class UnsupportedCall {
         return !md.isSynthetic();
     }
     
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, requires = {})
     public void visit(Expression expr, NodeChain nc, MethodContext mc, MethodStats ms) {
         if(expr.getOperand() instanceof MethodReference) {
             MethodReference mr = (MethodReference) expr.getOperand();
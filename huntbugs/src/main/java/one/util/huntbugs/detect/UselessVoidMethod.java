@@ -36,7 +36,7 @@ import one.util.huntbugs.util.Nodes;
  */
 @WarningDefinition(category="RedundantCode", name="UselessVoidMethod", maxScore=50)
 public class UselessVoidMethod {
-    @AstVisitor(nodes=AstNodes.ROOT)
+    @AstVisitor(nodes=AstNodes.ROOT, requires={})
     public void checkMethod(Block root, MethodDefinition md, MethodStats ms, MethodContext mc) {
         if(md.getReturnType().isVoid()) {
             MethodData stats = ms.getStats(md);
@@ -50,7 +50,7 @@ public class WaitContract {
         return !md.isSynthetic();
     }
     
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes=AstCode.InvokeVirtual)
     public void visit(Expression expr, NodeChain parents, MethodContext mc) {
         if (expr.getCode() == AstCode.InvokeVirtual) {
             MethodReference mr = (MethodReference) expr.getOperand();
@@ -102,13 +102,13 @@ public class AnnotationFilters {
             Set<String> suppressed = getSuppressed(fd.getAnnotations());
             if(!suppressed.isEmpty()) {
                 Predicate<Warning> fieldPred = forSuppressed(suppressed);
-                MemberInfo mi = new MemberInfo(fd); 
+                MemberInfo mi = MemberInfo.of(fd); 
                 pred = and(pred, w -> !mi.equals(w.getAnnotation(Roles.FIELD)) || fieldPred.test(w));
             }
         }
         for(MethodDefinition md : td.getDeclaredMethods()) {
             Set<String> suppressed = getSuppressed(md.getAnnotations());
-            MemberInfo mi = new MemberInfo(md); 
+            MemberInfo mi = MemberInfo.of(md); 
             if(!suppressed.isEmpty()) {
                 Predicate<Warning> methodPred = forSuppressed(suppressed);
                 pred = and(pred, w -> !mi.equals(w.getAnnotation(Roles.METHOD)) || methodPred.test(w));
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 HuntBugs contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.flow;
+
+import java.util.Arrays;
+
+import com.strobel.decompiler.ast.Expression;
+
+/**
+ * Storage of annotator facts kept aside from the AST. Expressions get dense
+ * ids when registered (normally during CFG building, synthetic expressions
+ * like phi nodes on the first write) and every annotator has its own column
+ * indexed by these ids, which is allocated only if the annotator stores
+ * something. Ids are found via the identity hash table of the store, so
+ * nothing is attached to the expressions themselves.
+ *
+ * Facts of constructors are used while other methods of the class are
+ * analyzed, so every thread has a single store for all the methods (and
+ * lambdas) of the class it currently analyzes. All the facts are dropped in
+ * one step via {@link #clear()} when the class is analyzed.
+ */
+final class AnnotationStore {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final ThreadLocal<AnnotationStore> stores = ThreadLocal.withInitial(AnnotationStore::new);
+
+    // Open addressing identity hash table: registered expressions and their ids
+    private Expression[] keys;
+    private int[] ids;
+    private int size;
+    private Object[][] columns;
+
+    AnnotationStore() {
+        clear();
+    }
+
+    /**
+     * @return the store of the current thread
+     */
+    static AnnotationStore current() {
+        return stores.get();
+    }
+
+    private int indexOf(Expression expr) {
+        int mask = keys.length - 1;
+        int h = System.identityHashCode(expr);
+        int i = (h ^ (h >>> 16)) & mask;
+        while (keys[i] != null && keys[i] != expr) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * @param expr expression to register
+     * @return the id of the expression, newly assigned if necessary
+     */
+    int register(Expression expr) {
+        int i = indexOf(expr);
+        if (keys[i] != null)
+            return ids[i];
+        keys[i] = expr;
+        ids[i] = size;
+        if (++size * 2 > keys.length) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    /**
+     * @param expr expression to look up
+     * @return the id of the expression or -1 if it was never registered
+     */
+    int id(Expression expr) {
+        int i = indexOf(expr);
+        return keys[i] == null ? -1 : ids[i];
+    }
+
+    private void rehash() {
+        Expression[] oldKeys = keys;
+        int[] oldIds = ids;
+        keys = new Expression[oldKeys.length * 2];
+        ids = new int[keys.length];
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != null) {
+                int i = indexOf(oldKeys[j]);
+                keys[i] = oldKeys[j];
+                ids[i] = oldIds[j];
+            }
+        }
+    }
+
+    Object get(Expression expr, int column) {
+        // Check the column first: no hash lookup is necessary if the annotator computed nothing
+        if (columns == null || column >= columns.length || columns[column] == null)
+            return null;
+        Object[] data = columns[column];
+        int id = id(expr);
+        return id < 0 || id >= data.length ? null : data[id];
+    }
+
+    void put(Expression expr, int column, Object value) {
+        if (value == null) {
+            remove(expr, column);
+            return;
+        }
+        int id = register(expr);
+        if (columns == null) {
+            columns = new Object[Math.max(Annotators.count(), column + 1)][];
+        } else if (column >= columns.length) {
+            columns = Arrays.copyOf(columns, column + 1);
+        }
+        Object[] data = columns[column];
+        if (data == null || id >= data.length) {
+            data = data == null ? new Object[size] : Arrays.copyOf(data, size);
+            columns[column] = data;
+        }
+        data[id] = value;
+    }
+
+    void remove(Expression expr, int column) {
+        if (columns == null || column >= columns.length || columns[column] == null)
+            return;
+        Object[] data = columns[column];
+        int id = id(expr);
+        if (id >= 0 && id < data.length) {
+            data[id] = null;
+        }
+    }
+
+    /**
+     * Drops all the registered expressions and their facts
+     */
+    void clear() {
+        if (size == 0 && keys != null && keys.length == INITIAL_CAPACITY)
+            return;
+        keys = new Expression[INITIAL_CAPACITY];
+        ids = new int[INITIAL_CAPACITY];
+        size = 0;
+        columns = null;
+    }
+}
@@ -15,13 +15,23 @@
  */
 package one.util.huntbugs.flow;
 
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.stream.Stream;
 
 import com.strobel.decompiler.ast.AstCode;
 import com.strobel.decompiler.ast.Expression;
+import com.strobel.decompiler.ast.Lambda;
 import com.strobel.decompiler.ast.Node;
 
 /**
@@ -29,16 +39,44 @@ import com.strobel.decompiler.ast.Node;
  *
  */
 public class BackLinkAnnotator extends Annotator<Set<Expression>> {
+    // Builders of not yet built lambdas which may use the value of given expression
+    private final Annotator<List<Runnable>> pendingLambdas = new Annotator<List<Runnable>>("backlink.pending",
+            Collections.emptyList()) {};
 
     public BackLinkAnnotator() {
         super("backlink", Collections.emptySet());
     }
     
+    void annotate(CFG cfg) {
+        annotate(cfg.body);
+        for (Lambda lambda : cfg.lambdaBlocks.keySet()) {
+            Runnable builder = () -> cfg.getLambdaCFG(lambda);
+            for (Expression captured : Inf.SOURCE.getCapturedValues(cfg, lambda)) {
+                markPending(captured, builder);
+            }
+        }
+    }
+
     void annotate(Node node) {
-        forExpressions(node, this::annotateBackLinks);
+        Links links = new Links();
+        forExpressions(node, expr -> annotateBackLinks(links, expr));
+        links.build();
         forExpressions(node, this::fixTernary);
     }
     
+    private void markPending(Expression source, Runnable builder) {
+        if (source.getCode() == SourceAnnotator.PHI_TYPE || source.getCode() == SourceAnnotator.UPDATE_TYPE) {
+            source.getArguments().forEach(arg -> markPending(arg, builder));
+            return;
+        }
+        List<Runnable> builders = pendingLambdas.get(source);
+        if (builders.isEmpty()) {
+            builders = new ArrayList<>();
+            pendingLambdas.put(source, builders);
+        }
+        builders.add(builder);
+    }
+    
     private void fixTernary(Expression expr) {
         for(Expression child : expr.getArguments()) {
             fixTernary(child);
@@ -46,51 +84,165 @@ public class BackLinkAnnotator extends Annotator<Set<Expression>> {
         if(expr.getCode() == AstCode.TernaryOp) {
             Expression left = expr.getArguments().get(1);
             Expression right = expr.getArguments().get(1);
-            Set<Expression> links = get(expr);
-            if(!(links instanceof HashSet))
-                links = new HashSet<>(links);
+            Set<Expression> links = new LinkedHashSet<>(get(expr));
             links.addAll(get(left));
             links.addAll(get(right));
             links.remove(expr);
-            put(expr, links);
+            Expression[] targets = links.toArray(new Expression[0]);
+            put(expr, new Usages(targets, 0, targets.length, null));
         }
     }
 
-    private void annotateBackLinks(Expression expr) {
+    private void annotateBackLinks(Links links, Expression expr) {
         for(Expression child : expr.getArguments()) {
-            doLink(expr, child);
-            annotateBackLinks(child);
+            links.add(expr, child);
+            annotateBackLinks(links, child);
         }
         Expression source = Inf.SOURCE.get(expr);
         if(source != null) {
-            link(expr, source);
+            link(links, expr, source);
         }
     }
 
-    private void link(Expression target, Expression source) {
+    private void link(Links links, Expression target, Expression source) {
         if (source.getCode() == SourceAnnotator.PHI_TYPE || source.getCode() == SourceAnnotator.UPDATE_TYPE) {
-            source.getArguments().forEach(arg -> link(target, arg));
+            source.getArguments().forEach(arg -> link(links, target, arg));
             return;
         }
-        doLink(target, source);
+        links.add(target, source);
     }
 
-    private void doLink(Expression target, Expression source) {
-        Set<Expression> set = get(source);
-        if (set.isEmpty()) {
-            put(source, Collections.singleton(target));
-        } else {
-            if (!(set instanceof HashSet)) {
-                set = new HashSet<>(set);
-                put(source, set);
+    /**
+     * Usage links collected over single body. Once collected, they are stored
+     * in CSR form: single targets array where usages of every source occupy
+     * the contiguous range.
+     */
+    private class Links {
+        private static final int LINEAR_SEARCH_LIMIT = 16;
+
+        private final List<Expression> sources = new ArrayList<>();
+        private final List<Expression> targets = new ArrayList<>();
+
+        void add(Expression target, Expression source) {
+            sources.add(source);
+            targets.add(target);
+        }
+
+        void build() {
+            if (sources.isEmpty())
+                return;
+            Map<Expression, Integer> rows = new HashMap<>();
+            List<Expression> rowSources = new ArrayList<>();
+            int[] edgeRows = new int[sources.size()];
+            for (int i = 0; i < edgeRows.length; i++) {
+                Expression source = sources.get(i);
+                Integer row = rows.get(source);
+                if (row == null) {
+                    row = rowSources.size();
+                    rows.put(source, row);
+                    rowSources.add(source);
+                }
+                edgeRows[i] = row;
+            }
+            int[] ends = new int[rowSources.size()];
+            for (int row : edgeRows) {
+                ends[row]++;
+            }
+            int[] starts = new int[ends.length];
+            for (int row = 1; row < ends.length; row++) {
+                starts[row] = starts[row - 1] + ends[row - 1];
+            }
+            System.arraycopy(starts, 0, ends, 0, ends.length);
+            Expression[] array = new Expression[edgeRows.length];
+            // Filled targets of rows which are too long for linear duplicate search
+            Map<Integer, Set<Expression>> longRows = new HashMap<>();
+            for (int i = 0; i < edgeRows.length; i++) {
+                int row = edgeRows[i];
+                Expression target = targets.get(i);
+                boolean added;
+                if (ends[row] - starts[row] < LINEAR_SEARCH_LIMIT) {
+                    added = !contains(array, starts[row], ends[row], target);
+                } else {
+                    added = longRows.computeIfAbsent(row, r -> new HashSet<>(Arrays.asList(array).subList(starts[r],
+                        ends[r]))).add(target);
+                }
+                if (added) {
+                    array[ends[row]++] = target;
+                }
+            }
+            for (int row = 0; row < ends.length; row++) {
+                Expression source = rowSources.get(row);
+                Set<Expression> prev = get(source);
+                put(source, new Usages(array, starts[row], ends[row], prev instanceof Usages ? (Usages) prev : null));
+            }
+        }
+
+        private boolean contains(Expression[] array, int from, int to, Expression target) {
+            for (int i = from; i < to; i++) {
+                if (array[i] == target)
+                    return true;
             }
-            set.add(target);
+            return false;
+        }
+    }
+
+    /**
+     * Read-only view of the expression usages: a range of the targets array
+     * built for one body chained with the usages found in previously
+     * annotated bodies (e.g. in enclosing method for lambda).
+     */
+    static final class Usages extends AbstractSet<Expression> {
+        private final Expression[] targets;
+        private final int from, to;
+        private final Usages prev;
+
+        Usages(Expression[] targets, int from, int to, Usages prev) {
+            this.targets = targets;
+            this.from = from;
+            this.to = to;
+            this.prev = prev;
+        }
+
+        @Override
+        public Iterator<Expression> iterator() {
+            return new Iterator<Expression>() {
+                Usages cur = Usages.this;
+                int pos = from;
+
+                @Override
+                public boolean hasNext() {
+                    while (pos >= cur.to) {
+                        if (cur.prev == null)
+                            return false;
+                        cur = cur.prev;
+                        pos = cur.from;
+                    }
+                    return true;
+                }
+
+                @Override
+                public Expression next() {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    return cur.targets[pos++];
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return to - from + (prev == null ? 0 : prev.size());
         }
     }
 
     public Set<Expression> findUsages(Expression input) {
-        Set<Expression> set = get(input);
-        return set instanceof HashSet ? Collections.unmodifiableSet(set) : set;
+        // Building a lambda may reveal nested lambdas which use the input as well
+        List<Runnable> builders;
+        while (!(builders = pendingLambdas.get(input)).isEmpty()) {
+            pendingLambdas.remove(input);
+            builders.forEach(Runnable::run);
+        }
+        return get(input);
     }
 
     public Stream<Expression> findTransitiveUsages(Expression expr, boolean includePhi) {
@@ -29,6 +29,7 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -80,21 +81,38 @@ public class CFG {
     static final TypeDefinition error = Types.lookupJdkType("java/lang/Error");
 
     final List<BasicBlock> blocks = new ArrayList<>();
-    final Map<Lambda, CFG> lambdas = new HashMap<>();
-    final BasicBlock closure;
+    // Blocks creating lambdas; lambda CFGs are built on demand
+    final Map<Lambda, BasicBlock> lambdaBlocks = new LinkedHashMap<>();
+    private final Map<Lambda, CFG> lambdas = new HashMap<>();
+    // Per-annotator states at lambda blocks which serve as lambda closure states
+    private final Map<Annotator<?>, Map<Lambda, Object>> closureStates = new HashMap<>();
+    // Actions to replay on every lambda CFG once it's built
+    private final List<BiConsumer<Lambda, CFG>> lambdaActions = new ArrayList<>();
     final MethodDefinition md;
     final Block body;
     final BasicBlock entry, exit = new BasicBlock(BLOCKTYPE_EXIT), fail = new BasicBlock(BLOCKTYPE_FAIL), implicit = new BasicBlock(BLOCKTYPE_IMPLICIT);
     final Map<Label, BasicBlock> labelTargets = new HashMap<>();
+    final List<FailRegion> failRegions = new ArrayList<>();
     final List<List<BasicBlock>> dupExpr;
     // Number of block till which CFG is forward-only
     final int forwardTill;
+    // Number of blocks targeted by back edges
+    final int loopHeads;
     final boolean hasUnreachable;
-
-    private CFG(MethodDefinition md, BasicBlock closure, Block methodBody) {
+    // Whether straight-line sequences are grouped into coarse blocks for DFA
+    final boolean coarse;
+    // Variable numbering shared by this CFG and all its lambda CFGs
+    final VariableIndex variables;
+    // Storage of annotator facts of the class being analyzed by this thread
+    final AnnotationStore annotations;
+
+    private CFG(MethodDefinition md, Block methodBody, boolean coarse, VariableIndex variables,
+            AnnotationStore annotations) {
         this.md = md;
         this.body = methodBody;
-        this.closure = closure;
+        this.coarse = coarse;
+        this.variables = variables;
+        this.annotations = annotations;
         if (methodBody.getBody().isEmpty()) {
             entry = exit;
             hasUnreachable = false;
@@ -107,8 +125,13 @@ public class CFG {
             fixBlocks();
             dupExpr = computeDupBlocks(findDuplicates(methodBody));
             hasUnreachable = blocks.stream().anyMatch(bb -> !bb.reached);
+            if (coarse) {
+                groupBlocks();
+            }
+            factorFailEdges();
         }
         this.forwardTill = computeForwardTill();
+        this.loopHeads = markLoopHeads();
     }
     
     private TrueFalse<List<BasicBlock>> getConditionalBranches(BasicBlock cond) {
@@ -369,6 +392,65 @@ public class CFG {
         }
     }
 
+    /**
+     * Links maximal straight-line sequences of blocks into coarse blocks:
+     * block is attached to the previous one if it's its only predecessor
+     * and the only normal successor. DFA passes the state within coarse block
+     * directly without storing and merging it.
+     */
+    private void groupBlocks() {
+        int[] preds = new int[blocks.size()];
+        for (BasicBlock bb : blocks) {
+            bb.targets().filter(t -> t.id >= 0).forEach(t -> preds[t.id]++);
+        }
+        for (int i = 1; i < blocks.size(); i++) {
+            BasicBlock bb = blocks.get(i);
+            BasicBlock prev = blocks.get(i - 1);
+            // Lambda closure state is necessary to build the lambda DFA
+            if (preds[i] == 1 && prev.passTarget == bb && prev.reached == bb.reached
+                && !(bb.expr.getOperand() instanceof Lambda)) {
+                prev.next = bb;
+                bb.inner = true;
+            }
+        }
+    }
+
+    /**
+     * Makes the blocks which have the same set of exceptional targets (usually
+     * the throwing expressions of the same try region) share the single
+     * {@link FailRegion}.
+     */
+    private void factorFailEdges() {
+        Map<List<BasicBlock>, FailRegion> regions = new LinkedHashMap<>();
+        for (BasicBlock bb : blocks) {
+            if (bb.failTargets == null)
+                continue;
+            FailRegion region = regions.computeIfAbsent(bb.failTargets, FailRegion::new);
+            bb.failTargets = region.targets;
+            bb.failRegion = region;
+            region.last = bb;
+        }
+        for (FailRegion region : regions.values()) {
+            for (BasicBlock target : region.targets) {
+                if (target.id < 0)
+                    continue;
+                if (target.failSources == null)
+                    target.failSources = new ArrayList<>();
+                target.failSources.add(region);
+                region.minTarget = Math.min(region.minTarget, target.id);
+            }
+            failRegions.add(region);
+        }
+    }
+
+    private int markLoopHeads() {
+        for (BasicBlock bb : blocks) {
+            bb.targets().filter(target -> target.id >= 0 && target.id <= bb.id).forEach(
+                target -> target.loopHead = true);
+        }
+        return (int) blocks.stream().filter(bb -> bb.loopHead).count();
+    }
+
     private int computeForwardTill() {
         int forwardTill = blocks.size();
         for (BasicBlock bb : blocks) {
@@ -600,6 +682,7 @@ public class CFG {
     }
 
     private BasicBlock buildExpr(BasicBlock entry, Expression expr, JumpContext jc) {
+        annotations.register(expr);
         switch (expr.getCode()) {
         case TernaryOp: {
             Expression cond = expr.getArguments().get(0);
@@ -653,9 +736,9 @@ public class CFG {
         block.setExpression(expr);
         register(block);
         if (expr.getOperand() instanceof Lambda) {
-            Lambda lambda = (Lambda) expr.getOperand();
-            CFG lambdaCFG = new CFG(Nodes.getLambdaMethod(lambda), block, lambda.getBody());
-            lambdas.put(lambda, lambdaCFG);
+            lambdaBlocks.put((Lambda) expr.getOperand(), block);
+        } else if (expr.getOperand() instanceof Variable) {
+            variables.add((Variable) expr.getOperand());
         }
         switch (expr.getCode()) {
         case AThrow: {
@@ -766,31 +849,132 @@ public class CFG {
     }
 
     public static CFG build(MethodDefinition md, Block body) {
+        return build(md, body, false);
+    }
+
+    /**
+     * @param md method definition
+     * @param body method body
+     * @param coarse if true, straight-line sequences of expressions are processed as single block by DFA
+     * @return newly built CFG
+     */
+    public static CFG build(MethodDefinition md, Block body, boolean coarse) {
         try {
-            return new CFG(md, null, body);
+            return new CFG(md, body, coarse, new VariableIndex(), AnnotationStore.current());
         } catch (Exception e) {
             throw new RuntimeException("Unable to build CFG for " + new MemberInfo(md) + "\n" + body, e);
         }
     }
 
+    /**
+     * Runs the DFA on this CFG. Lambda CFGs are processed later when they are
+     * requested via {@link #getLambdaCFG(Lambda)}.
+     * 
+     * @param annotator annotator to store the facts
+     * @param dfFactory dataflow factory which accepts method and closure state
+     * @param maxIter maximal number of iterations
+     * @param onIncomplete action to perform if DFA does not converge on this
+     *        CFG or on any of its lambda CFGs (possibly later, when the lambda
+     *        CFG is built)
+     * @return true if DFA converged on this CFG
+     */
     public <STATE, FACT> boolean runDFA(Annotator<FACT> annotator,
-            BiFunction<MethodDefinition, STATE, Dataflow<FACT, STATE>> dfFactory, int maxIter) {
-        @SuppressWarnings("unchecked")
-        STATE closureState = closure == null ? null : (STATE) closure.state;
+            BiFunction<MethodDefinition, STATE, Dataflow<FACT, STATE>> dfFactory, int maxIter, Runnable onIncomplete) {
+        return runDFA(annotator, dfFactory, maxIter, onIncomplete, null);
+    }
+
+    private <STATE, FACT> boolean runDFA(Annotator<FACT> annotator,
+            BiFunction<MethodDefinition, STATE, Dataflow<FACT, STATE>> dfFactory, int maxIter, Runnable onIncomplete,
+            STATE closureState) {
         boolean valid = new DFARunner<>(annotator, dfFactory.apply(md, closureState)).run(maxIter);
-        for (CFG subCFG : lambdas.values()) {
-            valid &= subCFG.runDFA(annotator, dfFactory, maxIter);
+        if (!valid) {
+            onIncomplete.run();
+        }
+        if (!lambdaBlocks.isEmpty()) {
+            Map<Lambda, Object> states = new HashMap<>();
+            lambdaBlocks.forEach((lambda, block) -> states.put(lambda, block.state));
+            closureStates.put(annotator, states);
+            forLambdas((lambda, cfg) -> cfg.runDFA(annotator, dfFactory, maxIter, onIncomplete,
+                getClosureState(annotator, lambda)));
         }
         return valid;
     }
 
+    /**
+     * @param annotator annotator which DFA was already run on this CFG
+     * @param lambda lambda created within this CFG
+     * @return the annotator state at the point where lambda is created or
+     *         null if unknown
+     */
+    @SuppressWarnings("unchecked")
+    <STATE> STATE getClosureState(Annotator<?> annotator, Lambda lambda) {
+        Map<Lambda, Object> states = closureStates.get(annotator);
+        return states == null ? null : (STATE) states.get(lambda);
+    }
+
+    private void forLambdas(BiConsumer<Lambda, CFG> action) {
+        lambdaActions.add(action);
+        lambdas.forEach((lambda, cfg) -> {
+            if (cfg != null)
+                action.accept(lambda, cfg);
+        });
+    }
+
+    /**
+     * Performs an action on this CFG now and on every lambda CFG (including
+     * nested ones) as soon as it's built.
+     * 
+     * @param action action to perform
+     */
+    void forCFGs(Consumer<CFG> action) {
+        action.accept(this);
+        if (!lambdaBlocks.isEmpty()) {
+            forLambdas((lambda, cfg) -> cfg.forCFGs(action));
+        }
+    }
+
     public void forBodies(BiConsumer<MethodDefinition, Block> consumer) {
-        consumer.accept(md, body);
-        lambdas.values().forEach(cfg -> cfg.forBodies(consumer));
+        forCFGs(cfg -> consumer.accept(cfg.md, cfg.body));
+    }
+
+    /**
+     * Drops all the annotator facts collected for this method, its lambdas
+     * and the other methods analyzed by the current thread, including the
+     * facts of synthetic expressions like phi nodes. Must be called only when
+     * they are not necessary anymore.
+     */
+    public void dropAnnotations() {
+        annotations.clear();
     }
 
+    /**
+     * Returns the CFG for the lambda created within this CFG building it and
+     * running all the previously requested analyses on it if necessary.
+     * 
+     * @param lambda lambda to get the CFG for
+     * @return lambda CFG or null if lambda is not created within this CFG or
+     *         its CFG could not be built
+     */
     public CFG getLambdaCFG(Lambda lambda) {
-        return lambdas.get(lambda);
+        if (lambdas.containsKey(lambda))
+            return lambdas.get(lambda);
+        if (!lambdaBlocks.containsKey(lambda))
+            return null;
+        // Memoize failure as well to report it only once
+        lambdas.put(lambda, null);
+        MethodDefinition lambdaMethod = Nodes.getLambdaMethod(lambda);
+        CFG cfg;
+        try {
+            cfg = new CFG(lambdaMethod, lambda.getBody(), coarse, variables, annotations);
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to build CFG for " + new MemberInfo(lambdaMethod) + "\n"
+                + lambda.getBody(), e);
+        }
+        lambdas.put(lambda, cfg);
+        for (BiConsumer<Lambda, CFG> action : lambdaActions) {
+            action.accept(lambda, cfg);
+        }
+        return cfg;
     }
     
     private boolean isReachable(BasicBlock from, BasicBlock to) {
@@ -996,6 +1180,9 @@ public class CFG {
         for (BasicBlock bb : blocks) {
             bb.state = null;
         }
+        for (FailRegion region : failRegions) {
+            region.state = null;
+        }
         exit.state = null;
         fail.state = null;
         implicit.state = null;
@@ -1005,6 +1192,7 @@ public class CFG {
         private final Annotator<FACT> annotator;
         private final Dataflow<FACT, STATE> df;
         private boolean changed = false;
+        private boolean widening = false;
 
         DFARunner(Annotator<FACT> annotator, Dataflow<FACT, STATE> df) {
             this.df = df;
@@ -1022,7 +1210,13 @@ public class CFG {
             if (changed && forwardTill < blocks.size()) {
                 List<BasicBlock> subList = blocks.subList(forwardTill, blocks.size());
                 valid = false;
-                for (int iter = 0; iter < maxIteration; iter++) {
+                // Widening dataflows switch to widening after half of iterations. Then the iterations
+                // are bounded by the widening height, but never by more than maxIteration
+                int widenFrom = df.hasWidening() ? maxIteration / 2 : maxIteration;
+                int limit = df.hasWidening() ? Math.max(maxIteration, widenFrom + Math.min(widenedHeight(),
+                    maxIteration)) : maxIteration;
+                for (int iter = 0; iter < limit; iter++) {
+                    widening = iter >= widenFrom;
                     runIteration(subList);
                     if (!changed) {
                         valid = true;
@@ -1057,51 +1251,126 @@ public class CFG {
             return valid;
         }
 
+        /**
+         * In widening mode every loop head state entry can change at most twice (initial value
+         * and widened top) and every fact can change at most twice (initial value and widened
+         * top). Other states are the merges of the values derived from these, so they can change
+         * only in the iteration where some of these changed or in the next one.
+         * 
+         * @return the maximal number of widening iterations which is enough for convergence
+         */
+        private int widenedHeight() {
+            int transitions = 2 * loopHeads * (variables.size() + 1) + 2 * blocks.size();
+            return 2 * transitions + 2;
+        }
+
         private void runIteration(List<BasicBlock> blocks) {
             changed = false;
             clearChanged();
             for (BasicBlock bb : blocks) {
-                try {
-                    if (!bb.reached) {
-                        annotator.put(bb.expr, df.makeUnknownFact());
-                        continue;
-                    }
-                    @SuppressWarnings("unchecked")
-                    STATE state = (STATE) bb.state;
-                    FACT fact = df.makeFact(state, bb.expr);
-                    FACT oldFact = annotator.get(bb.expr);
-                    if (!df.sameFact(oldFact, fact)) {
-                        FACT updatedFact = df.mergeFacts(oldFact, fact);
-                        if (!df.sameFact(updatedFact, oldFact)) {
-                            annotator.put(bb.expr, updatedFact);
-                            bb.changed = changed = true;
-                        }
-                    }
-                    if (bb.expr.getCode() == AstCode.Goto) {
-                        updateState(state, bb.passTarget);
-                        continue;
-                    }
-                    if (bb.passTarget != null) {
-                        updateState(df.transferState(state, bb.expr), bb.passTarget);
-                    }
-                    if (bb.trueTarget != null || bb.falseTarget != null) {
-                        TrueFalse<STATE> tf = transferConditional(bb.expr, state);
-                        updateState(tf.trueState, bb.trueTarget);
-                        updateState(tf.falseState, bb.falseTarget);
-                    }
-                    if (bb.failTargets != null) {
-                        STATE newState = bb.expr.getCode() == AstCode.Ret ? df.transferState(state, bb.expr)
-                                : df.transferExceptionalState(state, bb.expr);
-                        for (BasicBlock target : bb.failTargets) {
-                            updateState(newState, target);
-                        }
+                if (bb.inner)
+                    continue;
+                flushRegions(bb);
+                @SuppressWarnings("unchecked")
+                STATE state = (STATE) bb.state;
+                while (true) {
+                    try {
+                        state = runBlock(bb, state);
+                    } catch (Exception e) {
+                        throw new RuntimeException("Error running DFA at block " + bb + "\n" + CFG.this + CFG.this.body, e);
                     }
-                } catch (Exception e) {
-                    throw new RuntimeException("Error running DFA at block " + bb + "\n" + CFG.this + CFG.this.body, e);
+                    if (bb.next == null)
+                        break;
+                    bb = bb.next;
+                }
+            }
+            // Special blocks are not iterated, so they receive the region states here
+            for (FailRegion region : failRegions) {
+                if (region.state == null)
+                    continue;
+                @SuppressWarnings("unchecked")
+                STATE state = (STATE) region.state;
+                for (BasicBlock target : region.targets) {
+                    if (target.id < 0)
+                        updateState(region.last, state, target);
                 }
             }
         }
 
+        private void flushRegions(BasicBlock target) {
+            if (target.failSources == null)
+                return;
+            for (FailRegion region : target.failSources) {
+                @SuppressWarnings("unchecked")
+                STATE state = (STATE) region.state;
+                updateState(region.last, state, target);
+            }
+        }
+
+        private void updateRegionState(BasicBlock source, STATE newState) {
+            FailRegion region = source.failRegion;
+            @SuppressWarnings("unchecked")
+            STATE oldState = (STATE) region.state;
+            if (newState == null)
+                return;
+            STATE updatedState = newState;
+            if (oldState != null) {
+                if (df.sameState(oldState, newState))
+                    return;
+                updatedState = df.mergeStates(oldState, newState);
+                if (df.sameState(oldState, updatedState))
+                    return;
+            }
+            region.state = updatedState;
+            // Some handler is already visited during this iteration
+            if (region.minTarget <= source.id)
+                changed = true;
+        }
+
+        /**
+         * @return the state to pass into the next block of the same coarse block
+         */
+        private STATE runBlock(BasicBlock bb, STATE state) {
+            if (!bb.reached) {
+                annotator.put(bb.expr, df.makeUnknownFact());
+                return null;
+            }
+            FACT fact = df.makeFact(state, bb.expr);
+            FACT oldFact = annotator.get(bb.expr);
+            if (!df.sameFact(oldFact, fact)) {
+                FACT updatedFact = widening ? df.widenFacts(oldFact, fact) : df.mergeFacts(oldFact, fact);
+                if (!df.sameFact(updatedFact, oldFact)) {
+                    annotator.put(bb.expr, updatedFact);
+                    bb.changed = changed = true;
+                }
+            }
+            if (bb.expr.getCode() == AstCode.Goto) {
+                if (bb.next != null)
+                    return state;
+                updateState(bb, state, bb.passTarget);
+                return null;
+            }
+            STATE nextState = null;
+            if (bb.passTarget != null) {
+                STATE newState = df.transferState(state, bb.expr);
+                if (bb.next != null)
+                    nextState = newState;
+                else
+                    updateState(bb, newState, bb.passTarget);
+            }
+            if (bb.trueTarget != null || bb.falseTarget != null) {
+                TrueFalse<STATE> tf = transferConditional(bb.expr, state);
+                updateState(bb, tf.trueState, bb.trueTarget);
+                updateState(bb, tf.falseState, bb.falseTarget);
+            }
+            if (bb.failRegion != null) {
+                STATE newState = bb.expr.getCode() == AstCode.Ret ? df.transferState(state, bb.expr)
+                        : df.transferExceptionalState(state, bb.expr);
+                updateRegionState(bb, newState);
+            }
+            return nextState;
+        }
+
         private TrueFalse<STATE> transferConditional(Expression expr, STATE state) {
             boolean invert = false;
             while(expr.getCode() == AstCode.LogicalNot) {
@@ -1112,7 +1381,7 @@ public class CFG {
             return invert ? tf.invert() : tf;
         }
 
-        private void updateState(STATE newState, BasicBlock target) {
+        private void updateState(BasicBlock source, STATE newState, BasicBlock target) {
             @SuppressWarnings("unchecked")
             STATE oldState = (STATE) target.state;
             if (oldState == null) {
@@ -1121,7 +1390,10 @@ public class CFG {
                     target.changed = changed = true;
                 }
             } else if (newState != null && !df.sameState(oldState, newState)) {
-                STATE updatedState = df.mergeStates(oldState, newState);
+                // Widen all the edges incoming to loop heads, so loop head states cannot ascend
+                // via forward edges either
+                boolean widen = widening && target.loopHead;
+                STATE updatedState = widen ? df.widenStates(oldState, newState) : df.mergeStates(oldState, newState);
                 target.state = updatedState;
                 if (!df.sameState(oldState, updatedState)) {
                     target.changed = changed = true;
@@ -1152,13 +1424,21 @@ public class CFG {
 
     static class BasicBlock {
         Object state;
-        boolean changed, reached, synthetic;
+        // inner: block is not the first in the coarse block, so it has no own DFA state
+        // loopHead: block is the target of some back edge
+        boolean changed, reached, synthetic, inner, loopHead;
         int id = -1;
         Expression expr;
+        // Next block within the same coarse block (if any)
+        BasicBlock next;
         BasicBlock passTarget;
         BasicBlock trueTarget;
         BasicBlock falseTarget;
         List<BasicBlock> failTargets;
+        // Shared exceptional edge set of this block (if it has fail targets)
+        FailRegion failRegion;
+        // Regions which have this block as exceptional target
+        List<FailRegion> failSources;
 
         BasicBlock() {
         }
@@ -1291,6 +1571,24 @@ public class CFG {
         }
     }
 
+    /**
+     * Exceptional edge set shared by several blocks. The exceptional states of
+     * all the source blocks are accumulated in the region and propagated to
+     * the targets once.
+     */
+    static class FailRegion {
+        final List<BasicBlock> targets;
+        Object state;
+        // Last source block
+        BasicBlock last;
+        // Minimal id of non-special target
+        int minTarget = Integer.MAX_VALUE;
+
+        FailRegion(List<BasicBlock> targets) {
+            this.targets = targets;
+        }
+    }
+
     interface JumpContext {
         void addReturn(BasicBlock block);
 
@@ -44,12 +44,14 @@ public class ClassFields {
     Map<MemberInfo, Expression> values = new HashMap<>();
     Set<FieldDefinition> initializedInCtor = new HashSet<>();
     MethodStats ms;
-    Map<MemberInfo, Map<MemberInfo, Expression>> ctorFields = new HashMap<>();
+    Map<MemberInfo, PersistentMap<MemberInfo, Expression>> ctorFields = new HashMap<>();
+    // Phi nodes interned across all the constructors of the class (see FrameContext)
+    final Map<Set<Expression>, Expression> ctorPhiNodes = new HashMap<>();
     
     public ClassFields(TypeDefinition td, FieldStats fieldStats, MethodStats methodStats) {
         this.ms = methodStats;
         for (FieldDefinition fd : td.getDeclaredFields()) {
-            fields.put(new MemberInfo(fd), fd);
+            fields.put(MemberInfo.of(fd), fd);
             int flags = fieldStats.getFlags(fd);
             if(Flags.testAny(flags, FieldStats.WRITE_CONSTRUCTOR) &&
                     !Flags.testAny(flags, FieldStats.WRITE_CLASS | FieldStats.WRITE_PACKAGE | FieldStats.WRITE_OUTSIDE) &&
@@ -79,7 +81,7 @@ public class ClassFields {
     }
     
     void mergeConstructor(MethodDefinition md, Frame frame, FrameContext fc) {
-        ctorFields.put(new MemberInfo(md), frame.fieldValues);
+        ctorFields.put(MemberInfo.of(md), frame.fieldValues);
         frame.fieldValues.forEach((mi, expr) -> {
             FieldDefinition fd = fields.get(mi);
             if (fd != null && !fd.isStatic() && (fd.isFinal() || (fd.isPrivate() || fd.isPackagePrivate())
@@ -15,9 +15,6 @@
  */
 package one.util.huntbugs.flow;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Objects;
 import java.util.function.BiFunction;
 import java.util.function.Function;
@@ -51,9 +48,9 @@ public class ConstAnnotator extends Annotator<Object> {
         super("value", null);
     }
     
-    boolean build(CFG cfg) {
+    boolean build(CFG cfg, Runnable onIncomplete) {
         return cfg.<ContextValues, Object> runDFA(this, (md, closureState) -> new ConstDataflow(closureState == null
-                ? ContextValues.DEFAULT : closureState), 7);
+                ? new ContextValues(cfg.variables, null) : closureState), 7, onIncomplete);
     }
     
     /**
@@ -83,47 +80,66 @@ public class ConstAnnotator extends Annotator<Object> {
     }
 
     static final class ContextValues {
-        static final ContextValues DEFAULT = new ContextValues(null);
-        
-        final Map<Variable, Object> values;
+        private static final Object[] NO_VALUES = {};
+
+        final VariableIndex index;
+        // indexed by variable id, null means no known value
+        final Object[] values;
         
-        private ContextValues(Map<Variable, Object> values) {
+        ContextValues(VariableIndex index, Object[] values) {
+            this.index = index;
             this.values = values;
         }
         
+        private ContextValues empty() {
+            return values == null ? this : new ContextValues(index, null);
+        }
+        
         ContextValues merge(ContextValues other) {
             if(this == other)
                 return this;
-            if(this == DEFAULT || other == DEFAULT)
-                return DEFAULT;
-            Map<Variable, Object> newValues = new HashMap<>(values);
-            newValues.keySet().retainAll(other.values.keySet());
-            if(newValues.isEmpty())
-                return DEFAULT;
-            other.values.forEach((k, v) -> newValues.compute(k, (oldK, oldV) -> Objects.equals(v, oldV) ? v : null));
-            return newValues.isEmpty() ? DEFAULT : new ContextValues(newValues);
+            if(values == null)
+                return this;
+            if(other.values == null)
+                return other;
+            int len = Math.min(values.length, other.values.length);
+            Object[] newValues = null;
+            boolean same = len == values.length;
+            for(int i=0; i<len; i++) {
+                Object v = values[i];
+                if(v == null)
+                    continue;
+                if(Objects.equals(v, other.values[i])) {
+                    if(newValues == null)
+                        newValues = new Object[len];
+                    newValues[i] = v;
+                } else {
+                    same = false;
+                }
+            }
+            if(same)
+                return this;
+            return newValues == null ? empty() : new ContextValues(index, newValues);
         }
         
         ContextValues add(Variable var, Object value) {
-            if(values == null) {
-                return new ContextValues(Collections.singletonMap(var, value));
-            }
-            if(Objects.equals(value, values.get(var)))
+            if(value == null)
+                return remove(var);
+            int id = index.add(var);
+            if(Objects.equals(value, VariableIndex.get(values, id)))
                 return this;
-            Map<Variable, Object> newValues = new HashMap<>(values);
-            newValues.put(var, value);
-            return new ContextValues(newValues);
+            Object[] newValues = index.copy(values, NO_VALUES);
+            newValues[id] = value;
+            return new ContextValues(index, newValues);
         }
         
         ContextValues remove(Variable var) {
-            if(values != null && values.containsKey(var)) {
-                if(values.size() == 1)
-                    return DEFAULT;
-                Map<Variable, Object> newValues = new HashMap<>(values);
-                newValues.remove(var);
-                return new ContextValues(newValues);
-            }
-            return this;
+            int id = index.get(var);
+            if(VariableIndex.get(values, id) == null)
+                return this;
+            Object[] newValues = values.clone();
+            newValues[id] = null;
+            return VariableIndex.isEmpty(newValues) ? empty() : new ContextValues(index, newValues);
         }
         
         ContextValues transfer(Expression expr) {
@@ -133,7 +149,7 @@ public class ConstAnnotator extends Annotator<Object> {
         
         Object resolve(Expression expr) {
             Object oper = expr.getOperand();
-            Object result = oper instanceof Variable && values != null ? values.get(oper) : null;
+            Object result = oper instanceof Variable ? VariableIndex.get(values, index.get((Variable) oper)) : null;
             return result == UNKNOWN_VALUE ? null : result;
         }
 
@@ -144,12 +160,12 @@ public class ConstAnnotator extends Annotator<Object> {
             if (obj == null || getClass() != obj.getClass())
                 return false;
             ContextValues other = (ContextValues) obj;
-            return Objects.equals(values, other.values);
+            return VariableIndex.equals(values, other.values);
         }
         
         @Override
         public String toString() {
-            return values == null ? "{}" : values.toString();
+            return index.toString(values);
         }
     }
     
@@ -602,6 +618,13 @@ public class ConstAnnotator extends Annotator<Object> {
             return s1.equals(s2);
         }
 
+        // No separate widening: values lattice is flat, so merge keeps or drops every entry and fact
+        // and thus is a widening itself
+        @Override
+        public boolean hasWidening() {
+            return true;
+        }
+
         @Override
         public Object makeFact(ContextValues ctx, Expression expr) {
             switch(expr.getCode()) {
@@ -42,6 +42,45 @@ interface Dataflow<FACT, STATE> {
     
     public boolean sameFact(FACT f1, FACT f2);
     
+    /**
+     * Widening operator which is applied to the loop head states once the
+     * plain iterations did not converge. The result must be not more precise
+     * than {@link #mergeStates(Object, Object)} and every variable entry must
+     * either stay the same or go to the top value which is never changed by
+     * subsequent widenings.
+     * 
+     * @param oldState state currently stored at the loop head
+     * @param newState state coming via the back edge
+     * @return widened state
+     */
+    public default STATE widenStates(STATE oldState, STATE newState) {
+        return mergeStates(oldState, newState);
+    }
+    
+    /**
+     * Widening operator for the facts, applied when the plain iterations did
+     * not converge. Similarly to {@link #widenStates(Object, Object)}, the
+     * result must be either the old fact or the top fact which is never
+     * changed by subsequent widenings.
+     * 
+     * @param oldFact fact currently stored for the expression (may be null)
+     * @param newFact newly computed fact
+     * @return widened fact
+     */
+    public default FACT widenFacts(FACT oldFact, FACT newFact) {
+        return mergeFacts(oldFact, newFact);
+    }
+    
+    /**
+     * @return true if {@link #widenStates(Object, Object)} and
+     * {@link #widenFacts(Object, Object)} of this dataflow satisfy their
+     * contracts (either overridden or merge operators satisfy them already),
+     * so the widening iterations are guaranteed to converge
+     */
+    public default boolean hasWidening() {
+        return false;
+    }
+    
     public default void onSuccess(STATE exitState) {};
     
     public default void onFail(STATE exitState) {};
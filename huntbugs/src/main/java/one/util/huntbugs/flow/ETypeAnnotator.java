@@ -15,9 +15,6 @@
  */
 package one.util.huntbugs.flow;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Objects;
 
 import com.strobel.assembler.metadata.FieldReference;
@@ -30,6 +27,7 @@ import com.strobel.decompiler.ast.Expression;
 import com.strobel.decompiler.ast.Variable;
 
 import one.util.huntbugs.flow.etype.EType;
+import one.util.huntbugs.flow.etype.ETypeLattice;
 import one.util.huntbugs.util.Methods;
 import one.util.huntbugs.util.Types;
 
@@ -43,9 +41,9 @@ public class ETypeAnnotator extends Annotator<EType> {
         super("etype", null);
     }
 
-    boolean build(CFG cfg) {
+    boolean build(CFG cfg, Runnable onIncomplete) {
         return cfg.<ContextTypes, EType> runDFA(this, (md, closure) -> new ETypeDataflow(closure == null
-                ? ContextTypes.DEFAULT : closure), 7);
+                ? new ContextTypes(cfg.variables, new ETypeLattice(), null) : closure), 7, onIncomplete);
     }
 
     public EType resolve(Expression expr) {
@@ -54,67 +52,103 @@ public class ETypeAnnotator extends Annotator<EType> {
     }
 
     static class ContextTypes {
-        static final ContextTypes DEFAULT = new ContextTypes(null);
+        private static final EType[] NO_TYPES = {};
 
-        final Map<Variable, EType> values;
+        final VariableIndex index;
+        final ETypeLattice lattice;
+        // indexed by variable id, null means no known type
+        final EType[] values;
 
-        private ContextTypes(Map<Variable, EType> values) {
+        ContextTypes(VariableIndex index, ETypeLattice lattice, EType[] values) {
+            this.index = index;
+            this.lattice = lattice;
             this.values = values;
         }
 
+        private ContextTypes empty() {
+            return values == null ? this : new ContextTypes(index, lattice, null);
+        }
+
         ContextTypes merge(ContextTypes other) {
             if (this == other)
                 return this;
-            if (this == DEFAULT || other == DEFAULT)
-                return DEFAULT;
-            Map<Variable, EType> newTypes = new HashMap<>(values);
-            newTypes.keySet().retainAll(other.values.keySet());
-            if (newTypes.isEmpty())
-                return DEFAULT;
-            other.values.forEach((k, v) -> newTypes.compute(k, (oldK, oldV) -> oldV == null ? null
-                    : EType.or(v, oldV).unknownToNull()));
-            return newTypes.isEmpty() ? DEFAULT : new ContextTypes(newTypes);
+            if (values == null)
+                return this;
+            if (other.values == null)
+                return other;
+            int len = Math.min(values.length, other.values.length);
+            EType[] newTypes = null;
+            boolean same = len == values.length;
+            for (int i = 0; i < len; i++) {
+                EType oldType = values[i];
+                if (oldType == null)
+                    continue;
+                EType type = other.values[i] == null ? null : lattice.or(other.values[i], oldType).unknownToNull();
+                if (type != null) {
+                    if (newTypes == null)
+                        newTypes = new EType[len];
+                    newTypes[i] = type;
+                }
+                if (!oldType.equals(type))
+                    same = false;
+            }
+            if (same)
+                return this;
+            return newTypes == null ? empty() : new ContextTypes(index, lattice, newTypes);
         }
 
-        ContextTypes and(Variable var, EType value) {
-            if (values == null) {
-                return new ContextTypes(Collections.singletonMap(var, value));
+        ContextTypes widen(ContextTypes other) {
+            ContextTypes merged = merge(other);
+            if (merged == this || merged.values == null)
+                return merged;
+            // Keep only the types which are stable: widened state never gets new entries
+            EType[] newTypes = merged.values.clone();
+            boolean same = true;
+            for (int i = 0; i < newTypes.length; i++) {
+                if (newTypes[i] != null && !newTypes[i].equals(VariableIndex.get(values, i)))
+                    newTypes[i] = null;
+                if (newTypes[i] == null && VariableIndex.get(values, i) != null)
+                    same = false;
             }
-            EType oldType = values.get(var);
+            if (same && newTypes.length >= values.length)
+                return this;
+            return VariableIndex.isEmpty(newTypes) ? empty() : new ContextTypes(index, lattice, newTypes);
+        }
+
+        ContextTypes and(Variable var, EType value) {
+            int id = index.add(var);
+            EType oldType = VariableIndex.get(values, id);
             if (Objects.equals(value, oldType))
                 return this;
-            EType newType = EType.and(oldType, value);
+            EType newType = lattice.and(oldType, value);
             if (Objects.equals(newType, oldType))
                 return this;
-            Map<Variable, EType> newTypes = new HashMap<>(values);
-            newTypes.put(var, newType);
-            return new ContextTypes(newTypes);
+            return set(id, newType);
         }
 
         ContextTypes add(Variable var, EType value) {
             if (value == null || value == EType.UNKNOWN) {
                 return remove(var);
             }
-            if (values == null) {
-                return new ContextTypes(Collections.singletonMap(var, value));
-            }
-            EType oldType = values.get(var);
-            if (Objects.equals(value, oldType))
+            int id = index.add(var);
+            if (Objects.equals(value, VariableIndex.get(values, id)))
                 return this;
-            Map<Variable, EType> newTypes = new HashMap<>(values);
-            newTypes.put(var, value);
-            return new ContextTypes(newTypes);
+            return set(id, value);
+        }
+        
+        private ContextTypes set(int id, EType value) {
+            EType[] newTypes = index.copy(values, NO_TYPES);
+            newTypes[id] = value;
+            return new ContextTypes(index, lattice, newTypes);
         }
         
         ContextTypes remove(Variable var) {
-            if (values != null && values.containsKey(var)) {
-                if (values.size() == 1)
-                    return DEFAULT;
-                Map<Variable, EType> newTypes = new HashMap<>(values);
-                newTypes.remove(var);
-                return new ContextTypes(newTypes);
-            }
-            return this;
+            int id = index.get(var);
+            if (VariableIndex.get(values, id) == null)
+                return this;
+            EType[] newTypes = values.clone();
+            newTypes[id] = null;
+            return VariableIndex.isEmpty(newTypes) ? empty() : new ContextTypes(index, lattice, newTypes);
         }
 
         ContextTypes transfer(Expression expr) {
@@ -126,7 +160,7 @@ public class ETypeAnnotator extends Annotator<EType> {
 
         EType resolve(Expression expr) {
             Object oper = expr.getOperand();
-            EType result = oper instanceof Variable && values != null ? values.get(oper) : null;
+            EType result = oper instanceof Variable ? VariableIndex.get(values, index.get((Variable) oper)) : null;
             return result == EType.UNKNOWN ? null : result;
         }
 
@@ -137,21 +171,23 @@ public class ETypeAnnotator extends Annotator<EType> {
             if (obj == null || getClass() != obj.getClass())
                 return false;
             ContextTypes other = (ContextTypes) obj;
-            return Objects.equals(values, other.values);
+            return VariableIndex.equals(values, other.values);
         }
 
         @Override
         public String toString() {
-            return values == null ? "{}" : values.toString();
+            return index.toString(values);
         }
 
     }
 
     class ETypeDataflow implements Dataflow<EType, ContextTypes> {
         private final ContextTypes initial;
+        private final ETypeLattice lattice;
 
         ETypeDataflow(ContextTypes initial) {
             this.initial = initial;
+            this.lattice = initial.lattice;
         }
 
         @Override
@@ -165,7 +201,7 @@ public class ETypeAnnotator extends Annotator<EType> {
                 Expression arg = expr.getArguments().get(0);
                 if (arg.getCode() == AstCode.Load) {
                     Variable var = (Variable) arg.getOperand();
-                    EType type = EType.subType((TypeReference) expr.getOperand());
+                    EType type = lattice.subType((TypeReference) expr.getOperand());
                     return src.and(var, type);
                 }
             }
@@ -178,7 +214,7 @@ public class ETypeAnnotator extends Annotator<EType> {
                 Expression arg = expr.getArguments().get(0);
                 if (arg.getCode() == AstCode.Load) {
                     Variable var = (Variable) arg.getOperand();
-                    EType type = EType.subType((TypeReference) expr.getOperand()).negate();
+                    EType type = lattice.negate(lattice.subType((TypeReference) expr.getOperand()));
                     return src.and(var, type);
                 }
             }
@@ -194,7 +230,7 @@ public class ETypeAnnotator extends Annotator<EType> {
                 Expression arg = expr.getArguments().get(0);
                 if (arg.getCode() == AstCode.Load) {
                     var = (Variable) arg.getOperand();
-                    etype = EType.subType((TypeReference) expr.getOperand());
+                    etype = lattice.subType((TypeReference) expr.getOperand());
                 }
             } else if (expr.getCode() == AstCode.CmpEq || expr.getCode() == AstCode.CmpNe || (expr
                     .getCode() == AstCode.InvokeVirtual && Methods.isEqualsMethod((MethodReference) expr
@@ -217,7 +253,7 @@ public class ETypeAnnotator extends Annotator<EType> {
                     Expression target = arg.getArguments().get(0);
                     if(target.getCode() == AstCode.Load) {
                         var = (Variable) target.getOperand();
-                        etype = EType.exact((TypeReference) clazz);
+                        etype = lattice.exact((TypeReference) clazz);
                     }
                 }
             } else if (expr.getCode() == AstCode.InvokeVirtual) {
@@ -227,12 +263,12 @@ public class ETypeAnnotator extends Annotator<EType> {
                     Expression target = expr.getArguments().get(1);
                     if(clazz instanceof TypeReference && target.getCode() == AstCode.Load) {
                         var = (Variable) target.getOperand();
-                        etype = EType.subType((TypeReference) clazz);
+                        etype = lattice.subType((TypeReference) clazz);
                     }
                 }
             }
             if (var != null) {
-                return new TrueFalse<>(src.and(var, etype), src.and(var, etype.negate()), invert);
+                return new TrueFalse<>(src.and(var, etype), src.and(var, lattice.negate(etype)), invert);
             }
             return new TrueFalse<>(src);
         }
@@ -247,6 +283,22 @@ public class ETypeAnnotator extends Annotator<EType> {
             return s1.equals(s2);
         }
 
+        @Override
+        public ContextTypes widenStates(ContextTypes oldState, ContextTypes newState) {
+            return oldState.widen(newState);
+        }
+
+        @Override
+        public EType widenFacts(EType oldFact, EType newFact) {
+            EType merged = lattice.or(oldFact, newFact);
+            return oldFact == null || merged.equals(oldFact) ? merged : EType.UNKNOWN;
+        }
+
+        @Override
+        public boolean hasWidening() {
+            return true;
+        }
+
         @Override
         public EType makeFact(ContextTypes state, Expression expr) {
             switch (expr.getCode()) {
@@ -260,38 +312,38 @@ public class ETypeAnnotator extends Annotator<EType> {
                 if (Integer.valueOf(0).equals(cond) || Boolean.FALSE.equals(cond)) {
                     return right;
                 }
-                return EType.or(left, right);
+                return lattice.or(left, right);
             }
             case Load: {
                 Variable v = (Variable) expr.getOperand();
                 TypeReference varType = v.getType();
                 if(v.getOriginalParameter() != null)
                     varType = v.getOriginalParameter().getParameterType();
-                EType etype = EType.and(state.resolve(expr), EType.and(fromSource(state, expr), EType.subType(
+                EType etype = lattice.and(state.resolve(expr), lattice.and(fromSource(state, expr), lattice.subType(
                     MetadataHelper.erase(varType))));
                 return etype == null ? EType.UNKNOWN : etype;
             }
             case GetField:
             case GetStatic: {
-                EType etype = EType.and(state.resolve(expr), EType.and(fromSource(state, expr), EType.subType(
+                EType etype = lattice.and(state.resolve(expr), lattice.and(fromSource(state, expr), lattice.subType(
                     ((FieldReference) expr.getOperand()).getFieldType())));
                 return etype == null ? EType.UNKNOWN : etype;
             }
             case NewArray:
-                return EType.exact(((TypeReference)expr.getOperand()).makeArrayType());
+                return lattice.exact(((TypeReference)expr.getOperand()).makeArrayType());
             case InitObject:
             case InitArray:
             case MultiANewArray:
-                return EType.exact(expr.getInferredType());
+                return lattice.exact(expr.getInferredType());
             case InvokeVirtual:
             case InvokeStatic:
             case InvokeSpecial:
             case InvokeInterface: {
                 MethodReference mr = (MethodReference) expr.getOperand();
-                return EType.subType(MetadataHelper.erase(mr).getReturnType());
+                return lattice.subType(MetadataHelper.erase(mr).getReturnType());
             }
             case CheckCast:
-                return EType.and(EType.subType(MetadataHelper.erase((TypeReference) expr.getOperand())), get(expr
+                return lattice.and(lattice.subType(MetadataHelper.erase((TypeReference) expr.getOperand())), get(expr
                         .getArguments().get(0)));
             case Store:
             case PutStatic:
@@ -301,7 +353,7 @@ public class ETypeAnnotator extends Annotator<EType> {
             case StoreElement:
                 return get(expr.getArguments().get(2));
             case LoadElement:
-                return EType.subType(expr.getInferredType());
+                return lattice.subType(expr.getInferredType());
             default:
                 return EType.UNKNOWN;
             }
@@ -314,7 +366,7 @@ public class ETypeAnnotator extends Annotator<EType> {
 
         @Override
         public EType mergeFacts(EType f1, EType f2) {
-            return EType.or(f1, f2);
+            return lattice.or(f1, f2);
         }
 
         @Override
@@ -324,9 +376,9 @@ public class ETypeAnnotator extends Annotator<EType> {
 
         private EType resolve(ContextTypes ctx, Expression expr) {
             if (expr.getCode() == AstCode.LdC) {
-                return EType.exact(expr.getInferredType());
+                return lattice.exact(expr.getInferredType());
             }
-            return EType.and(get(expr), ctx.resolve(expr));
+            return lattice.and(get(expr), ctx.resolve(expr));
         }
 
         private EType fromSource(ContextTypes ctx, Expression expr) {
@@ -342,14 +394,14 @@ public class ETypeAnnotator extends Annotator<EType> {
                     if (newVal == null) {
                         if(child.getOperand() instanceof ParameterDefinition) {
                             ParameterDefinition pd = (ParameterDefinition) child.getOperand();
-                            newVal = EType.subType(MetadataHelper.erase(pd.getParameterType()));
+                            newVal = lattice.subType(MetadataHelper.erase(pd.getParameterType()));
                         } else
                             return EType.UNKNOWN;
                     }
                     if (value == null) {
                         value = newVal;
                     } else {
-                        value = EType.or(value, newVal);
+                        value = lattice.or(value, newVal);
                     }
                     if (value == EType.UNKNOWN)
                         return EType.UNKNOWN;
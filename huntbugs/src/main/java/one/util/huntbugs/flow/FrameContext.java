@@ -16,7 +16,9 @@
 package one.util.huntbugs.flow;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 
 
@@ -27,7 +29,6 @@ import java.util.Map;
 
 import one.util.huntbugs.flow.SourceAnnotator.Frame;
 import one.util.huntbugs.util.Exprs;
-import one.util.huntbugs.util.Maps;
 import one.util.huntbugs.warning.WarningAnnotation.MemberInfo;
 
 
@@ -51,21 +52,25 @@ class FrameContext {
     final MethodDefinition md;
     final ClassFields cf;
     private final Map<Expression, Expression> updatedNodes = new HashMap<>();
+    // Phi nodes are interned by the set of their children, so equal phi nodes are the same object.
+    // Constructors share the table of the class, as their field values are merged together
+    private final Map<Set<Expression>, Expression> phiNodes;
     
     FrameContext(MethodDefinition md, ClassFields cf) {
         this.md = md;
         this.cf = cf;
+        this.phiNodes = md.isConstructor() && cf != null ? cf.ctorPhiNodes : new HashMap<>();
     }
     
     boolean isThis(Expression expr) {
         return !md.isStatic() && Exprs.isThis(expr);
     }
     
-    Map<MemberInfo, Expression> getCtorFields(MemberReference ctor) {
-        return cf.ctorFields.get(new MemberInfo(ctor));
+    PersistentMap<MemberInfo, Expression> getCtorFields(MemberReference ctor) {
+        return cf.ctorFields.get(MemberInfo.of(ctor));
     }
     
-    Map<MemberInfo, Expression> getInitialFields() {
+    PersistentMap<MemberInfo, Expression> getInitialFields() {
         Map<MemberInfo, Expression> map = new HashMap<>();
         if(md.isConstructor()) {
             cf.fields.forEach((mi, fd) -> {
@@ -96,7 +101,11 @@ class FrameContext {
         } else {
             map.putAll(cf.values);
         }
-        return Maps.compactify(map);
+        PersistentMap<MemberInfo, Expression> result = PersistentMap.empty();
+        for (Map.Entry<MemberInfo, Expression> e : map.entrySet()) {
+            result = result.put(e.getKey(), e.getValue());
+        }
+        return result;
     }
     
     private static Expression constant(Object val) {
@@ -134,6 +143,10 @@ class FrameContext {
         return updatedNodes.computeIfAbsent(src, s -> new Expression(SourceAnnotator.UPDATE_TYPE, null, s.getOffset(), s));
     }
 
+    Expression makePhiNode(Set<Expression> childSet, List<Expression> children) {
+        return phiNodes.computeIfAbsent(childSet, s -> new Expression(SourceAnnotator.PHI_TYPE, null, 0, children));
+    }
+
     public void makeFieldsFrom(Frame frame) {
         if(frame == null)
             return;
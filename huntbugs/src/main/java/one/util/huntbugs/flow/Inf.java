@@ -50,4 +50,14 @@ public class Inf {
      * Annotator which can determine the purity of given expression
      */
     public static final PurityAnnotator PURITY = new PurityAnnotator();
+
+    /**
+     * Kinds of facts provided by the annotators above. Facts are computed
+     * only if they are requested by some of the detectors visiting the method
+     * (see {@code AstVisitor#requires()}). SOURCE facts are always available
+     * for the method body and the bodies of its lambdas.
+     */
+    public enum Kind {
+        SOURCE, CONST, ETYPE, NULL, PURITY, BACKLINK
+    }
 }
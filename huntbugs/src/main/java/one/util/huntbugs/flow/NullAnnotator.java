@@ -15,12 +15,7 @@
  */
 package one.util.huntbugs.flow;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
 
 import com.strobel.assembler.metadata.FieldDefinition;
 import com.strobel.assembler.metadata.FieldReference;
@@ -45,9 +40,9 @@ public class NullAnnotator extends Annotator<Nullness> {
         super("null", null);
     }
 
-    boolean build(CFG cfg) {
+    boolean build(CFG cfg, Runnable onIncomplete) {
         return cfg.<ContextNulls, Nullness> runDFA(this, (md, closure) -> new NullDataflow(md,
-                closure == null ? ContextNulls.DEFAULT : closure), 7);
+                closure == null ? new ContextNulls(cfg.variables, null) : closure), 7, onIncomplete);
     }
 
     public Nullness resolve(Expression expr) {
@@ -56,39 +51,69 @@ public class NullAnnotator extends Annotator<Nullness> {
     }
 
     static class ContextNulls {
-        static final ContextNulls DEFAULT = new ContextNulls(null);
+        private static final Nullness[] NO_NULLS = {};
 
-        final Map<Variable, Nullness> values;
+        final VariableIndex index;
+        // indexed by variable id, null means no known nullness
+        final Nullness[] values;
 
-        private ContextNulls(Map<Variable, Nullness> values) {
+        ContextNulls(VariableIndex index, Nullness[] values) {
+            this.index = index;
             this.values = values;
         }
 
+        private ContextNulls empty() {
+            return values == null ? this : new ContextNulls(index, null);
+        }
+
         ContextNulls merge(ContextNulls other) {
             if (this == other)
                 return this;
-            if (values == null || other.values == null)
-                return DEFAULT;
-            Set<Variable> vars = new HashSet<>(values.keySet());
-            vars.addAll(other.values.keySet());
-            Map<Variable, Nullness> newNulls = new HashMap<>();
-            for(Variable v : vars) {
-                Nullness n1 = get(values, v);
-                Nullness n2 = get(other.values, v);
-                if(n1 != null && n2 != null) {
+            if (values == null)
+                return this;
+            if (other.values == null)
+                return other;
+            int len = Math.max(values.length, other.values.length);
+            Nullness[] newNulls = null;
+            for (int i = 0; i < len; i++) {
+                if (VariableIndex.get(values, i) == null && VariableIndex.get(other.values, i) == null)
+                    continue;
+                Nullness n1 = get(values, i);
+                Nullness n2 = get(other.values, i);
+                if (n1 != null && n2 != null) {
                     Nullness n = n1.or(n2);
-                    if(n != null)
-                        newNulls.put(v, n);
+                    if (n != null) {
+                        if (newNulls == null)
+                            newNulls = new Nullness[len];
+                        newNulls[i] = n;
+                    }
                 }
             }
-            return newNulls.isEmpty() ? DEFAULT : new ContextNulls(newNulls);
+            return newNulls == null ? empty() : new ContextNulls(index, newNulls);
+        }
+
+        ContextNulls widen(ContextNulls other) {
+            ContextNulls merged = merge(other);
+            if (merged == this || merged.values == null)
+                return merged;
+            // Every entry either stays as is or goes to the top, so each entry is widened at most once.
+            // The top for locals is no entry, but missing parameter entry means the value at entry,
+            // thus parameters are widened to explicit UNKNOWN_WIDENED
+            Nullness[] newNulls = merged.values.clone();
+            for (int i = 0; i < newNulls.length; i++) {
+                if (newNulls[i] == null || newNulls[i].equals(get(values, i)))
+                    continue;
+                newNulls[i] = index.getVariable(i).getOriginalParameter() == null ? null : Nullness.UNKNOWN_WIDENED;
+            }
+            ContextNulls widened = VariableIndex.isEmpty(newNulls) ? empty() : new ContextNulls(index, newNulls);
+            return widened.equals(this) ? this : widened;
         }
 
-        private static Nullness get(Map<Variable, Nullness> map, Variable v) {
-            Nullness nullness = map.get(v);
+        private Nullness get(Nullness[] nulls, int id) {
+            Nullness nullness = VariableIndex.get(nulls, id);
             if(nullness != null)
                 return nullness;
-            ParameterDefinition pd = v.getOriginalParameter();
+            ParameterDefinition pd = index.getVariable(id).getOriginalParameter();
             if(pd != null) {
                 return Nullness.UNKNOWN_AT_ENTRY;
             }
@@ -96,26 +121,23 @@ public class NullAnnotator extends Annotator<Nullness> {
         }
 
         ContextNulls add(Variable var, Nullness value) {
-            if (values == null) {
-                return new ContextNulls(Collections.singletonMap(var, value));
-            }
-            Nullness oldNullability = values.get(var);
-            if (Objects.equals(value, oldNullability))
+            if (value == null)
+                return remove(var);
+            int id = index.add(var);
+            if (Objects.equals(value, VariableIndex.get(values, id)))
                 return this;
-            Map<Variable, Nullness> newNulls = new HashMap<>(values);
-            newNulls.put(var, value);
-            return new ContextNulls(newNulls);
+            Nullness[] newNulls = index.copy(values, NO_NULLS);
+            newNulls[id] = value;
+            return new ContextNulls(index, newNulls);
         }
 
         ContextNulls remove(Variable var) {
-            if (values != null && values.containsKey(var)) {
-                if (values.size() == 1)
-                    return DEFAULT;
-                Map<Variable, Nullness> newNulls = new HashMap<>(values);
-                newNulls.remove(var);
-                return new ContextNulls(newNulls);
-            }
-            return this;
+            int id = index.get(var);
+            if (VariableIndex.get(values, id) == null)
+                return this;
+            Nullness[] newNulls = values.clone();
+            newNulls[id] = null;
+            return VariableIndex.isEmpty(newNulls) ? empty() : new ContextNulls(index, newNulls);
         }
 
         ContextNulls transfer(Expression expr) {
@@ -130,7 +152,7 @@ public class NullAnnotator extends Annotator<Nullness> {
 
         Nullness resolve(Expression expr) {
             Object oper = expr.getOperand();
-            Nullness result = oper instanceof Variable && values != null ? values.get(oper) : null;
+            Nullness result = oper instanceof Variable ? VariableIndex.get(values, index.get((Variable) oper)) : null;
             return result == null ? Nullness.UNKNOWN : result;
         }
 
@@ -141,12 +163,12 @@ public class NullAnnotator extends Annotator<Nullness> {
             if (obj == null || getClass() != obj.getClass())
                 return false;
             ContextNulls other = (ContextNulls) obj;
-            return Objects.equals(values, other.values);
+            return VariableIndex.equals(values, other.values);
         }
 
         @Override
         public String toString() {
-            return values == null ? "{}" : values.toString();
+            return index.toString(values);
         }
 
     }
@@ -278,6 +300,24 @@ public class NullAnnotator extends Annotator<Nullness> {
             return s1.equals(s2);
         }
 
+        @Override
+        public ContextNulls widenStates(ContextNulls oldState, ContextNulls newState) {
+            return oldState.widen(newState);
+        }
+
+        // Nullness values are sets of (expression, NullState) pairs, so ascending chains are as long
+        // as the method; any widened change goes to UNKNOWN_WIDENED which absorbs further changes
+        @Override
+        public Nullness widenFacts(Nullness oldFact, Nullness newFact) {
+            Nullness merged = mergeFacts(oldFact, newFact);
+            return oldFact == null || merged.equals(oldFact) ? merged : Nullness.UNKNOWN_WIDENED;
+        }
+
+        @Override
+        public boolean hasWidening() {
+            return true;
+        }
+
         @Override
         public Nullness makeFact(ContextNulls state, Expression expr) {
             if (Inf.CONST.getValue(expr) != null)
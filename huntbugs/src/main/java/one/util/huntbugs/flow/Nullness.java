@@ -72,6 +72,11 @@ public class Nullness {
 
     static final Nullness UNKNOWN_AT_ENTRY = createAt(ENTRY_EXPRESSION, NullState.UNKNOWN);
 
+    static final Expression WIDENED_EXPRESSION = new Expression(AstCode.Nop, null, -1);
+
+    // Top value produced by widening: unlike UNKNOWN, it stays unknown after merging with other values
+    static final Nullness UNKNOWN_WIDENED = createAt(WIDENED_EXPRESSION, NullState.UNKNOWN);
+
     private final Map<Expression, NullState> expressions;
 
     private Nullness(Map<Expression, NullState> expressions) {
@@ -90,7 +95,7 @@ public class Nullness {
     }
 
     public NullState stateAt(CFG cfg, Expression target) {
-        if(this == UNKNOWN)
+        if(this == UNKNOWN || expressions.containsKey(WIDENED_EXPRESSION))
             return NullState.UNKNOWN;
         NullState state = state();
         if(state != null && state != NullState.NULLABLE)
@@ -0,0 +1,509 @@
+/*
+ * Copyright 2016 HuntBugs contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.flow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+
+/**
+ * Immutable hash array mapped trie. Updates copy only the path to the changed
+ * entry, so frames derived from each other share most of their structure and
+ * comparing or merging such frames can skip shared subtrees.
+ *
+ * Keys are compared via equals, null keys and values are not allowed.
+ */
+final class PersistentMap<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(BitmapNode.EMPTY, 0);
+
+    /**
+     * Merge function used by {@link PersistentMap#merge(PersistentMap, Merger)}
+     */
+    @FunctionalInterface
+    interface Merger<K, V> {
+        /**
+         * @param key key
+         * @param left value in the first map or null if absent
+         * @param right value in the second map or null if absent
+         * @return the resulting value or null to remove the key
+         */
+        V merge(K key, V left, V right);
+    }
+
+    @FunctionalInterface
+    private interface DiffVisitor {
+        /**
+         * @return false to stop the traversal
+         */
+        boolean visit(Object key, Object left, Object right);
+    }
+
+    private final Node root;
+    private final int size;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(K key) {
+        return (V) root.find(key, hash(key), 0);
+    }
+
+    PersistentMap<K, V> put(K key, V value) {
+        int hash = hash(key);
+        Node newRoot = root.assoc(key, hash, value, 0);
+        if (newRoot == root)
+            return this;
+        // The root changes only when the map changes, so the extra lookup is not performed for no-op updates
+        return new PersistentMap<>(newRoot, root.find(key, hash, 0) == null ? size + 1 : size);
+    }
+
+    PersistentMap<K, V> putAll(PersistentMap<K, V> other) {
+        if (isEmpty())
+            return other;
+        PersistentMap<K, V> result = this;
+        for (Object[] entry : other.entries()) {
+            @SuppressWarnings("unchecked")
+            K key = (K) entry[0];
+            @SuppressWarnings("unchecked")
+            V value = (V) entry[1];
+            result = result.put(key, value);
+        }
+        return result;
+    }
+
+    PersistentMap<K, V> remove(K key) {
+        Node newRoot = root.without(key, hash(key), 0);
+        if (newRoot == root)
+            return this;
+        return newRoot == null ? empty() : new PersistentMap<>(newRoot, size - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(BiConsumer<? super K, ? super V> action) {
+        root.forEach((k, v) -> action.accept((K) k, (V) v));
+    }
+
+    /**
+     * @param fn function to map the values (must not return null)
+     * @return map with the same keys and mapped values; shares all the
+     *         subtrees where no value was changed
+     */
+    @SuppressWarnings("unchecked")
+    PersistentMap<K, V> replaceAll(BiFunction<? super K, ? super V, ? extends V> fn) {
+        Node newRoot = root.replaceAll((k, v) -> fn.apply((K) k, (V) v));
+        return newRoot == root ? this : new PersistentMap<>(newRoot, size);
+    }
+
+    /**
+     * Merges this map with the other one. The merger is called only for the
+     * keys which are mapped to different values (or present in one map only);
+     * entries mapped to the same value in both maps, including all the shared
+     * subtrees, are kept as is.
+     *
+     * @param other map to merge with
+     * @param merger merge function
+     * @return merged map; this if nothing was changed
+     */
+    @SuppressWarnings("unchecked")
+    PersistentMap<K, V> merge(PersistentMap<K, V> other, Merger<K, V> merger) {
+        if (this == other)
+            return this;
+        AtomicReference<PersistentMap<K, V>> result = new AtomicReference<>(this);
+        diff(root, other.root, 0, (k, l, r) -> {
+            V v = merger.merge((K) k, (V) l, (V) r);
+            if (v != l) {
+                result.set(v == null ? result.get().remove((K) k) : result.get().put((K) k, v));
+            }
+            return true;
+        });
+        return result.get();
+    }
+
+    /**
+     * @param other map to compare with
+     * @param pred predicate to compare values (must accept nulls, which denote
+     *        the absent values)
+     * @return true if for every key the values satisfy the predicate
+     */
+    @SuppressWarnings("unchecked")
+    boolean equals(PersistentMap<K, V> other, BiPredicate<? super V, ? super V> pred) {
+        if (this == other)
+            return true;
+        if (size != other.size)
+            return false;
+        return diff(root, other.root, 0, (k, l, r) -> pred.test((V) l, (V) r));
+    }
+
+    private List<Object[]> entries() {
+        List<Object[]> entries = new ArrayList<>(size);
+        root.forEach((k, v) -> entries.add(new Object[] { k, v }));
+        return entries;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        root.forEach((k, v) -> {
+            if (sb.length() > 1)
+                sb.append(", ");
+            sb.append(k).append('=').append(v);
+        });
+        return sb.append('}').toString();
+    }
+
+    static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    /**
+     * Calls the visitor for every key which is mapped to the different
+     * values in given nodes, skipping identical subtrees.
+     */
+    private static boolean diff(Node a, Node b, int shift, DiffVisitor visitor) {
+        if (a == b)
+            return true;
+        if (!(a instanceof BitmapNode) || !(b instanceof BitmapNode)) {
+            return diffGeneric(a, b, shift, visitor);
+        }
+        BitmapNode ba = (BitmapNode) a, bb = (BitmapNode) b;
+        int bits = ba.bitmap | bb.bitmap;
+        while (bits != 0) {
+            int bit = Integer.lowestOneBit(bits);
+            bits &= ~bit;
+            Object ka = null, va = null, kb = null, vb = null;
+            if ((ba.bitmap & bit) != 0) {
+                int i = ba.index(bit);
+                ka = ba.array[2 * i];
+                va = ba.array[2 * i + 1];
+            }
+            if ((bb.bitmap & bit) != 0) {
+                int i = bb.index(bit);
+                kb = bb.array[2 * i];
+                vb = bb.array[2 * i + 1];
+            }
+            if (va == vb && ka == kb)
+                continue;
+            boolean cont;
+            if (va == null) {
+                cont = slotToNode(kb, vb, shift).forEachWhile((k, v) -> visitor.visit(k, null, v));
+            } else if (vb == null) {
+                cont = slotToNode(ka, va, shift).forEachWhile((k, v) -> visitor.visit(k, v, null));
+            } else if (ka == null && kb == null) {
+                cont = diff((Node) va, (Node) vb, shift + BITS, visitor);
+            } else if (ka != null && kb != null) {
+                if (ka.equals(kb)) {
+                    cont = va == vb || visitor.visit(ka, va, vb);
+                } else {
+                    cont = visitor.visit(ka, va, null) && visitor.visit(kb, null, vb);
+                }
+            } else {
+                cont = diffGeneric(slotToNode(ka, va, shift), slotToNode(kb, vb, shift), shift + BITS, visitor);
+            }
+            if (!cont)
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean diffGeneric(Node a, Node b, int shift, DiffVisitor visitor) {
+        return a.forEachWhile((k, v) -> {
+            Object vb = b.find(k, hash(k), shift);
+            return v == vb || visitor.visit(k, v, vb);
+        }) && b.forEachWhile((k, v) -> a.find(k, hash(k), shift) != null || visitor.visit(k, null, v));
+    }
+
+    private static Node slotToNode(Object key, Object value, int shift) {
+        if (key == null)
+            return (Node) value;
+        int hash = hash(key);
+        return new BitmapNode(bit(hash, shift + BITS), new Object[] { key, value });
+    }
+
+    private static Node createNode(Object k1, Object v1, Object k2, int h2, Object v2, int shift) {
+        int h1 = hash(k1);
+        if (h1 == h2)
+            return new CollisionNode(h1, new Object[] { k1, v1, k2, v2 });
+        return BitmapNode.EMPTY.assoc(k1, h1, v1, shift).assoc(k2, h2, v2, shift);
+    }
+
+    private abstract static class Node {
+        abstract Object find(Object key, int hash, int shift);
+
+        abstract Node assoc(Object key, int hash, Object value, int shift);
+
+        /**
+         * @return null if node becomes empty
+         */
+        abstract Node without(Object key, int hash, int shift);
+
+        abstract Node replaceAll(BiFunction<Object, Object, Object> fn);
+
+        abstract boolean forEachWhile(BiPredicate<Object, Object> action);
+
+        void forEach(BiConsumer<Object, Object> action) {
+            forEachWhile((k, v) -> {
+                action.accept(k, v);
+                return true;
+            });
+        }
+
+        /**
+         * @return the only key of this node or null if node has more than one
+         *         entry
+         */
+        abstract Object singleKey();
+    }
+
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;
+        // key-value pairs; key is null if value is a child node
+        final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object find(Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0)
+                return null;
+            int i = index(bit);
+            Object k = array[2 * i];
+            Object v = array[2 * i + 1];
+            if (k == null)
+                return ((Node) v).find(key, hash, shift + BITS);
+            return key.equals(k) ? v : null;
+        }
+
+        @Override
+        Node assoc(Object key, int hash, Object value, int shift) {
+            int bit = bit(hash, shift);
+            int i = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, 2 * i);
+                newArray[2 * i] = key;
+                newArray[2 * i + 1] = value;
+                System.arraycopy(array, 2 * i, newArray, 2 * i + 2, array.length - 2 * i);
+                return new BitmapNode(bitmap | bit, newArray);
+            }
+            Object k = array[2 * i];
+            Object v = array[2 * i + 1];
+            if (k == null) {
+                Node node = ((Node) v).assoc(key, hash, value, shift + BITS);
+                return node == v ? this : with(i, null, node);
+            }
+            if (key.equals(k)) {
+                return v == value ? this : with(i, k, value);
+            }
+            return with(i, null, createNode(k, v, key, hash, value, shift + BITS));
+        }
+
+        @Override
+        Node without(Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0)
+                return this;
+            int i = index(bit);
+            Object k = array[2 * i];
+            Object v = array[2 * i + 1];
+            if (k == null) {
+                Node node = ((Node) v).without(key, hash, shift + BITS);
+                if (node == v)
+                    return this;
+                if (node == null)
+                    return removeSlot(bit, i);
+                Object singleKey = node.singleKey();
+                if (singleKey != null) {
+                    // Keep the trie compact: pull the last entry up
+                    return with(i, singleKey, node.find(singleKey, hash(singleKey), shift + BITS));
+                }
+                return with(i, null, node);
+            }
+            return key.equals(k) ? removeSlot(bit, i) : this;
+        }
+
+        private Node removeSlot(int bit, int i) {
+            if (bitmap == bit)
+                return null;
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, 2 * i);
+            System.arraycopy(array, 2 * i + 2, newArray, 2 * i, newArray.length - 2 * i);
+            return new BitmapNode(bitmap & ~bit, newArray);
+        }
+
+        private BitmapNode with(int i, Object key, Object value) {
+            Object[] newArray = array.clone();
+            newArray[2 * i] = key;
+            newArray[2 * i + 1] = value;
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        @Override
+        Node replaceAll(BiFunction<Object, Object, Object> fn) {
+            Object[] newArray = null;
+            for (int i = 0; i < array.length; i += 2) {
+                Object k = array[i];
+                Object v = array[i + 1];
+                Object newV = k == null ? ((Node) v).replaceAll(fn) : fn.apply(k, v);
+                if (newV != v) {
+                    if (newArray == null)
+                        newArray = array.clone();
+                    newArray[i + 1] = newV;
+                }
+            }
+            return newArray == null ? this : new BitmapNode(bitmap, newArray);
+        }
+
+        @Override
+        boolean forEachWhile(BiPredicate<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                Object k = array[i];
+                Object v = array[i + 1];
+                if (!(k == null ? ((Node) v).forEachWhile(action) : action.test(k, v)))
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        Object singleKey() {
+            return array.length == 2 ? array[0] : null;
+        }
+    }
+
+    private static final class CollisionNode extends Node {
+        final int hash;
+        // key-value pairs
+        final Object[] array;
+
+        CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i]))
+                    return i;
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(Object key, int hash, int shift) {
+            int i = indexOf(key);
+            return i < 0 ? null : array[i + 1];
+        }
+
+        @Override
+        Node assoc(Object key, int hash, Object value, int shift) {
+            if (hash != this.hash) {
+                return new BitmapNode(bit(this.hash, shift), new Object[] { null, this }).assoc(key, hash, value,
+                    shift);
+            }
+            int i = indexOf(key);
+            if (i >= 0) {
+                if (array[i + 1] == value)
+                    return this;
+                Object[] newArray = array.clone();
+                newArray[i + 1] = value;
+                return new CollisionNode(hash, newArray);
+            }
+            Object[] newArray = Arrays.copyOf(array, array.length + 2);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        Node without(Object key, int hash, int shift) {
+            int i = indexOf(key);
+            if (i < 0)
+                return this;
+            if (array.length == 2)
+                return null;
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, i);
+            System.arraycopy(array, i + 2, newArray, i, newArray.length - i);
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        Node replaceAll(BiFunction<Object, Object, Object> fn) {
+            Object[] newArray = null;
+            for (int i = 0; i < array.length; i += 2) {
+                Object newV = fn.apply(array[i], array[i + 1]);
+                if (newV != array[i + 1]) {
+                    if (newArray == null)
+                        newArray = array.clone();
+                    newArray[i + 1] = newV;
+                }
+            }
+            return newArray == null ? this : new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        boolean forEachWhile(BiPredicate<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (!action.test(array[i], array[i + 1]))
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        Object singleKey() {
+            return array.length == 2 ? array[0] : null;
+        }
+    }
+}
@@ -100,13 +100,13 @@ public class PurityAnnotator extends Annotator<PurityAnnotator.Purity> {
             case InitArray:
                 return Purity.SIDE_EFFECT_FREE;
             case GetField:
-                if(fc.cf.isKnownEffectivelyFinal(new MemberInfo((MemberReference) expr.getOperand()))
+                if(fc.cf.isKnownEffectivelyFinal(MemberInfo.of((MemberReference) expr.getOperand()))
                         && !fc.md.isConstructor()) {
                     return Purity.CONST;
                 }
                 return Purity.HEAP_DEP;
             case GetStatic:
-                if(fc.cf.isKnownEffectivelyFinal(new MemberInfo((MemberReference) expr.getOperand()))
+                if(fc.cf.isKnownEffectivelyFinal(MemberInfo.of((MemberReference) expr.getOperand()))
                         && !fc.md.isTypeInitializer()) {
                     return Purity.CONST;
                 }
@@ -18,15 +18,12 @@ package one.util.huntbugs.flow;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.Map.Entry;
 import java.util.function.UnaryOperator;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -37,10 +34,10 @@ import com.strobel.assembler.metadata.MethodReference;
 import com.strobel.assembler.metadata.ParameterDefinition;
 import com.strobel.decompiler.ast.AstCode;
 import com.strobel.decompiler.ast.Expression;
+import com.strobel.decompiler.ast.Lambda;
 import com.strobel.decompiler.ast.Variable;
 
 import one.util.huntbugs.util.Exprs;
-import one.util.huntbugs.util.Maps;
 import one.util.huntbugs.warning.WarningAnnotation.MemberInfo;
 
 /**
@@ -55,13 +52,13 @@ public class SourceAnnotator extends Annotator<Expression> {
         super("source", null);
     }
     
-    Collection<Expression> build(ClassFields cf, CFG cfg) {
+    Collection<Expression> build(ClassFields cf, CFG cfg, Runnable onIncomplete) {
         AtomicReference<Collection<Expression>> origFrame = new AtomicReference<>();
         boolean valid = cfg.<Frame, Expression>runDFA(this, (md, closure) -> {
             SourceDataflow df = new SourceDataflow(cf, md, closure);
             origFrame.compareAndSet(null, df.origFrame.initial.values());
             return df;
-        }, 7);
+        }, 7, onIncomplete);
         return valid ? origFrame.get() : null;
     }
     
@@ -70,6 +67,21 @@ public class SourceAnnotator extends Annotator<Expression> {
         return source == null ? input : source;
     }
 
+    /**
+     * @param cfg CFG which was already annotated
+     * @param lambda lambda created within given CFG
+     * @return source expressions of given CFG which are visible inside the lambda
+     */
+    Collection<Expression> getCapturedValues(CFG cfg, Lambda lambda) {
+        Frame closure = cfg.getClosureState(this, lambda);
+        if (closure == null)
+            return Collections.emptyList();
+        List<Expression> result = new ArrayList<>();
+        closure.sources.forEach((var, expr) -> result.add(expr));
+        result.addAll(closure.initial.values());
+        return result;
+    }
+
     static Stream<Expression> children(Set<Expression> visited, Expression parent) {
         if(parent.getCode() == PHI_TYPE) {
             return parent.getArguments().stream();
@@ -102,15 +114,16 @@ public class SourceAnnotator extends Annotator<Expression> {
         }
         List<Expression> children = new ArrayList<>();
         children(new HashSet<>(), left).forEach(children::add);
+        Set<Expression> childSet = new HashSet<>(children);
         int baseSize = children.size();
         children(new HashSet<>(), right).forEach(child -> {
-            if(!children.contains(child))
+            if(childSet.add(child))
                 children.add(child);
         });
         if (children.size() == baseSize) {
             return left;
         }
-        return new Expression(PHI_TYPE, null, 0, children);
+        return fc.makePhiNode(childSet, children);
     }
 
     static boolean isExprEqual(Expression left, Expression right) {
@@ -133,13 +146,12 @@ public class SourceAnnotator extends Annotator<Expression> {
     }
 
     static class Frame {
-        private final Map<Variable, Expression> sources;
+        private final PersistentMap<Variable, Expression> sources;
         private final FrameContext fc;
-        final Map<MemberInfo, Expression> fieldValues;
+        final PersistentMap<MemberInfo, Expression> fieldValues;
         final Map<ParameterDefinition, Expression> initial;
         
         Frame(FrameContext fc, Frame closure) {
-            this.sources = new IdentityHashMap<>();
             this.fieldValues = fc.getInitialFields();
             this.fc = fc;
             this.initial = new IdentityHashMap<>();
@@ -152,11 +164,13 @@ public class SourceAnnotator extends Annotator<Expression> {
             }
             if(closure != null) {
                 initial.putAll(closure.initial);
-                sources.putAll(closure.sources);
+                this.sources = closure.sources;
+            } else {
+                this.sources = PersistentMap.empty();
             }
         }
     
-        private Frame(Frame parent, Map<Variable, Expression> sources, Map<MemberInfo, Expression> fields) {
+        private Frame(Frame parent, PersistentMap<Variable, Expression> sources, PersistentMap<MemberInfo, Expression> fields) {
             this.fc = parent.fc;
             this.initial = parent.initial;
             this.fieldValues = fields;
@@ -176,149 +190,63 @@ public class SourceAnnotator extends Annotator<Expression> {
             pde.setInferredType(thisParam.getParameterType());
             initial.put(thisParam, pde);
         }
-    
+        
         Frame merge(Frame other, FrameContext fc) {
-            Map<Variable, Expression> res = mergeSources(other, fc);
-            Map<MemberInfo, Expression> resFields = mergeFields(other.fieldValues, fc);
-            if(resFields == null && res == null)
+            PersistentMap<Variable, Expression> res = sources.merge(other.sources, (var, left, right) -> {
+                Expression init = initial.get(var.getOriginalParameter());
+                return left == null ? makePhiNode(right, init, fc) : makePhiNode(left, right == null ? init : right, fc);
+            });
+            PersistentMap<MemberInfo, Expression> resFields = fieldValues.merge(other.fieldValues,
+                (mi, left, right) -> left == null || right == null ? null : makePhiNode(left, right, fc));
+            if(resFields == fieldValues && res == sources)
                 return this;
-            if(resFields == null)
-                resFields = fieldValues;
-            if(res == null)
-                res = sources;
             return new Frame(this, res, resFields);
         }
     
-        private Map<MemberInfo, Expression> mergeFields(Map<MemberInfo, Expression> other, FrameContext fc) {
-            Map<MemberInfo, Expression> resFields = null;
-            for (Entry<MemberInfo, Expression> e : fieldValues.entrySet()) {
-                Expression left = e.getValue();
-                Expression right = other.get(e.getKey());
-                Expression phi = left == null || right == null ? null : makePhiNode(left, right, fc);
-                if (phi == left)
-                    continue;
-                if (resFields == null)
-                    resFields = new HashMap<>(fieldValues);
-                resFields.put(e.getKey(), phi);
-            }
-            if(resFields == null)
-                return null;
-            resFields.values().removeIf(Objects::isNull);
-            return Maps.compactify(resFields);
-        }
-    
-        private Map<Variable, Expression> mergeSources(Frame other, FrameContext fc) {
-            Map<Variable, Expression> res = null;
-            for (Entry<Variable, Expression> e : sources.entrySet()) {
-                Expression left = e.getValue();
-                Expression right = other.get(e.getKey());
-                Expression phi = makePhiNode(left, right, fc);
-                if (phi == left)
-                    continue;
-                if (res == null)
-                    res = new IdentityHashMap<>(sources);
-                res.put(e.getKey(), phi);
-            }
-            for(Entry<Variable, Expression> e : other.sources.entrySet()) {
-                if(!sources.containsKey(e.getKey())) {
-                    if (res == null)
-                        res = new IdentityHashMap<>(sources);
-                    res.put(e.getKey(), makePhiNode(e.getValue(), initial.get(e.getKey().getOriginalParameter()), fc));
-                }
-            }
-            return res;
-        }
-    
         static boolean isEqual(Frame left, Frame right) {
             if (left == right)
                 return true;
-            Map<Variable, Expression> l = left.sources;
-            Map<Variable, Expression> r = right.sources;
-            if(l.size() != r.size())
-                return false;
-            for(Entry<Variable, Expression> e : l.entrySet()) {
-                if(!isExprEqual(e.getValue(), r.get(e.getKey())))
-                    return false;
-            }
-            Map<MemberInfo, Expression> lf = left.fieldValues;
-            Map<MemberInfo, Expression> rf = right.fieldValues;
-            if(lf.size() != rf.size())
-                return false;
-            for(Entry<MemberInfo, Expression> e : lf.entrySet()) {
-                if(!isExprEqual(e.getValue(), rf.get(e.getKey())))
-                    return false;
-            }
-            return true;
+            return left.sources.equals(right.sources, SourceAnnotator::isExprEqual) && 
+                    left.fieldValues.equals(right.fieldValues, SourceAnnotator::isExprEqual);
         }
     
         private Frame replace(Variable var, Expression replacement) {
             Expression expression = get(var);
             if (expression != replacement) {
-                Map<Variable, Expression> res = new IdentityHashMap<>(sources);
-                res.put(var, replacement);
-                return new Frame(this, res, this.fieldValues);
+                return new Frame(this, sources.put(var, replacement), this.fieldValues);
             }
             return this;
         }
         
         private Frame replaceField(FieldReference fr, Expression replacement) {
-            MemberInfo mi = new MemberInfo(fr);
-            if(fieldValues.isEmpty()) {
-                return new Frame(this, this.sources, Collections.singletonMap(mi, replacement));
-            }
-            Expression expression = fieldValues.get(mi);
-            if (expression != replacement) {
-                if(expression != null && fieldValues.size() == 1) {
-                    return new Frame(this, this.sources, Collections.singletonMap(mi, replacement));
-                }
-                Map<MemberInfo, Expression> res = new HashMap<>(fieldValues);
-                res.put(mi, replacement);
-                return new Frame(this, this.sources, res);
-            }
-            return this;
+            PersistentMap<MemberInfo, Expression> res = fieldValues.put(MemberInfo.of(fr), replacement);
+            return res == fieldValues ? this : new Frame(this, this.sources, res);
         }
         
         private Frame deleteAllFields() {
             if(fieldValues.isEmpty())
                 return this;
-            Map<MemberInfo, Expression> res = new HashMap<>();
+            AtomicReference<PersistentMap<MemberInfo, Expression>> res = new AtomicReference<>(fieldValues);
             fieldValues.forEach((mi, expr) -> {
-                if(!fc.cf.isKnownFinal(mi)) {
-                    if(expr.getCode() == UPDATE_TYPE) {
-                        res.put(mi, expr);
-                    } else {
-                        res.put(mi, fc.makeUpdatedNode(expr));
-                    }
+                if(fc.cf.isKnownFinal(mi)) {
+                    res.set(res.get().remove(mi));
+                } else if(expr.getCode() != UPDATE_TYPE) {
+                    res.set(res.get().put(mi, fc.makeUpdatedNode(expr)));
                 }
             });
-            return new Frame(this, this.sources, Maps.compactify(res));
+            return new Frame(this, this.sources, res.get());
         }
         
         private Frame deleteFields() {
             if(fieldValues.isEmpty())
                 return this;
-            Map<MemberInfo, Expression> res = new HashMap<>();
-            fieldValues.forEach((mi, expr) -> {
-                if(expr.getCode() == UPDATE_TYPE || fc.cf.isKnownEffectivelyFinal(mi)) {
-                    res.put(mi, expr);
-                } else {
-                    res.put(mi, fc.makeUpdatedNode(expr));
-                }
-            });
-            return new Frame(this, this.sources, Maps.compactify(res));
+            return new Frame(this, this.sources, fieldValues.replaceAll((mi, expr) -> 
+                expr.getCode() == UPDATE_TYPE || fc.cf.isKnownEffectivelyFinal(mi) ? expr : fc.makeUpdatedNode(expr)));
         }
     
         Frame replaceAll(UnaryOperator<Expression> op) {
-            Map<Variable, Expression> res = null;
-            for (Entry<Variable, Expression> e : sources.entrySet()) {
-                Expression expr = op.apply(e.getValue());
-                if (expr != e.getValue()) {
-                    if (res == null)
-                        res = new IdentityHashMap<>(sources);
-                    res.put(e.getKey(), expr);
-                }
-            }
-            return res == null ? this : new Frame(this, res, this.fieldValues);
+            PersistentMap<Variable, Expression> res = sources.replaceAll((var, expr) -> op.apply(expr));
+            return res == sources ? this : new Frame(this, res, this.fieldValues);
         }
     }
 
@@ -362,7 +290,7 @@ public class SourceAnnotator extends Annotator<Expression> {
                 if (arg.getCode() == AstCode.GetField) {
                     FieldReference fr = ((FieldReference) arg.getOperand());
                     if(fc.isThis(Exprs.getChild(arg, 0))) {
-                        MemberInfo mi = new MemberInfo(fr);
+                        MemberInfo mi = MemberInfo.of(fr);
                         Expression prevExpr = target.fieldValues.get(mi);
                         if(prevExpr != null)
                             target = target.replaceField(fr, fc.makeUpdatedNode(prevExpr));
@@ -372,7 +300,7 @@ public class SourceAnnotator extends Annotator<Expression> {
                 }
                 if(arg.getCode() == AstCode.GetStatic) {
                     FieldReference fr = ((FieldReference) arg.getOperand());
-                    MemberInfo mi = new MemberInfo(fr);
+                    MemberInfo mi = MemberInfo.of(fr);
                     Expression prevExpr = target.fieldValues.get(mi);
                     if(prevExpr != null)
                         target = target.replaceField(fr, fc.makeUpdatedNode(prevExpr));
@@ -393,12 +321,10 @@ public class SourceAnnotator extends Annotator<Expression> {
                     // calling another constructor from current constructor will initialize all final fields
                     if(expr.getCode() == AstCode.InvokeSpecial && fc.md.isConstructor() && mr.isConstructor() && 
                             Exprs.isThis(expr.getArguments().get(0)) && mr.getDeclaringType().isEquivalentTo(fc.md.getDeclaringType())) {
-                        Map<MemberInfo, Expression> ctorFields = fc.getCtorFields(mr);
+                        PersistentMap<MemberInfo, Expression> ctorFields = fc.getCtorFields(mr);
                         if(ctorFields != null) {
                             if(!ctorFields.isEmpty()) {
-                                Map<MemberInfo,Expression> newFields = new HashMap<>(target.fieldValues);
-                                newFields.putAll(ctorFields);
-                                target = new Frame(target, target.sources, Maps.compactify(newFields));
+                                target = new Frame(target, target.sources, target.fieldValues.putAll(ctorFields));
                             }
                         }
                         else
@@ -474,12 +400,12 @@ public class SourceAnnotator extends Annotator<Expression> {
             }
             case GetStatic: {
                 FieldReference fr = ((FieldReference) expr.getOperand());
-                return state.fieldValues.get(new MemberInfo(fr));
+                return state.fieldValues.get(MemberInfo.of(fr));
             }
             case GetField: {
                 FieldReference fr = ((FieldReference) expr.getOperand());
                 if(fc.isThis(Exprs.getChild(expr, 0))) {
-                    return state.fieldValues.get(new MemberInfo(fr));
+                    return state.fieldValues.get(MemberInfo.of(fr));
                 }
                 break;
             }
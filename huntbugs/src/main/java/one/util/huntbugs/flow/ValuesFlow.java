@@ -19,6 +19,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -36,26 +38,50 @@ import com.strobel.decompiler.ast.Expression;
  *
  */
 public class ValuesFlow {
-    public static List<Expression> annotate(Context ctx, MethodDefinition md, ClassFields cf, CFG cfg) {
+    /**
+     * @param kinds facts which should be computed (dependencies are added
+     *        automatically)
+     * @return original parameter expressions or null if sources could not be
+     *         fully computed
+     */
+    public static List<Expression> annotate(Context ctx, MethodDefinition md, ClassFields cf, CFG cfg,
+            Set<Inf.Kind> kinds) {
         ctx.incStat("ValuesFlow");
-        Collection<Expression> origFrame = Inf.SOURCE.build(cf, cfg);
-        if(origFrame == null) {
-            ctx.incStat("Inf.SOURCE.Incomplete/ValuesFlow");
+        boolean needConst = kinds.contains(Inf.Kind.CONST) || kinds.contains(Inf.Kind.ETYPE)
+            || kinds.contains(Inf.Kind.NULL) || kinds.contains(Inf.Kind.PURITY);
+        Collection<Expression> origFrame = Inf.SOURCE.build(cf, cfg, incomplete(ctx, Inf.Kind.SOURCE));
+        if(needConst) {
+            Inf.CONST.build(cfg, incomplete(ctx, Inf.Kind.CONST));
         }
-        if(!Inf.CONST.build(cfg)) {
-            ctx.incStat("Inf.CONST.Incomplete/ValuesFlow");
+        if(kinds.contains(Inf.Kind.ETYPE)) {
+            Inf.ETYPE.build(cfg, incomplete(ctx, Inf.Kind.ETYPE));
         }
-        if(!Inf.ETYPE.build(cfg)) {
-            ctx.incStat("Inf.ETYPE.Incomplete/ValuesFlow");
+        if(kinds.contains(Inf.Kind.NULL)) {
+            Inf.NULL.build(cfg, incomplete(ctx, Inf.Kind.NULL));
         }
-        if(!Inf.NULL.build(cfg)) {
-            ctx.incStat("Inf.NULL.Incomplete/ValuesFlow");
+        if(kinds.contains(Inf.Kind.PURITY)) {
+            cfg.forBodies((smd, smethod) -> Inf.PURITY.annotate(smethod, new FrameContext(smd, cf)));
+        }
+        if(kinds.contains(Inf.Kind.BACKLINK)) {
+            cfg.forCFGs(Inf.BACKLINK::annotate);
         }
-        cfg.forBodies((smd, smethod) -> Inf.PURITY.annotate(smethod, new FrameContext(smd, cf)));
-        cfg.forBodies((smd, smethod) -> Inf.BACKLINK.annotate(smethod));
         return origFrame == null ? null : new ArrayList<>(origFrame);
     }
 
+    /**
+     * @return action which counts the method as incompletely analyzed by
+     *         given annotator; DFA on lambdas may run later and fail
+     *         independently, but every method is counted only once
+     */
+    private static Runnable incomplete(Context ctx, Inf.Kind kind) {
+        AtomicBoolean reported = new AtomicBoolean();
+        return () -> {
+            if (reported.compareAndSet(false, true)) {
+                ctx.incStat("Inf." + kind + ".Incomplete/ValuesFlow");
+            }
+        };
+    }
+
     public static <T> T reduce(Expression input, Function<Expression, T> mapper, BinaryOperator<T> reducer,
             Predicate<T> pred) {
         Expression source = getSource(input);
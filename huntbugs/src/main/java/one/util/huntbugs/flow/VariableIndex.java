@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 HuntBugs contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.flow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.strobel.decompiler.ast.Variable;
+
+/**
+ * Dense numbering of variables within the method (shared with its lambdas),
+ * so DFA states can store per-variable facts in arrays indexed by variable
+ * id. Arrays may be shorter than {@link #size()}: missing tail elements are
+ * treated as null (no fact).
+ */
+final class VariableIndex {
+    private final Map<Variable, Integer> ids = new HashMap<>();
+    private final List<Variable> variables = new ArrayList<>();
+
+    /**
+     * @param var variable to register
+     * @return the id of the variable, newly assigned if necessary
+     */
+    int add(Variable var) {
+        Integer id = ids.get(var);
+        if (id == null) {
+            id = variables.size();
+            ids.put(var, id);
+            variables.add(var);
+        }
+        return id;
+    }
+
+    /**
+     * @param var variable to look up
+     * @return the id of the variable or -1 if it was never registered
+     */
+    int get(Variable var) {
+        Integer id = ids.get(var);
+        return id == null ? -1 : id;
+    }
+
+    Variable getVariable(int id) {
+        return variables.get(id);
+    }
+
+    int size() {
+        return variables.size();
+    }
+
+    static <T> T get(T[] values, int id) {
+        return values == null || id < 0 || id >= values.length ? null : values[id];
+    }
+
+    /**
+     * @return a copy of values array large enough to store the fact for
+     *         every variable registered so far
+     */
+    <T> T[] copy(T[] values, T[] empty) {
+        T[] source = values == null ? empty : values;
+        return Arrays.copyOf(source, Math.max(source.length, size()));
+    }
+
+    static boolean isEmpty(Object[] values) {
+        if (values != null) {
+            for (Object value : values) {
+                if (value != null)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean equals(Object[] v1, Object[] v2) {
+        int l1 = v1 == null ? 0 : v1.length, l2 = v2 == null ? 0 : v2.length;
+        for (int i = 0; i < Math.max(l1, l2); i++) {
+            if (!Objects.equals(i < l1 ? v1[i] : null, i < l2 ? v2[i] : null))
+                return false;
+        }
+        return true;
+    }
+
+    String toString(Object[] values) {
+        StringBuilder sb = new StringBuilder("{");
+        if (values != null) {
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    if (sb.length() > 1)
+                        sb.append(", ");
+                    sb.append(variables.get(i)).append('=').append(values[i]);
+                }
+            }
+        }
+        return sb.append("}").toString();
+    }
+}
@@ -23,7 +23,8 @@ import java.util.stream.Collectors;
  *
  */
 abstract class ComplexType implements EType {
-    Set<SingleType> types;
+    final Set<SingleType> types;
+    private int hashCode;
 
     public ComplexType(Set<SingleType> types) {
         this.types = types;
@@ -37,7 +38,11 @@ abstract class ComplexType implements EType {
     
     @Override
     public int hashCode() {
-        return types.hashCode();
+        int h = hashCode;
+        if (h == 0) {
+            h = hashCode = types.hashCode();
+        }
+        return h;
     }
 
     @Override
@@ -46,7 +51,8 @@ abstract class ComplexType implements EType {
             return true;
         if (obj == null || getClass() != obj.getClass())
             return false;
-        return types.equals(((ComplexType) obj).types);
+        ComplexType other = (ComplexType) obj;
+        return hashCode() == other.hashCode() && types.equals(other.types);
     }
 
     String toString(String delimiter) {
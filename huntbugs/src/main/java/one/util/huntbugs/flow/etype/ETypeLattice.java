@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 HuntBugs contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.flow.etype;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.strobel.assembler.metadata.TypeReference;
+
+/**
+ * Memoizing facade for {@link EType} lattice operations. All the types
+ * produced by it are interned, so equal types are usually the same object and
+ * repeated operations are table lookups which hit by reference.
+ *
+ * <p>
+ * Not thread-safe: intended to be used by single ETYPE dataflow (method and
+ * its lambdas), so cached types do not outlive the analyzed class.
+ */
+public final class ETypeLattice {
+    private final Map<EType, EType> interned = new HashMap<>();
+    private final Map<TypeReference, EType> subTypes = new HashMap<>();
+    private final Map<TypeReference, EType> exactTypes = new HashMap<>();
+    private final Map<EType, EType> negated = new HashMap<>();
+    private final Map<Pair, EType> orResults = new HashMap<>();
+    private final Map<Pair, EType> andResults = new HashMap<>();
+
+    private static final class Pair {
+        final EType left, right;
+
+        Pair(EType left, EType right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public int hashCode() {
+            return left.hashCode() * 31 + right.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Pair))
+                return false;
+            Pair other = (Pair) obj;
+            return left.equals(other.left) && right.equals(other.right);
+        }
+    }
+
+    /**
+     * @param type type to intern (may be null)
+     * @return the type equal to the supplied one which was seen first
+     */
+    public EType intern(EType type) {
+        if (type == null || type == EType.UNKNOWN)
+            return type;
+        EType prev = interned.putIfAbsent(type, type);
+        return prev == null ? type : prev;
+    }
+
+    public EType subType(TypeReference tr) {
+        if (tr == null)
+            return EType.UNKNOWN;
+        return subTypes.computeIfAbsent(tr, t -> intern(EType.subType(t)));
+    }
+
+    public EType exact(TypeReference tr) {
+        if (tr == null)
+            return EType.UNKNOWN;
+        return exactTypes.computeIfAbsent(tr, t -> intern(EType.exact(t)));
+    }
+
+    public EType negate(EType type) {
+        if (type == EType.UNKNOWN)
+            return type;
+        return negated.computeIfAbsent(type, t -> intern(t.negate()));
+    }
+
+    public EType or(EType t1, EType t2) {
+        if (t1 == null || t1 == t2)
+            return t2;
+        if (t2 == null)
+            return t1;
+        if (t1 == EType.UNKNOWN || t2 == EType.UNKNOWN)
+            return EType.UNKNOWN;
+        return orResults.computeIfAbsent(new Pair(t1, t2), p -> intern(EType.or(p.left, p.right)));
+    }
+
+    public EType and(EType t1, EType t2) {
+        if (t1 == null || t1 == EType.UNKNOWN || t1 == t2)
+            return t2;
+        if (t2 == null || t2 == EType.UNKNOWN)
+            return t1;
+        return andResults.computeIfAbsent(new Pair(t1, t2), p -> intern(EType.and(p.left, p.right)));
+    }
+}
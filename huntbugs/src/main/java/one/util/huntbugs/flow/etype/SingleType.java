@@ -52,6 +52,7 @@ public class SingleType implements EType {
     final TypeReference tr;
     final boolean complete;
     final What what;
+    private int hashCode;
 
     static EType of(TypeReference tr, What what) {
         if (tr == null || tr.isPrimitive() || (what == What.SUBTYPE && Types.isObject(tr)))
@@ -160,7 +161,11 @@ public class SingleType implements EType {
 
     @Override
     public int hashCode() {
-        return tr.getInternalName().hashCode() * 31 + what.hashCode();
+        int h = hashCode;
+        if (h == 0) {
+            h = hashCode = tr.getInternalName().hashCode() * 31 + what.hashCode();
+        }
+        return h;
     }
 
     @Override
@@ -15,21 +15,28 @@
  */
 package one.util.huntbugs.registry;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.function.Function;
 
+import com.strobel.assembler.ir.Instruction;
+import com.strobel.assembler.ir.OpCode;
 import com.strobel.assembler.metadata.TypeDefinition;
 import com.strobel.assembler.metadata.TypeReference;
 
+import one.util.huntbugs.util.SymbolTable;
+
 /**
  * @author Tagir Valeev
  *
  */
 public abstract class AbstractTypeDatabase<E> {
-    private final Map<String, E> map = new HashMap<>();
+    // indexed by type id
+    private final List<E> elements = new ArrayList<>();
     private final Function<String, E> fn;
+    // replaced with the shared run-wide table by DatabaseRegistry
+    SymbolTable symbols = new SymbolTable();
     
     protected AbstractTypeDatabase(Function<String, E> elementSupplier) {
         this.fn = Objects.requireNonNull(elementSupplier);
@@ -39,20 +46,64 @@ public abstract class AbstractTypeDatabase<E> {
         // Default implementation is empty, should be subclasses
     }
     
+    /**
+     * Called for every method with body of the type after
+     * {@link #visitType(TypeDefinition)}. The bytecode of the method is
+     * walked once and shared by all the databases.
+     * 
+     * @param scan method being scanned
+     * @return true if {@link #visitInstruction(MethodScan, Instruction)} and
+     *         {@link #visitMethodEnd(MethodScan)} should be called for this
+     *         method
+     */
+    protected boolean visitMethod(MethodScan scan) {
+        return false;
+    }
+    
+    /**
+     * @param opCode opcode to check
+     * @return true if this database wants to visit instructions with given
+     *         opcode. Called once when databases are set up.
+     */
+    protected boolean isInteresting(OpCode opCode) {
+        return true;
+    }
+    
+    protected void visitInstruction(MethodScan scan, Instruction instr) {
+        // Default implementation is empty, should be subclasses
+    }
+    
+    protected void visitMethodEnd(MethodScan scan) {
+        // Default implementation is empty, should be subclasses
+    }
+    
+    protected SymbolTable getSymbols() {
+        return symbols;
+    }
+    
     protected E getOrCreate(TypeReference ref) {
-        return map.computeIfAbsent(ref.getInternalName(), fn);
+        return getOrCreate(ref.getInternalName());
     }
     
     protected E getOrCreate(String internalName) {
-        return map.computeIfAbsent(internalName, fn);
+        int id = symbols.typeId(internalName);
+        while (elements.size() <= id)
+            elements.add(null);
+        E e = elements.get(id);
+        if (e == null) {
+            e = fn.apply(internalName);
+            elements.set(id, e);
+        }
+        return e;
     }
     
     public E get(TypeReference ref) {
-        return map.get(ref.getInternalName());
+        return get(ref.getInternalName());
     }
     
     public E get(String internalName) {
-        return map.get(internalName);
+        int id = symbols.findType(internalName);
+        return id < 0 || id >= elements.size() ? null : elements.get(id);
     }
     
     @Override
@@ -16,6 +16,7 @@
 package one.util.huntbugs.registry;
 
 import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -41,12 +42,17 @@ public class ClassContext extends ElementContext {
     final TypeDefinition type;
     final Object det;
     final ClassData cdata;
+    private final DatabaseRegistry databases;
     List<WarningAnnotation<?>> annot;
+    // Detector visitors with databases bound for this class, created lazily
+    // and shared by all the method and field contexts of the class
+    private MethodHandle[] astVisitors, methodVisitors, fieldVisitors, bytecodeVisitors;
 
-    ClassContext(Context ctx, ClassData cdata, Detector detector) {
+    ClassContext(Context ctx, ClassData cdata, Detector detector, DatabaseRegistry databases) {
         super(ctx, detector);
         this.type = cdata.td;
         this.cdata = cdata;
+        this.databases = databases;
         this.det = detector.newInstance();
     }
     
@@ -64,7 +70,7 @@ public class ClassContext extends ElementContext {
     boolean visitClass() {
         for(MethodHandle mh : detector.classVisitors) {
             try {
-                if (!(boolean) detector.bindDatabases(Detector.CLASS_VISITOR_TYPE.parameterCount(), type, mh)
+                if (!(boolean) Detector.bindDatabases(Detector.CLASS_VISITOR_TYPE.parameterCount(), type, mh, databases)
                         .invoke(det, this, type)) {
                     return false;
                 }
@@ -73,14 +79,49 @@ public class ClassContext extends ElementContext {
             }
         }
         return !detector.methodVisitors.isEmpty() || !detector.astVisitors.isEmpty()
+            || !detector.bytecodeVisitors.isEmpty()
             || !detector.methodAfterVisitors.isEmpty() || !detector.classAfterVisitors.isEmpty()
             || !detector.fieldVisitors.isEmpty();
     }
     
+    MethodHandle getAstVisitor(int i) {
+        if (astVisitors == null)
+            astVisitors = new MethodHandle[detector.astVisitors.size()];
+        MethodHandle mh = astVisitors[i];
+        if (mh == null) {
+            mh = astVisitors[i] = detector.astVisitors.get(i).bind(type, databases);
+        }
+        return mh;
+    }
+
+    MethodHandle[] getMethodVisitors() {
+        if (methodVisitors == null)
+            methodVisitors = bind(detector.methodVisitors, Detector.METHOD_VISITOR_TYPE);
+        return methodVisitors;
+    }
+
+    MethodHandle[] getBytecodeVisitors() {
+        if (bytecodeVisitors == null)
+            bytecodeVisitors = bind(detector.bytecodeVisitors, Detector.BYTECODE_VISITOR_TYPE);
+        return bytecodeVisitors;
+    }
+
+    MethodHandle[] getFieldVisitors() {
+        if (fieldVisitors == null)
+            fieldVisitors = bind(detector.fieldVisitors, Detector.FIELD_VISITOR_TYPE);
+        return fieldVisitors;
+    }
+
+    private MethodHandle[] bind(List<MethodHandle> visitors, MethodType wantedType) {
+        return visitors.stream().map(mh -> Detector.bindDatabases(wantedType.parameterCount(), type, mh, databases))
+                .toArray(MethodHandle[]::new);
+    }
+
     void visitAfterClass() {
         for(MethodHandle mh : detector.classAfterVisitors) {
             try {
-                detector.bindDatabases(Detector.CLASS_VISITOR_TYPE.parameterCount(), type, mh).invoke(det, this, type);
+                Detector.bindDatabases(Detector.CLASS_VISITOR_TYPE.parameterCount(), type, mh, databases).invoke(det,
+                    this, type);
             } catch (Throwable e) {
                 ctx.addError(new ErrorMessage(detector, type, e));
             }
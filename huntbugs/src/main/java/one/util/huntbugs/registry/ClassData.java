@@ -56,7 +56,7 @@ public class ClassData {
     MemberAsserter getAsserter(MemberReference mr) {
         if (mas == null)
             return ca;
-        return mas.getOrDefault(new MemberInfo(mr), ca);
+        return mas.getOrDefault(MemberInfo.of(mr), ca);
     }
 
     MemberAsserter getAsserter(MemberInfo mi) {
@@ -70,7 +70,7 @@ public class ClassData {
         if (!ma.isEmpty()) {
             if (mas == null)
                 mas = new HashMap<>();
-            if (mas.put(new MemberInfo(mr), ma) != null) {
+            if (mas.put(MemberInfo.of(mr), ma) != null) {
                 throw new InternalError("Asserter is registered twice for " + mr);
             }
         }
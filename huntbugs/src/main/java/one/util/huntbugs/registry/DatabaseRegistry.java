@@ -15,10 +15,17 @@
  */
 package one.util.huntbugs.registry;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
+import java.util.stream.IntStream;
 
+import com.strobel.assembler.ir.Instruction;
+import com.strobel.assembler.ir.OpCode;
+import com.strobel.assembler.metadata.MethodBody;
+import com.strobel.assembler.metadata.MethodDefinition;
 import com.strobel.assembler.metadata.TypeDefinition;
 import com.strobel.assembler.metadata.TypeReference;
 
@@ -33,6 +40,11 @@ import one.util.huntbugs.registry.anno.TypeDatabaseItem;
 public class DatabaseRegistry {
     Context ctx;
     Map<Class<?>, DatabaseInfo<?>> instances = new HashMap<>();
+    private List<AbstractTypeDatabase<?>> typeDbs;
+    // opcode ordinal -> indices in typeDbs of databases interested in it
+    private int[][] dbsByOpCode;
+    private int preparedSize = -1;
+    private final MethodScan scan = new MethodScan();
 
     static class DatabaseInfo<T> {
         final T db;
@@ -59,13 +71,62 @@ public class DatabaseRegistry {
         return getDatabaseInfo(clazz)::getDatabase;
     }
     
+    <T> T getDatabase(Class<T> clazz, TypeReference tr) {
+        DatabaseInfo<?> di = instances.get(clazz);
+        if (di == null)
+            throw new IllegalArgumentException("Requested unknown database: " + clazz);
+        return clazz.cast(di.getDatabase(tr));
+    }
+
     void visitType(TypeDefinition td) {
+        if(preparedSize != instances.size())
+            prepareTypeDbs();
+        for(AbstractTypeDatabase<?> db : typeDbs) {
+            db.visitType(td);
+        }
+        if(typeDbs.isEmpty())
+            return;
+        boolean[] active = new boolean[typeDbs.size()];
+        for(MethodDefinition md : td.getDeclaredMethods()) {
+            MethodBody body = md.getBody();
+            if(body == null)
+                continue;
+            scan.reset(md, body);
+            boolean any = false;
+            for(int i=0; i<active.length; i++) {
+                active[i] = typeDbs.get(i).visitMethod(scan);
+                any |= active[i];
+            }
+            if(!any)
+                continue;
+            for(Instruction instr : body.getInstructions()) {
+                for(int i : dbsByOpCode[instr.getOpCode().ordinal()]) {
+                    if(active[i])
+                        typeDbs.get(i).visitInstruction(scan, instr);
+                }
+            }
+            for(int i=0; i<active.length; i++) {
+                if(active[i])
+                    typeDbs.get(i).visitMethodEnd(scan);
+            }
+        }
+    }
+
+    private void prepareTypeDbs() {
+        typeDbs = new ArrayList<>();
         for(DatabaseInfo<?> dbi : instances.values()) {
             Object db = dbi.db;
             if(db instanceof AbstractTypeDatabase) {
-                ((AbstractTypeDatabase<?>) db).visitType(td);
+                typeDbs.add((AbstractTypeDatabase<?>) db);
             }
         }
+        OpCode[] opCodes = OpCode.values();
+        dbsByOpCode = new int[opCodes.length][];
+        for(OpCode opCode : opCodes) {
+            dbsByOpCode[opCode.ordinal()] = IntStream.range(0, typeDbs.size())
+                    .filter(i -> typeDbs.get(i).isInteresting(opCode)).toArray();
+        }
+        preparedSize = instances.size();
     }
 
     private <T> DatabaseInfo<T> getDatabaseInfo(Class<T> clazz) {
@@ -93,7 +154,11 @@ public class DatabaseRegistry {
         }
         if (td != null) {
             try {
-                return new DatabaseInfo<>(clazz.newInstance(), null);
+                T db = clazz.newInstance();
+                if (db instanceof AbstractTypeDatabase) {
+                    ((AbstractTypeDatabase<?>) db).symbols = ctx.getSymbols();
+                }
+                return new DatabaseInfo<>(db, null);
             } catch (InstantiationException | IllegalAccessException e) {
                 throw new IllegalStateException("Unable to instantiate database " + clazz, e);
             }
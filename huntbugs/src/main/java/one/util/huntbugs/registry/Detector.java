@@ -21,25 +21,33 @@ import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.function.Function;
+import java.util.Set;
+import java.util.stream.IntStream;
 
+import com.strobel.assembler.ir.Instruction;
+import com.strobel.assembler.ir.OpCode;
 import com.strobel.assembler.metadata.FieldDefinition;
 import com.strobel.assembler.metadata.MethodDefinition;
 import com.strobel.assembler.metadata.TypeDefinition;
-import com.strobel.assembler.metadata.TypeReference;
+import com.strobel.decompiler.ast.AstCode;
 import com.strobel.decompiler.ast.Block;
 import com.strobel.decompiler.ast.Expression;
 import com.strobel.decompiler.ast.Node;
 
+import one.util.huntbugs.flow.Inf;
 import one.util.huntbugs.registry.anno.AstNodes;
 import one.util.huntbugs.registry.anno.AstVisitor;
+import one.util.huntbugs.registry.anno.BytecodeVisitor;
 import one.util.huntbugs.registry.anno.ClassVisitor;
 import one.util.huntbugs.registry.anno.FieldVisitor;
 import one.util.huntbugs.registry.anno.MethodVisitor;
+import one.util.huntbugs.registry.anno.RequiredTypes;
 import one.util.huntbugs.registry.anno.VisitOrder;
 import one.util.huntbugs.util.NodeChain;
 import one.util.huntbugs.warning.WarningType;
@@ -55,14 +63,41 @@ public class Detector {
         FieldDefinition.class, TypeDefinition.class);
     static final MethodType CLASS_VISITOR_TYPE = MethodType.methodType(boolean.class, Object.class, ClassContext.class,
         TypeDefinition.class);
+    static final MethodType BYTECODE_VISITOR_TYPE = MethodType.methodType(boolean.class, Object.class,
+        Instruction.class, MethodScan.class, MethodContext.class, MethodDefinition.class, TypeDefinition.class);
     private static final MethodHandle ALWAYS_TRUE = MethodHandles.constant(boolean.class, true);
     private static final MethodType NODE_VISITOR_TYPE = MethodType.methodType(boolean.class, Object.class, Node.class,
         NodeChain.class, MethodContext.class, MethodDefinition.class, TypeDefinition.class);
 
     private final Map<String, WarningType> wts;
-    final Map<Class<?>, Function<TypeReference, ?>> dbFetchers = new HashMap<>();
+    /**
+     * Databases requested by the visitors, instantiated by every registry
+     * which uses this detector
+     */
+    final Set<Class<?>> databases = new LinkedHashSet<>();
     private final Class<?> clazz;
     final List<VisitorInfo> astVisitors = new ArrayList<>();
+    /**
+     * Indices in astVisitors to call for the expression, indexed by
+     * expression code ordinal
+     */
+    final int[][] expressionVisitors = new int[AstCode.values().length][];
+    /**
+     * Indices in astVisitors to call for non-expression nodes
+     */
+    int[] nodeVisitors;
+    /**
+     * Type prefixes (see {@link RequiredTypes}) any of which should be
+     * referenced by the class, or null if the detector is applicable to any
+     * class
+     */
+    final String[] requiredTypes;
+    final List<MethodHandle> bytecodeVisitors = new ArrayList<>();
+    /**
+     * Indices in bytecodeVisitors to call for the instruction, indexed by
+     * opcode ordinal
+     */
+    final int[][] instructionVisitors = new int[OpCode.values().length][];
     final List<MethodHandle> fieldVisitors = new ArrayList<>();
     final List<MethodHandle> methodVisitors = new ArrayList<>();
     final List<MethodHandle> methodAfterVisitors = new ArrayList<>();
@@ -73,16 +108,60 @@ public class Detector {
         final VisitorType type;
         final MethodHandle mh;
         final AstVisitor anno;
+        final Set<AstCode> codes;
+        final Set<Inf.Kind> requires;
+        /**
+         * Opcodes at least one of which should be present in the method
+         * bytecode for this visitor to be called, or null if unknown
+         */
+        final OpCode[] opCodes;
 
         public VisitorInfo(AstVisitor anno, VisitorType type, MethodHandle mh) {
             this.anno = anno;
             this.type = type;
             this.mh = mh;
+            if (anno.codes().length == 0) {
+                this.codes = null;
+            } else {
+                if (type != VisitorType.AST_EXPRESSION_VISITOR)
+                    throw new IllegalStateException(mh + ": codes are allowed for expression visitors only");
+                this.codes = EnumSet.copyOf(Arrays.asList(anno.codes()));
+            }
+            this.opCodes = codes == null ? null : getOpCodes(codes);
+            this.requires = anno.requires().length == 0 ? EnumSet.noneOf(Inf.Kind.class) : EnumSet.copyOf(Arrays
+                    .asList(anno.requires()));
+        }
+
+        /**
+         * @param scan bytecode of the method
+         * @return false if the visitor would certainly not be called for any
+         *         node of the method AST
+         */
+        boolean mayVisit(MethodScan scan) {
+            // Lambda bodies are visited as a part of the method AST
+            if (opCodes == null || scan.hasOpCode(OpCode.INVOKEDYNAMIC))
+                return true;
+            for (OpCode opCode : opCodes) {
+                if (scan.hasOpCode(opCode))
+                    return true;
+            }
+            return false;
+        }
+
+        boolean isExpressionVisitor(AstCode code) {
+            switch (type) {
+            case AST_NODE_VISITOR:
+                return true;
+            case AST_EXPRESSION_VISITOR:
+                return codes == null || codes.contains(code);
+            default:
+                return false;
+            }
         }
 
-        public MethodHandle bind(TypeDefinition td) {
+        public MethodHandle bind(TypeDefinition td, DatabaseRegistry databases) {
             MethodHandle mh = this.mh;
-            mh = bindDatabases(type.wantedType.parameterCount(), td, mh);
+            mh = bindDatabases(type.wantedType.parameterCount(), td, mh, databases);
             return type.adapt(mh);
         }
 
@@ -149,57 +228,138 @@ public class Detector {
         }
     }
 
-    public Detector(Map<String, WarningType> wts, Class<?> clazz, DatabaseRegistry databases)
-            throws IllegalAccessException {
+    private static OpCode[] getOpCodes(Set<AstCode> codes) {
+        Set<OpCode> result = EnumSet.noneOf(OpCode.class);
+        for (AstCode code : codes) {
+            switch (code) {
+            case InvokeVirtual:
+                result.add(OpCode.INVOKEVIRTUAL);
+                break;
+            case InvokeInterface:
+                result.add(OpCode.INVOKEINTERFACE);
+                break;
+            case InvokeStatic:
+                result.add(OpCode.INVOKESTATIC);
+                break;
+            case InvokeSpecial:
+            case InitObject:
+                result.add(OpCode.INVOKESPECIAL);
+                break;
+            case InvokeDynamic:
+                result.add(OpCode.INVOKEDYNAMIC);
+                break;
+            case GetField:
+                result.add(OpCode.GETFIELD);
+                break;
+            case PutField:
+                result.add(OpCode.PUTFIELD);
+                break;
+            case GetStatic:
+                result.add(OpCode.GETSTATIC);
+                break;
+            case PutStatic:
+                result.add(OpCode.PUTSTATIC);
+                break;
+            case MonitorEnter:
+                result.add(OpCode.MONITORENTER);
+                break;
+            case MonitorExit:
+                result.add(OpCode.MONITOREXIT);
+                break;
+            case CheckCast:
+                result.add(OpCode.CHECKCAST);
+                break;
+            case InstanceOf:
+                result.add(OpCode.INSTANCEOF);
+                break;
+            case LoadElement:
+                result.addAll(Arrays.asList(OpCode.IALOAD, OpCode.LALOAD, OpCode.FALOAD, OpCode.DALOAD,
+                    OpCode.AALOAD, OpCode.BALOAD, OpCode.CALOAD, OpCode.SALOAD));
+                break;
+            case StoreElement:
+                result.addAll(Arrays.asList(OpCode.IASTORE, OpCode.LASTORE, OpCode.FASTORE, OpCode.DASTORE,
+                    OpCode.AASTORE, OpCode.BASTORE, OpCode.CASTORE, OpCode.SASTORE));
+                break;
+            case Shl:
+                result.add(OpCode.ISHL);
+                result.add(OpCode.LSHL);
+                break;
+            case And:
+                result.add(OpCode.IAND);
+                result.add(OpCode.LAND);
+                break;
+            case Or:
+                result.add(OpCode.IOR);
+                result.add(OpCode.LOR);
+                break;
+            default:
+                // Can be produced from various bytecode patterns
+                return null;
+            }
+        }
+        return result.toArray(new OpCode[0]);
+    }
+
+    public Detector(Map<String, WarningType> wts, Class<?> clazz) throws IllegalAccessException {
         this.wts = Objects.requireNonNull(wts);
         this.clazz = Objects.requireNonNull(clazz);
+        RequiredTypes rt = clazz.getAnnotation(RequiredTypes.class);
+        this.requiredTypes = rt == null ? null : rt.value();
+        List<Set<OpCode>> bytecodeCodes = new ArrayList<>();
         for (Method m : clazz.getMethods()) {
             AstVisitor av = m.getAnnotation(AstVisitor.class);
             if (av != null) {
                 for (VisitorType type : VisitorType.values()) {
                     if (av.nodes() == type.nodeTypes) {
-                        astVisitors.add(new VisitorInfo(av, type, adapt(m, type.wantedType, databases)));
+                        astVisitors.add(new VisitorInfo(av, type, adapt(m, type.wantedType)));
                     }
                 }
             }
+            BytecodeVisitor bv = m.getAnnotation(BytecodeVisitor.class);
+            if (bv != null) {
+                bytecodeVisitors.add(adapt(m, BYTECODE_VISITOR_TYPE));
+                bytecodeCodes.add(bv.opCodes().length == 0 ? null : EnumSet.copyOf(Arrays.asList(bv.opCodes())));
+            }
             MethodVisitor mv = m.getAnnotation(MethodVisitor.class);
             if (mv != null) {
                 (mv.order() == VisitOrder.AFTER ? methodAfterVisitors : methodVisitors).add(adapt(m,
-                    METHOD_VISITOR_TYPE, databases));
+                    METHOD_VISITOR_TYPE));
             }
             FieldVisitor fv = m.getAnnotation(FieldVisitor.class);
             if (fv != null) {
-                fieldVisitors.add(adapt(m, FIELD_VISITOR_TYPE, databases));
+                fieldVisitors.add(adapt(m, FIELD_VISITOR_TYPE));
             }
             ClassVisitor cv = m.getAnnotation(ClassVisitor.class);
             if (cv != null) {
-                (cv.order() == VisitOrder.AFTER ? classAfterVisitors : classVisitors).add(adapt(m, CLASS_VISITOR_TYPE,
-                    databases));
+                (cv.order() == VisitOrder.AFTER ? classAfterVisitors : classVisitors).add(adapt(m,
+                    CLASS_VISITOR_TYPE));
             }
         }
+        nodeVisitors = IntStream.range(0, astVisitors.size()).filter(
+            i -> astVisitors.get(i).type != VisitorType.AST_EXPRESSION_VISITOR).toArray();
+        for (AstCode code : AstCode.values()) {
+            expressionVisitors[code.ordinal()] = IntStream.range(0, astVisitors.size()).filter(
+                i -> astVisitors.get(i).isExpressionVisitor(code)).toArray();
+        }
+        for (OpCode code : OpCode.values()) {
+            instructionVisitors[code.ordinal()] = IntStream.range(0, bytecodeVisitors.size()).filter(
+                i -> bytecodeCodes.get(i) == null || bytecodeCodes.get(i).contains(code)).toArray();
+        }
     }
 
-    MethodHandle bindDatabases(int count, TypeDefinition td, MethodHandle mh) {
+    static MethodHandle bindDatabases(int count, TypeDefinition td, MethodHandle mh, DatabaseRegistry databases) {
         int curCount = mh.type().parameterCount();
         if (curCount > count) {
             Object[] params = new Object[curCount - count];
             for (int i = count; i < curCount; i++) {
-                params[i - count] = getDatabase(mh.type().parameterType(i), td);
+                params[i - count] = databases.getDatabase(mh.type().parameterType(i), td);
             }
             mh = MethodHandles.insertArguments(mh, count, params);
         }
         return mh;
     }
 
-    private <T> T getDatabase(Class<T> clazz, TypeReference tr) {
-        Function<TypeReference, ?> fn = dbFetchers.get(clazz);
-        if (fn == null)
-            throw new IllegalArgumentException("Requested unknown database: " + clazz);
-        return clazz.cast(fn.apply(tr));
-    }
-
-    private MethodHandle adapt(Method method, MethodType wantedType, DatabaseRegistry databases)
-            throws IllegalAccessException {
+    private MethodHandle adapt(Method method, MethodType wantedType) throws IllegalAccessException {
         MethodHandle mh = MethodHandles.publicLookup().unreflect(method);
         MethodType type = mh.type();
         MethodHandle result = MethodHandles.explicitCastArguments(mh, type.changeParameterType(0, Object.class));
@@ -220,7 +380,7 @@ public class Detector {
         for (int i = 1; i < types.length; i++) {
             int pos = wantedTypes.indexOf(types[i]);
             if (pos < 0) {
-                dbFetchers.put(types[i], databases.queryDatabase(types[i]));
+                databases.add(types[i]);
                 wantedTypes.add(types[i]);
             }
         }
@@ -256,6 +416,10 @@ public class Detector {
         return wts.get(typeName);
     }
 
+    Collection<WarningType> getWarningTypes() {
+        return wts.values();
+    }
+
     @Override
     public String toString() {
         return clazz.getName().replace(DetectorRegistry.DETECTORS_PACKAGE, "internal");
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 HuntBugs contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.registry;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import one.util.huntbugs.analysis.AnalysisOptions;
+import one.util.huntbugs.registry.anno.WarningDefinition;
+import one.util.huntbugs.warning.WarningType;
+
+/**
+ * Detector metadata which does not depend on the analyzed repository: warning
+ * types adjusted by the rule and visitor method handles found via reflection
+ * and adapted to the registry calling conventions. Shared by the registries
+ * of all the sessions created by the same engine. Thread-safe.
+ */
+public class DetectorCatalog {
+    private static final Object NOT_A_DETECTOR = new Object();
+
+    private final AnalysisOptions options;
+    // Detector, NOT_A_DETECTOR or the Exception thrown while creating the detector
+    private final Map<Class<?>, Object> detectors = new ConcurrentHashMap<>();
+
+    public DetectorCatalog(AnalysisOptions options) {
+        this.options = Objects.requireNonNull(options);
+    }
+
+    Map<String, WarningType> createWarningMap(Stream<WarningType> stream) {
+        return stream.map(options.getRule()::adjust).collect(
+            Collectors.toMap(WarningType::getName, Function.identity()));
+    }
+
+    /**
+     * @param clazz detector class
+     * @return detector or null if given class defines no warnings
+     * @throws Exception if the detector cannot be created (e.g. it has
+     *         malformed visitors)
+     */
+    Detector getDetector(Class<?> clazz) throws Exception {
+        Object result = detectors.computeIfAbsent(clazz, this::createDetector);
+        if (result instanceof Exception)
+            throw (Exception) result;
+        return result == NOT_A_DETECTOR ? null : (Detector) result;
+    }
+
+    private Object createDetector(Class<?> clazz) {
+        WarningDefinition[] wds = clazz.getAnnotationsByType(WarningDefinition.class);
+        if (wds == null || wds.length == 0)
+            return NOT_A_DETECTOR;
+        try {
+            return new Detector(createWarningMap(Stream.of(wds).map(WarningType::new)), clazz);
+        } catch (Exception e) {
+            return e;
+        }
+    }
+}
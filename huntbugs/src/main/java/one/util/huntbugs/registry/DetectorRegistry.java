@@ -15,9 +15,13 @@
  */
 package one.util.huntbugs.registry;
 
+import com.strobel.assembler.ir.ConstantPool;
+import com.strobel.assembler.ir.ConstantPool.Utf8StringConstantEntry;
 import com.strobel.assembler.ir.Instruction;
 import com.strobel.assembler.ir.OpCode;
+import com.strobel.assembler.metadata.DynamicCallSite;
 import com.strobel.assembler.metadata.MetadataSystem;
+import com.strobel.assembler.metadata.MethodHandle;
 import com.strobel.assembler.metadata.MethodBody;
 import com.strobel.assembler.metadata.MethodDefinition;
 import com.strobel.assembler.metadata.MethodReference;
@@ -36,6 +40,7 @@ import one.util.huntbugs.db.FieldStats;
 import one.util.huntbugs.db.MethodStats;
 import one.util.huntbugs.flow.CFG;
 import one.util.huntbugs.flow.ClassFields;
+import one.util.huntbugs.flow.Inf;
 import one.util.huntbugs.flow.ValuesFlow;
 import one.util.huntbugs.registry.anno.WarningDefinition;
 import one.util.huntbugs.repo.Repository;
@@ -50,17 +55,20 @@ import one.util.huntbugs.warning.WarningType;
 import java.io.PrintStream;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Deque;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -75,10 +83,21 @@ public class DetectorRegistry {
 
     static final String DETECTORS_PACKAGE = "one.util.huntbugs.detect";
 
+    // Detector class names are found by scanning the classpath once per JVM and
+    // reused by the registries of subsequent analyses (e.g. in multi-module builds)
+    private static volatile List<String> builtinDetectors;
+    private static final Map<Class<?>, List<String>> pluginDetectors = new WeakHashMap<>();
+
     private final Map<WarningType, Detector> typeToDetector = new HashMap<>();
     private final List<Detector> detectors = new ArrayList<>();
     private final Context ctx;
+    private final DetectorCatalog catalog;
     private final Detector systemDetector;
+    // Type name prefixes required by the detectors, indexed by id
+    private final List<String> typePrefixes = new ArrayList<>();
+    private final List<String> descriptorPrefixes = new ArrayList<>();
+    // Ids of the type prefixes required by the detector
+    private final Map<Detector, int[]> requiredTypes = new HashMap<>();
 
     private final DatabaseRegistry databases;
     private final Function<TypeReference, FieldStats> fieldStatsDb;
@@ -88,12 +107,22 @@ public class DetectorRegistry {
     }
 
     public DetectorRegistry(Context ctx) {
+        this(ctx, new DetectorCatalog(ctx.getOptions()));
+    }
+
+    /**
+     * @param ctx analysis session
+     * @param catalog detector metadata which may be shared with other
+     *        sessions having the same options
+     */
+    public DetectorRegistry(Context ctx, DetectorCatalog catalog) {
         this.ctx = ctx;
+        this.catalog = catalog;
         this.databases = new DatabaseRegistry(ctx);
         ctx.incStat("WarningTypes.Total");
-        Map<String, WarningType> systemWarnings = createWarningMap(Stream.of(METHOD_TOO_LARGE));
+        Map<String, WarningType> systemWarnings = catalog.createWarningMap(Stream.of(METHOD_TOO_LARGE));
         try {
-            this.systemDetector = createDetector(SystemDetector.class, systemWarnings);
+            this.systemDetector = activate(new Detector(systemWarnings, SystemDetector.class));
         } catch (IllegalAccessException e) {
             throw new InternalError(e);
         }
@@ -102,26 +131,46 @@ public class DetectorRegistry {
         init();
     }
 
-    private Map<String, WarningType> createWarningMap(Stream<WarningType> stream) {
-        return stream.map(ctx.getOptions().getRule()::adjust).collect(
-            Collectors.toMap(WarningType::getName, Function.identity()));
+    private int getTypePrefixId(String prefix) {
+        int id = typePrefixes.indexOf(prefix);
+        if (id == -1) {
+            id = typePrefixes.size();
+            typePrefixes.add(prefix);
+            descriptorPrefixes.add("L" + prefix);
+        }
+        return id;
     }
 
-    private List<WarningDefinition> getDefinitions(Class<?> clazz) {
-        WarningDefinition[] wds = clazz.getAnnotationsByType(WarningDefinition.class);
-        if (wds == null)
-            return Collections.emptyList();
-        return Arrays.asList(wds);
+    /**
+     * @param type type to check
+     * @return bitset of ids of required type prefixes mentioned in the
+     *         constant pool of the type
+     */
+    private BitSet getReferencedTypes(TypeDefinition type) {
+        BitSet result = new BitSet();
+        if (typePrefixes.isEmpty())
+            return result;
+        for (ConstantPool.Entry entry : type.getConstantPool()) {
+            if (entry instanceof Utf8StringConstantEntry) {
+                String value = ((Utf8StringConstantEntry) entry).value;
+                for (int i = 0; i < typePrefixes.size(); i++) {
+                    if (!result.get(i) && (value.startsWith(typePrefixes.get(i)) || value.contains(descriptorPrefixes
+                            .get(i)))) {
+                        result.set(i);
+                    }
+                }
+            }
+        }
+        return result;
     }
 
     boolean addDetector(Class<?> clazz) {
-        List<WarningDefinition> wds = getDefinitions(clazz);
-        if (wds.isEmpty())
+        WarningDefinition[] wds = clazz.getAnnotationsByType(WarningDefinition.class);
+        if (wds == null || wds.length == 0)
             return false;
         try {
-            wds.forEach(wd -> ctx.incStat("WarningTypes.Total"));
-            Map<String, WarningType> wts = createWarningMap(wds.stream().map(WarningType::new));
-            Detector detector = createDetector(clazz, wts);
+            Stream.of(wds).forEach(wd -> ctx.incStat("WarningTypes.Total"));
+            Detector detector = activate(catalog.getDetector(clazz));
             if (detector == null)
                 return false;
             detectors.add(detector);
@@ -131,12 +180,22 @@ public class DetectorRegistry {
         return true;
     }
 
-    private Detector createDetector(Class<?> clazz, Map<String, WarningType> wts) throws IllegalAccessException {
-        List<WarningType> activeWts = wts.values().stream().filter(wt -> wt.getMaxScore() >= ctx.getOptions().minScore)
-                .collect(Collectors.toList());
+    /**
+     * Sets up the detector for this session: instantiates the databases it
+     * needs and registers its warning types which may be reported with the
+     * current minimal score.
+     * 
+     * @return the detector or null if none of its warnings may be reported
+     */
+    private Detector activate(Detector detector) {
+        List<WarningType> activeWts = detector.getWarningTypes().stream().filter(
+            wt -> wt.getMaxScore() >= ctx.getOptions().minScore).collect(Collectors.toList());
         if (activeWts.isEmpty())
             return null;
-        Detector detector = new Detector(wts, clazz, databases);
+        detector.databases.forEach(databases::queryDatabase);
+        if (detector.requiredTypes != null) {
+            requiredTypes.put(detector, Stream.of(detector.requiredTypes).mapToInt(this::getTypePrefixId).toArray());
+        }
         activeWts.forEach(wt -> {
             typeToDetector.put(wt, detector);
             ctx.incStat("WarningTypes");
@@ -144,28 +203,86 @@ public class DetectorRegistry {
         return detector;
     }
 
+    private boolean isApplicable(Detector detector, BitSet referencedTypes) {
+        int[] ids = requiredTypes.get(detector);
+        if (ids == null)
+            return true;
+        for (int id : ids) {
+            if (referencedTypes.get(id))
+                return true;
+        }
+        return false;
+    }
+
     void init() {
 
         // adding HuntBugs built-in detectors
-        Repository selfRepo = Repository.createSelfRepository();
-        String pkg = DETECTORS_PACKAGE.replace('.', '/');
-        selfRepo.visit(pkg, new DetectorVisitor(pkg, false));
+        List<String> selfDetectors = builtinDetectors;
+        if (selfDetectors == null) {
+            selfDetectors = builtinDetectors = findDetectors(Repository.createSelfRepository(), DETECTORS_PACKAGE);
+        }
+        addDetectors(selfDetectors, false);
 
         // adding HuntBugs 3-rd party detectors if any
         for (HuntBugsPlugin huntBugsPlugin : ServiceLoader.load(HuntBugsPlugin.class)) {
-            Repository pluginRepository = Repository.createPluginRepository(huntBugsPlugin);
-            String pluginDetectorPackage = huntBugsPlugin.detectorPackage().replace('.', '/');
-            pluginRepository.visit(pluginDetectorPackage, new DetectorVisitor(pluginDetectorPackage, true));
+            List<String> names;
+            synchronized (pluginDetectors) {
+                names = pluginDetectors.get(huntBugsPlugin.getClass());
+            }
+            if (names == null) {
+                names = findDetectors(Repository.createPluginRepository(huntBugsPlugin), huntBugsPlugin
+                        .detectorPackage());
+                synchronized (pluginDetectors) {
+                    pluginDetectors.put(huntBugsPlugin.getClass(), names);
+                }
+            }
+            addDetectors(names, true);
         }
 
     }
 
+    private static List<String> findDetectors(Repository repository, String packageName) {
+        String packageToVisit = packageName.replace('.', '/');
+        List<String> result = new ArrayList<>();
+        repository.visit(packageToVisit, new RepositoryVisitor() {
+            @Override
+            public boolean visitPackage(String name) {
+                return name.equals(packageToVisit);
+            }
+
+            @Override
+            public void visitClass(String className) {
+                result.add(className.replace('/', '.'));
+            }
+        });
+        return Collections.unmodifiableList(result);
+    }
+
+    private void addDetectors(List<String> names, boolean external) {
+        for (String name : names) {
+            try {
+                ctx.incStat("Detectors.Total");
+                if (addDetector(MetadataSystem.class.getClassLoader().loadClass(name))) {
+                    ctx.incStat("Detectors");
+                    if (external) {
+                        ctx.incStat("Detectors from HuntBugs plugins");
+                    }
+                }
+            } catch (ClassNotFoundException e) {
+                ctx.addError(new ErrorMessage(name, null, null, null, -1, e));
+            }
+        }
+    }
+
     private void visitChildren(Node node, NodeChain parents, List<MethodContext> list, MethodData mdata) {
         if (node instanceof Lambda) {
+            Lambda lambda = (Lambda) node;
             MethodDefinition curMethod = mdata.realMethod;
-            CFG curCFG = mdata.cfg;
-            mdata.realMethod = Nodes.getLambdaMethod((Lambda) node);
-            mdata.cfg = curCFG == null ? null : curCFG.getLambdaCFG((Lambda) node);
+            Supplier<CFG> curCFG = mdata.cfg;
+            mdata.realMethod = Nodes.getLambdaMethod(lambda);
+            mdata.cfg = () -> getLambdaCFG(curCFG.get(), lambda, mdata);
+            // Lambda body facts (at least SOURCE) are computed when its CFG is built
+            mdata.getCFG();
             Iterable<Node> children = Nodes.getChildren(node);
             NodeChain newChain = new NodeChain(parents, node);
             for (Node child : children)
@@ -184,6 +301,61 @@ public class DetectorRegistry {
         }
     }
 
+    private CFG getLambdaCFG(CFG parent, Lambda lambda, MethodData mdata) {
+        if (parent == null)
+            return null;
+        try {
+            // Built CFGs and failures are memoized by the parent CFG
+            return parent.getLambdaCFG(lambda);
+        } catch (Throwable t) {
+            ctx.addError(new ErrorMessage(null, mdata.mainMethod, -1, t));
+            return null;
+        }
+    }
+
+    private void visitInstructions(List<MethodContext> list, MethodScan scan, MethodData mdata) {
+        visitInstructions(new ArrayList<>(list), scan, mdata, scan.getBody());
+    }
+
+    /**
+     * Visits the instructions of the method body followed by the bodies of
+     * the lambdas it creates, as lambda methods are not visited separately
+     * 
+     * @return false if no bytecode visitors remain
+     */
+    private boolean visitInstructions(List<MethodContext> mcs, MethodScan scan, MethodData mdata, MethodBody body) {
+        for (Instruction instr : body.getInstructions()) {
+            mcs.removeIf(mc -> !mc.visitInstruction(instr, scan));
+            if (mcs.isEmpty())
+                return false;
+            if (instr.getOpCode() == OpCode.INVOKEDYNAMIC) {
+                MethodDefinition lambda = getLambdaMethod(instr.getOperand(0), body.getMethod());
+                if (lambda != null) {
+                    MethodDefinition curMethod = mdata.realMethod;
+                    MethodScan lambdaScan = new MethodScan();
+                    lambdaScan.reset(lambda, lambda.getBody());
+                    mdata.realMethod = lambda;
+                    boolean live = visitInstructions(mcs, lambdaScan, mdata, lambda.getBody());
+                    mdata.realMethod = curMethod;
+                    if (!live)
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static MethodDefinition getLambdaMethod(DynamicCallSite dcs, MethodDefinition md) {
+        MethodHandle mh = Nodes.getMethodHandle(dcs);
+        if (mh == null)
+            return null;
+        MethodDefinition lambda = mh.getMethod().resolve();
+        if (lambda == null || !lambda.isSynthetic() || !lambda.getName().startsWith("lambda$")
+            || lambda.getBody() == null || !lambda.getDeclaringType().isEquivalentTo(md.getDeclaringType()))
+            return null;
+        return lambda;
+    }
+
     public boolean hasDatabases() {
         return !databases.instances.isEmpty();
     }
@@ -208,8 +380,14 @@ public class DetectorRegistry {
         type.getDeclaredMethods().forEach(cdata::registerAsserter);
         type.getDeclaredFields().forEach(cdata::registerAsserter);
 
-        ClassContext[] ccs = detectors.stream().map(d -> new ClassContext(ctx, cdata, d)).filter(
-            ClassContext::visitClass).toArray(ClassContext[]::new);
+        BitSet referencedTypes = getReferencedTypes(type);
+        ClassContext[] ccs = detectors.stream().filter(d -> isApplicable(d, referencedTypes)).map(
+            d -> new ClassContext(ctx, cdata, d, databases)).filter(ClassContext::visitClass).toArray(
+                ClassContext[]::new);
+        // Annotations may refer to the expressions of other methods (e.g. field values set in constructor),
+        // thus they are dropped only when the whole class is analyzed
+        List<CFG> cfgs = new ArrayList<>();
+        MethodScan scan = new MethodScan();
         
         for (MethodDefinition md : declMethods) {
             if(!md.isSpecialName()) {
@@ -226,28 +404,53 @@ public class DetectorRegistry {
             if (body != null) {
                 if (body.getCodeSize() > ctx.getOptions().maxMethodSize) {
                     if (systemDetector != null) {
-                        MethodContext mc = new ClassContext(ctx, cdata, systemDetector).forMethod(mdata);
+                        MethodContext mc = new ClassContext(ctx, cdata, systemDetector, databases).forMethod(mdata);
                         mc.report(METHOD_TOO_LARGE.getName(), 0, BYTECODE_SIZE.create(body.getCodeSize()), LIMIT.create(
                             ctx.getOptions().maxMethodSize));
                         mc.finalizeMethod();
                     }
                 } else if (!mcs.get(true).isEmpty()) {
-                    final DecompilerContext context = new DecompilerContext();
-
-                    context.setCurrentMethod(md);
-                    context.setCurrentType(type);
-                    Block methodAst = new Block();
-                    try {
-                        methodAst.getBody().addAll(AstBuilder.build(body, true, context));
-                        AstOptimizer.optimize(context, methodAst, AstOptimizationStep.None);
-                        mdata.cfg = CFG.build(md, methodAst);
-                        mdata.origParams = ValuesFlow.annotate(ctx, md, cf, mdata.cfg);
+                    scan.reset(md, body);
+                    visitInstructions(mcs.get(true), scan, mdata);
+                    if (!md.isSpecialName()) {
+                        // Constructors and initializers are always decompiled as they provide field values
+                        mcs.get(true).forEach(mc -> mc.prefilter(scan));
+                    }
+                    List<MethodContext> astMcs = mcs.get(true).stream().filter(MethodContext::needsAst).collect(
+                        Collectors.toList());
+                    if (astMcs.isEmpty()) {
+                        // Only bytecode visitors are interested in this method: no need to decompile it
                         mdata.fullyAnalyzed = true;
-                    } catch (Throwable t) {
-                        ctx.addError(new ErrorMessage(null, type.getFullName(), md.getFullName(), md.getSignature(),
-                                -1, t));
+                    } else {
+                        Set<Inf.Kind> facts = EnumSet.noneOf(Inf.Kind.class);
+                        if (md.isSpecialName()) {
+                            // Facts of constructors and initializers are reused by other methods
+                            facts = EnumSet.allOf(Inf.Kind.class);
+                        } else {
+                            for (MethodContext mc : astMcs) {
+                                mc.addRequiredFacts(facts);
+                            }
+                        }
+                        facts.add(Inf.Kind.SOURCE);
+                        final DecompilerContext context = new DecompilerContext();
+
+                        context.setCurrentMethod(md);
+                        context.setCurrentType(type);
+                        Block methodAst = new Block();
+                        try {
+                            methodAst.getBody().addAll(AstBuilder.build(body, true, context));
+                            AstOptimizer.optimize(context, methodAst, AstOptimizationStep.None);
+                            CFG cfg = CFG.build(md, methodAst, ctx.getOptions().coarseBlocks);
+                            mdata.cfg = () -> cfg;
+                            cfgs.add(cfg);
+                            mdata.origParams = ValuesFlow.annotate(ctx, md, cf, cfg, facts);
+                            mdata.fullyAnalyzed = true;
+                        } catch (Throwable t) {
+                            ctx.addError(new ErrorMessage(null, type.getFullName(), md.getFullName(), md.getSignature(),
+                                    -1, t));
+                        }
+                        visitChildren(methodAst, null, astMcs, mdata);
                     }
-                    visitChildren(methodAst, null, mcs.get(true), mdata);
                 }
             } else {
                 mdata.fullyAnalyzed = true;
@@ -269,6 +472,7 @@ public class DetectorRegistry {
             cc.visitAfterClass();
         }
         cdata.finish(ctx);
+        cfgs.forEach(CFG::dropAnnotations);
 
         for (TypeDefinition subType : type.getDeclaredTypes()) {
             analyzeClass(subType);
@@ -360,7 +564,7 @@ public class DetectorRegistry {
     public void reportDatabases(PrintStream out) {
         List<String> result = new ArrayList<>();
         String arrow = " --> ";
-        detectors.forEach(det -> det.dbFetchers.keySet().forEach(db -> result.add(db.getName() + arrow + det)));
+        detectors.forEach(det -> det.databases.forEach(db -> result.add(db.getName() + arrow + det)));
         databases.instances.forEach((db, dbi) -> {
             if (dbi.parentDb != null) {
                 result.add(dbi.parentDb.getClass().getName() + arrow + "Derived DB: " + db.getName());
@@ -393,37 +597,4 @@ public class DetectorRegistry {
     public Stream<WarningType> warningTypes() {
         return typeToDetector.keySet().stream();
     }
-
-    private class DetectorVisitor implements RepositoryVisitor {
-
-        private String packageToVisit;
-
-        private boolean external;
-
-        DetectorVisitor(String packageToVisit, boolean external) {
-            this.packageToVisit = packageToVisit;
-            this.external = external;
-        }
-
-        @Override
-        public boolean visitPackage(String packageName) {
-            return packageName.equals(packageToVisit);
-        }
-
-        @Override
-        public void visitClass(String className) {
-            String name = className.replace('/', '.');
-            try {
-                ctx.incStat("Detectors.Total");
-                if (addDetector(MetadataSystem.class.getClassLoader().loadClass(name))) {
-                    ctx.incStat("Detectors");
-                    if (external) {
-                        ctx.incStat("Detectors from HuntBugs plugins");
-                    }
-                }
-            } catch (ClassNotFoundException e) {
-                ctx.addError(new ErrorMessage(name, null, null, null, -1, e));
-            }
-        }
-    }
 }
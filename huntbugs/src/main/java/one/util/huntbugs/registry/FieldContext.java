@@ -41,10 +41,9 @@ public class FieldContext extends ElementContext {
     }
 
     void visitField() {
-        for(MethodHandle mh : detector.fieldVisitors) {
+        for(MethodHandle mh : cc.getFieldVisitors()) {
             try {
-                detector.bindDatabases(Detector.FIELD_VISITOR_TYPE.parameterCount(), cc.type, mh)
-                        .invoke(det, this, fdata.fd, cc.type);
+                mh.invoke(det, this, fdata.fd, cc.type);
             } catch (Throwable e) {
                 ctx.addError(new ErrorMessage(detector, fdata.fd, -1, e));
             }
@@ -19,10 +19,8 @@ import java.lang.invoke.MethodHandle;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import one.util.huntbugs.analysis.Context;
 import one.util.huntbugs.analysis.ErrorMessage;
@@ -31,6 +29,7 @@ import one.util.huntbugs.flow.Inf;
 import one.util.huntbugs.flow.ValuesFlow;
 import one.util.huntbugs.flow.CFG;
 import one.util.huntbugs.flow.CFG.EdgeType;
+import one.util.huntbugs.registry.anno.BytecodeVisitor;
 import one.util.huntbugs.warning.Roles;
 import one.util.huntbugs.warning.Warning;
 import one.util.huntbugs.warning.WarningAnnotation;
@@ -38,6 +37,7 @@ import one.util.huntbugs.warning.WarningAnnotation.Location;
 import one.util.huntbugs.warning.WarningAnnotation.MemberInfo;
 import one.util.huntbugs.warning.WarningType;
 
+import com.strobel.assembler.ir.Instruction;
 import com.strobel.assembler.metadata.FieldReference;
 import com.strobel.assembler.metadata.MethodReference;
 import com.strobel.assembler.metadata.ParameterDefinition;
@@ -95,36 +95,79 @@ public class MethodContext extends ElementContext {
     private final Object det;
     private final ClassContext cc;
     private WarningInfo lastWarning;
-    private final List<MethodHandle> astVisitors;
+    private final MethodHandle[] astVisitors;
+    private int liveVisitors;
+    private final MethodHandle[] bytecodeVisitors;
+    private int liveBytecodeVisitors;
 
     MethodContext(Context ctx, ClassContext сс, MethodData md) {
         super(ctx, сс.detector);
         this.cc = сс;
         this.mdata = md;
         this.det = сс.det;
-        astVisitors = detector.astVisitors.stream().filter(vi -> vi.isApplicable(md.mainMethod)).map(
-            vi -> vi.bind(сс.type)).collect(Collectors.toCollection(ArrayList::new));
+        astVisitors = new MethodHandle[detector.astVisitors.size()];
+        for (int i = 0; i < astVisitors.length; i++) {
+            if (detector.astVisitors.get(i).isApplicable(md.mainMethod)) {
+                astVisitors[i] = сс.getAstVisitor(i);
+                liveVisitors++;
+            }
+        }
+        bytecodeVisitors = сс.getBytecodeVisitors().clone();
+        liveBytecodeVisitors = bytecodeVisitors.length;
     }
 
     boolean visitMethod() {
-        for(MethodHandle mh : detector.methodVisitors) {
+        for(MethodHandle mh : cc.getMethodVisitors()) {
             try {
-                if (!(boolean) detector.bindDatabases(Detector.METHOD_VISITOR_TYPE.parameterCount(), cc.type, mh)
-                        .invoke(det, this, mdata.mainMethod, cc.type)) {
+                if (!(boolean) mh.invoke(det, this, mdata.mainMethod, cc.type)) {
                     return false;
                 }
             } catch (Throwable e) {
                 ctx.addError(new ErrorMessage(detector, mdata.mainMethod, -1, e));
             }
         }
-        return !astVisitors.isEmpty() || !detector.methodAfterVisitors.isEmpty();
+        return needsAst() || liveBytecodeVisitors > 0;
+    }
+
+    /**
+     * Drops AST visitors which cannot be called for given method judging by
+     * the opcodes present in its bytecode
+     * 
+     * @param scan bytecode of the current method
+     */
+    void prefilter(MethodScan scan) {
+        for (int i = 0; i < astVisitors.length; i++) {
+            if (astVisitors[i] != null && !detector.astVisitors.get(i).mayVisit(scan)) {
+                astVisitors[i] = null;
+                liveVisitors--;
+            }
+        }
+    }
+
+    /**
+     * Adds the kinds of dataflow facts required by the remaining AST visitors
+     * 
+     * @param kinds set to add to
+     */
+    void addRequiredFacts(Set<Inf.Kind> kinds) {
+        for (int i = 0; i < astVisitors.length; i++) {
+            if (astVisitors[i] != null) {
+                kinds.addAll(detector.astVisitors.get(i).requires);
+            }
+        }
+    }
+
+    /**
+     * @return true if this context should visit the method AST
+     */
+    boolean needsAst() {
+        return liveVisitors > 0 || !detector.methodAfterVisitors.isEmpty();
     }
 
     void visitAfterMethod() {
-        for(MethodHandle mh : detector.methodVisitors) {
+        for(MethodHandle mh : cc.getMethodVisitors()) {
             try {
-                detector.bindDatabases(Detector.METHOD_VISITOR_TYPE.parameterCount(), cc.type, mh)
-                        .invoke(det, this, mdata.mainMethod, cc.type);
+                mh.invoke(det, this, mdata.mainMethod, cc.type);
             } catch (Throwable e) {
                 ctx.addError(new ErrorMessage(detector, mdata.mainMethod, -1, e));
             }
@@ -132,17 +175,43 @@ public class MethodContext extends ElementContext {
     }
 
     boolean visitNode(Node node) {
-        for (Iterator<MethodHandle> it = astVisitors.iterator(); it.hasNext();) {
+        if (liveVisitors == 0)
+            return false;
+        int[] visitors = node instanceof Expression ? detector.expressionVisitors[((Expression) node).getCode()
+                .ordinal()] : detector.nodeVisitors;
+        for (int i : visitors) {
+            MethodHandle mh = astVisitors[i];
+            if (mh == null)
+                continue;
             try {
-                MethodHandle mh = it.next();
                 if (!(boolean) mh.invoke(det, node, mdata.parents, this, mdata.mainMethod, cc.type)) {
-                    it.remove();
+                    astVisitors[i] = null;
+                    liveVisitors--;
                 }
             } catch (Throwable e) {
                 ctx.addError(new ErrorMessage(detector, mdata.mainMethod, -1, e));
             }
         }
-        return !astVisitors.isEmpty();
+        return liveVisitors > 0;
+    }
+
+    boolean visitInstruction(Instruction instr, MethodScan scan) {
+        if (liveBytecodeVisitors == 0)
+            return false;
+        for (int i : detector.instructionVisitors[instr.getOpCode().ordinal()]) {
+            MethodHandle mh = bytecodeVisitors[i];
+            if (mh == null)
+                continue;
+            try {
+                if (!(boolean) mh.invoke(det, instr, scan, this, mdata.mainMethod, cc.type)) {
+                    bytecodeVisitors[i] = null;
+                    liveBytecodeVisitors--;
+                }
+            } catch (Throwable e) {
+                ctx.addError(new ErrorMessage(detector, mdata.mainMethod, -1, e));
+            }
+        }
+        return liveBytecodeVisitors > 0;
     }
 
     void finalizeMethod() {
@@ -152,7 +221,7 @@ public class MethodContext extends ElementContext {
     }
 
     public void report(String warning, int priority, WarningAnnotation<?>... annotations) {
-        report(warning, priority, null, annotations);
+        report(warning, priority, (Node) null, annotations);
     }
 
     public void report(String warning, int priority, Node node, Collection<WarningAnnotation<?>> annotations) {
@@ -170,18 +239,50 @@ public class MethodContext extends ElementContext {
                 anno.add(WarningAnnotation.forVariable((Variable) operand));
                 operand = ValuesFlow.getSource(expr).getOperand();
             }
-            if (operand instanceof FieldReference && !annotations.stream().anyMatch(wa -> wa
-                .getRole() == Roles.FIELD)) {
-                anno.add(Roles.FIELD.create((FieldReference) operand));
-            }
-            if (operand instanceof MethodReference && !annotations.stream().anyMatch(wa -> wa
-                    .getRole() == Roles.CALLED_METHOD)) {
-                MethodReference mr = (MethodReference) operand;
-                anno.add(Roles.CALLED_METHOD.create(mr));
-            }
+            addOperandAnnotations(anno, operand, annotations);
         }
         anno.addAll(annotations);
-        WarningInfo info = new WarningInfo(wt, priority, loc, anno);
+        addWarning(new WarningInfo(wt, priority, loc, anno));
+    }
+
+    public void report(String warning, int priority, Node node, WarningAnnotation<?>... annotations) {
+        report(warning, priority, node, Arrays.asList(annotations));
+    }
+
+    /**
+     * Reports the warning at given bytecode instruction (to be used by
+     * {@link BytecodeVisitor}).
+     */
+    public void report(String warning, int priority, Instruction instr, WarningAnnotation<?>... annotations) {
+        WarningType wt = resolveWarningType(warning, priority);
+        if(wt == null)
+            return;
+        List<WarningAnnotation<?>> anno = new ArrayList<>();
+        anno.addAll(cc.getTypeSpecificAnnotations());
+        anno.addAll(mdata.getMethodSpecificAnnotations());
+        List<WarningAnnotation<?>> list = Arrays.asList(annotations);
+        if (instr.getOperandCount() > 0) {
+            addOperandAnnotations(anno, instr.getOperand(0), list);
+        }
+        anno.addAll(list);
+        int offset = instr.getOffset();
+        addWarning(new WarningInfo(wt, priority, new Location(offset, mdata.getLineNumber(offset)), anno));
+    }
+
+    private static void addOperandAnnotations(List<WarningAnnotation<?>> anno, Object operand,
+            Collection<WarningAnnotation<?>> annotations) {
+        if (operand instanceof FieldReference && !annotations.stream().anyMatch(wa -> wa
+            .getRole() == Roles.FIELD)) {
+            anno.add(Roles.FIELD.create((FieldReference) operand));
+        }
+        if (operand instanceof MethodReference && !annotations.stream().anyMatch(wa -> wa
+                .getRole() == Roles.CALLED_METHOD)) {
+            MethodReference mr = (MethodReference) operand;
+            anno.add(Roles.CALLED_METHOD.create(mr));
+        }
+    }
+
+    private void addWarning(WarningInfo info) {
         if (lastWarning == null) {
             lastWarning = info;
         } else if (!lastWarning.tryMerge(info)) {
@@ -190,10 +291,6 @@ public class MethodContext extends ElementContext {
         }
     }
 
-    public void report(String warning, int priority, Node node, WarningAnnotation<?>... annotations) {
-        report(warning, priority, node, Arrays.asList(annotations));
-    }
-
     private void reportWarning(Warning warn) {
         if(!cc.cdata.filter.test(warn))
             return;
@@ -235,7 +332,7 @@ public class MethodContext extends ElementContext {
     }
     
     public CFG getCFG() {
-        return mdata.cfg;
+        return mdata.getCFG();
     }
     
     /**
@@ -243,21 +340,25 @@ public class MethodContext extends ElementContext {
      * @return true if given expression is reachable
      */
     public boolean isReachable(Expression expr) {
-        return mdata.cfg == null || mdata.cfg.isReachable(expr);
+        CFG cfg = mdata.getCFG();
+        return cfg == null || cfg.isReachable(expr);
     }
     
     public boolean isAlwaysReachable(Expression from, Expression to) {
-        return mdata.cfg != null && mdata.cfg.isAlwaysReachable(from, to);
+        CFG cfg = mdata.getCFG();
+        return cfg != null && cfg.isAlwaysReachable(from, to);
     }
 
     public boolean mayTerminateImplicitly(Expression expr) {
-        return mdata.cfg != null && mdata.cfg.mayTerminateImplicitly(expr);
+        CFG cfg = mdata.getCFG();
+        return cfg != null && cfg.mayTerminateImplicitly(expr);
     }
     
     public CodeBlock findDeadCode(Expression expr, EdgeType edgeType) {
-        if(mdata.cfg == null)
+        CFG cfg = mdata.getCFG();
+        if(cfg == null)
             return null;
-        return mdata.cfg.findDeadCode(expr, edgeType);
+        return cfg.findDeadCode(expr, edgeType);
     }
     
     
@@ -17,6 +17,7 @@ package one.util.huntbugs.registry;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 
 import one.util.huntbugs.flow.CFG;
 import one.util.huntbugs.util.NodeChain;
@@ -52,12 +53,18 @@ final class MethodData {
     private OffsetToLineNumberConverter ltc;
     List<Expression> origParams;
     boolean fullyAnalyzed;
-    CFG cfg;
+    // Supplies the CFG of the method or lambda being visited; lambda CFGs are
+    // memoized by the parent CFG
+    Supplier<CFG> cfg = () -> null;
 
     MethodData(MethodDefinition md) {
         this.mainMethod = this.realMethod = md;
     }
 
+    CFG getCFG() {
+        return cfg.get();
+    }
+
     int getLineNumber(int offset) {
         int line = getConverter().getLineForOffset(offset);
         return line == OffsetToLineNumberConverter.UNKNOWN_LINE_NUMBER ? -1 : line;
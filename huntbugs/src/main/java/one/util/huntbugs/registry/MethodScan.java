@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 HuntBugs contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.registry;
+
+import java.util.BitSet;
+
+import com.strobel.assembler.ir.Instruction;
+import com.strobel.assembler.ir.OpCode;
+import com.strobel.assembler.metadata.MethodBody;
+import com.strobel.assembler.metadata.MethodDefinition;
+
+/**
+ * The method which bytecode is currently being scanned by the type
+ * databases. The same object is reused for all the methods scanned by the
+ * registry.
+ */
+public final class MethodScan {
+    private MethodDefinition md;
+    private MethodBody body;
+    private final BitSet jumpTargets = new BitSet();
+    private boolean jumpTargetsComputed;
+    private final BitSet opCodes = new BitSet();
+    private boolean opCodesComputed;
+
+    void reset(MethodDefinition md, MethodBody body) {
+        this.md = md;
+        this.body = body;
+        this.jumpTargetsComputed = false;
+        this.opCodesComputed = false;
+    }
+
+    public MethodDefinition getMethod() {
+        return md;
+    }
+
+    public MethodBody getBody() {
+        return body;
+    }
+
+    /**
+     * @param instr instruction of the current method
+     * @return true if some instruction of the current method jumps to given
+     *         one (switches and exception handlers are not considered)
+     */
+    public boolean isJumpTarget(Instruction instr) {
+        if (!jumpTargetsComputed) {
+            jumpTargets.clear();
+            for (Instruction jump : body.getInstructions()) {
+                if (jump.getOperandCount() == 1 && jump.getOperand(0) instanceof Instruction) {
+                    jumpTargets.set(((Instruction) jump.getOperand(0)).getOffset());
+                }
+            }
+            jumpTargetsComputed = true;
+        }
+        return jumpTargets.get(instr.getOffset());
+    }
+
+    /**
+     * @param opCode opcode to look for
+     * @return true if the current method has at least one instruction with
+     *         given opcode
+     */
+    public boolean hasOpCode(OpCode opCode) {
+        if (!opCodesComputed) {
+            opCodes.clear();
+            for (Instruction instr : body.getInstructions()) {
+                opCodes.set(instr.getOpCode().ordinal());
+            }
+            opCodesComputed = true;
+        }
+        return opCodes.get(opCode.ordinal());
+    }
+}
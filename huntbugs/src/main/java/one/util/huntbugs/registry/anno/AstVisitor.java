@@ -20,10 +20,12 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+import one.util.huntbugs.flow.Inf;
 import one.util.huntbugs.registry.MethodContext;
 
 import com.strobel.assembler.metadata.MethodDefinition;
 import com.strobel.assembler.metadata.TypeDefinition;
+import com.strobel.decompiler.ast.AstCode;
 
 /**
  * Method in detector class which called for AST nodes.
@@ -40,7 +42,24 @@ import com.strobel.assembler.metadata.TypeDefinition;
 @Target(ElementType.METHOD)
 public @interface AstVisitor {
     AstNodes nodes() default AstNodes.ALL;
+
+    /**
+     * @return codes of the expressions to visit (allowed only for
+     *         {@link AstNodes#EXPRESSIONS}); if empty, all the expressions are
+     *         visited. The visitor is not called at all for other expressions,
+     *         so it should be specified only if the visitor ignores them.
+     */
+    AstCode[] codes() default {};
     
+    /**
+     * @return kinds of dataflow facts used by the visitor either directly or
+     *         via helpers like {@code Nodes.getConstant} or
+     *         {@code Nodes.isSideEffectFree}. Facts not requested by any
+     *         visitor may be not computed for the method.
+     */
+    Inf.Kind[] requires() default { Inf.Kind.SOURCE, Inf.Kind.CONST, Inf.Kind.ETYPE, Inf.Kind.NULL,
+            Inf.Kind.PURITY, Inf.Kind.BACKLINK };
+
     String methodName() default "";
 
     String methodSignature() default "";
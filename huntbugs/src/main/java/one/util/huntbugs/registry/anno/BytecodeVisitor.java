@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016 HuntBugs contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.registry.anno;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import one.util.huntbugs.registry.MethodContext;
+import one.util.huntbugs.registry.MethodScan;
+
+import com.strobel.assembler.ir.Instruction;
+import com.strobel.assembler.ir.OpCode;
+import com.strobel.assembler.metadata.MethodDefinition;
+import com.strobel.assembler.metadata.TypeDefinition;
+
+/**
+ * Method in detector class which called for the bytecode instructions of
+ * every method in the class in offset order. The method is not decompiled if
+ * all the detectors interested in it have only bytecode visitors, so such
+ * visitor cannot rely on the dataflow facts.
+ * 
+ * <p>
+ * Allowed parameter types (no repeats): {@link Instruction},
+ * {@link MethodScan}, {@link MethodContext}, {@link MethodDefinition},
+ * {@link TypeDefinition} or any registered databases (see
+ * {@link TypeDatabase}, {@link TypeDatabaseItem})
+ * 
+ * <p>
+ * May return boolean or void. If returns false, the rest of the method
+ * instructions will be skipped.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface BytecodeVisitor {
+    /**
+     * @return opcodes of the instructions to visit; if empty, all the
+     *         instructions are visited
+     */
+    OpCode[] opCodes() default {};
+}
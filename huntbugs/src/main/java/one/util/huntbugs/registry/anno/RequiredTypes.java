@@ -0,0 +1,41 @@
+/*
+ * Copyright 2016 HuntBugs contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.registry.anno;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Detector class annotation which restricts the detector to the classes
+ * which constant pool mentions some of the given types: either as a class
+ * reference or inside a member descriptor, signature or annotation. Other
+ * classes are skipped without creating the detector instance.
+ * 
+ * <p>
+ * Should be used only if the detector cannot report anything for the class
+ * which does not mention these types.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface RequiredTypes {
+    /**
+     * @return internal name prefixes of the types (like "javax/swing/"), any
+     *         of which should be mentioned
+     */
+    String[] value();
+}
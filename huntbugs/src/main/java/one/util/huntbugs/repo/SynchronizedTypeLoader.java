@@ -0,0 +1,37 @@
+/*
+ * Copyright 2016 HuntBugs contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.repo;
+
+import com.strobel.assembler.metadata.Buffer;
+import com.strobel.assembler.metadata.ITypeLoader;
+
+/**
+ * Type loader which serializes the calls to the wrapped one, so
+ * non-thread-safe loaders (like {@code JarTypeLoader}) could be shared by
+ * several analysis sessions running in parallel.
+ */
+public class SynchronizedTypeLoader implements ITypeLoader {
+    private final ITypeLoader loader;
+
+    public SynchronizedTypeLoader(ITypeLoader loader) {
+        this.loader = loader;
+    }
+
+    @Override
+    public synchronized boolean tryLoadType(String internalName, Buffer buffer) {
+        return loader.tryLoadType(internalName, buffer);
+    }
+}
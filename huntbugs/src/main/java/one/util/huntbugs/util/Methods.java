@@ -71,7 +71,7 @@ public class Methods {
         if(md == null)
             return null;
         TypeDefinition td = md.getDeclaringType();
-        return findSuperMethod(td, new MemberInfo(resolveToBridge(md)));
+        return findSuperMethod(td, MemberInfo.of(resolveToBridge(md)));
     }
     
     public static Set<MethodDefinition> findSuperMethods(MethodReference mr) {
@@ -80,7 +80,7 @@ public class Methods {
             return null;
         TypeDefinition td = md.getDeclaringType();
         Set<MethodDefinition> set = new HashSet<>();
-        collectSuperMethods(td, new MemberInfo(resolveToBridge(md)), set);
+        collectSuperMethods(td, MemberInfo.of(resolveToBridge(md)), set);
         return set;
     }
     
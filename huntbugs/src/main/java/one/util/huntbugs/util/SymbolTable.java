@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016 HuntBugs contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.strobel.assembler.metadata.MemberReference;
+
+/**
+ * Thread-safe table which assigns dense int ids to type internal names, to
+ * member descriptors (declaring type, name and erased signature) and to
+ * name and descriptor pairs regardless of the declaring type. Ids are
+ * never reused within the table, so they can be used as array indices in
+ * databases and caches which live as long as the table.
+ */
+public final class SymbolTable {
+    private static final class MemberKey {
+        final int type;
+        final String name, signature;
+
+        MemberKey(int type, String name, String signature) {
+            this.type = type;
+            this.name = name;
+            this.signature = signature;
+        }
+
+        @Override
+        public int hashCode() {
+            return (type * 31 + name.hashCode()) * 31 + signature.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof MemberKey))
+                return false;
+            MemberKey other = (MemberKey) obj;
+            return type == other.type && name.equals(other.name) && signature.equals(other.signature);
+        }
+    }
+
+    private final Map<String, Integer> types = new ConcurrentHashMap<>();
+    private final AtomicInteger typeCount = new AtomicInteger();
+    private final Map<MemberKey, Integer> members = new ConcurrentHashMap<>();
+    private final AtomicInteger memberCount = new AtomicInteger();
+    private final Map<String, Integer> nameAndTypes = new ConcurrentHashMap<>();
+    private final AtomicInteger nameAndTypeCount = new AtomicInteger();
+
+    /**
+     * @param internalName internal name of the type
+     * @return the id of the type, newly assigned if necessary
+     */
+    public int typeId(String internalName) {
+        Integer id = types.get(internalName);
+        return id != null ? id : types.computeIfAbsent(internalName, k -> typeCount.getAndIncrement());
+    }
+
+    /**
+     * @param internalName internal name of the type
+     * @return the id of the type or -1 if it was never registered
+     */
+    public int findType(String internalName) {
+        Integer id = types.get(internalName);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @return the id of the member, newly assigned if necessary
+     */
+    public int memberId(String typeName, String name, String signature) {
+        MemberKey key = new MemberKey(typeId(typeName), name, signature);
+        Integer id = members.get(key);
+        return id != null ? id : members.computeIfAbsent(key, k -> memberCount.getAndIncrement());
+    }
+
+    public int memberId(MemberReference mr) {
+        return memberId(mr.getDeclaringType().getInternalName(), mr.getName(), mr.getErasedSignature());
+    }
+
+    /**
+     * @return the id of the member or -1 if it was never registered
+     */
+    public int findMember(String typeName, String name, String signature) {
+        int type = findType(typeName);
+        if (type == -1)
+            return -1;
+        Integer id = members.get(new MemberKey(type, name, signature));
+        return id == null ? -1 : id;
+    }
+
+    public int findMember(MemberReference mr) {
+        return findMember(mr.getDeclaringType().getInternalName(), mr.getName(), mr.getErasedSignature());
+    }
+
+    /**
+     * @param name member name
+     * @param descriptor member descriptor (possibly partial, like parameter
+     *        types only)
+     * @return the id of the name and descriptor pair, newly assigned if
+     *         necessary
+     */
+    public int nameAndTypeId(String name, String descriptor) {
+        String key = name + descriptor;
+        Integer id = nameAndTypes.get(key);
+        return id != null ? id : nameAndTypes.computeIfAbsent(key, k -> nameAndTypeCount.getAndIncrement());
+    }
+
+    /**
+     * @return the id of the name and descriptor pair or -1 if it was never
+     *         registered
+     */
+    public int findNameAndType(String name, String descriptor) {
+        Integer id = nameAndTypes.get(name + descriptor);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @return number of type ids assigned so far
+     */
+    public int typeCount() {
+        return typeCount.get();
+    }
+
+    /**
+     * @return number of member ids assigned so far
+     */
+    public int memberCount() {
+        return memberCount.get();
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 HuntBugs contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.util;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.strobel.assembler.metadata.IMetadataResolver;
+import com.strobel.assembler.metadata.TypeDefinition;
+import com.strobel.assembler.metadata.TypeReference;
+
+/**
+ * Thread-safe cache of type hierarchy closures. The closure of the class is
+ * stored as the bitset of ids of all its proper supertypes, so subtype check
+ * is a single bit lookup. Ids are dense within the cache and assigned only to
+ * the types which are supertypes of some cached type (usually a small
+ * fraction of all the types), in order of appearance, so the common
+ * supertypes get small ids and the bitsets stay short.
+ *
+ * <p>
+ * Closures are keyed by internal names, thus the cache does not retain any
+ * metadata and survives {@code MetadataSystem} flushes. It should be shared
+ * only by metadata systems which load classes from the same classpath (see
+ * {@link Provider}).
+ */
+public class TypeHierarchy {
+    /**
+     * Implemented by metadata resolvers which load the types, so the types
+     * could find the hierarchy cache via {@link TypeDefinition#getResolver()}.
+     */
+    public interface Provider {
+        TypeHierarchy getTypeHierarchy();
+    }
+
+    private static class Closure {
+        final BitSet supers;
+        final boolean complete;
+
+        Closure(BitSet supers, boolean complete) {
+            this.supers = supers;
+            this.complete = complete;
+        }
+    }
+
+    private final Map<String, Integer> superIds = new ConcurrentHashMap<>();
+    private final AtomicInteger superCount = new AtomicInteger();
+    private final Map<String, Closure> closures = new ConcurrentHashMap<>();
+
+    private int superId(String internalName) {
+        Integer id = superIds.get(internalName);
+        return id != null ? id : superIds.computeIfAbsent(internalName, k -> superCount.getAndIncrement());
+    }
+
+    static TypeHierarchy of(TypeDefinition td) {
+        IMetadataResolver resolver = td.getResolver();
+        return resolver instanceof Provider ? ((Provider) resolver).getTypeHierarchy() : null;
+    }
+
+    private Closure closure(TypeDefinition td) {
+        String name = td.getInternalName();
+        Closure closure = closures.get(name);
+        if (closure == null) {
+            // No computeIfAbsent as the closures of supertypes are added recursively
+            BitSet supers = new BitSet();
+            boolean complete = true;
+            TypeReference base = td.getBaseType();
+            if (base != null) {
+                complete &= addSuper(supers, base);
+            }
+            for (TypeReference iface : td.getExplicitInterfaces()) {
+                complete &= addSuper(supers, iface);
+            }
+            closure = new Closure(supers, complete);
+            Closure prev = closures.putIfAbsent(name, closure);
+            if (prev != null)
+                closure = prev;
+        }
+        return closure;
+    }
+
+    private boolean addSuper(BitSet supers, TypeReference tr) {
+        supers.set(superId(tr.getInternalName()));
+        TypeDefinition td = tr.resolve();
+        if (td == null) {
+            return false;
+        }
+        Closure closure = closure(td);
+        supers.or(closure.supers);
+        return closure.complete;
+    }
+
+    /**
+     * @param td non-array type definition
+     * @param wantedType internal name of the wanted type
+     * @return true if td is wantedType or its subtype
+     */
+    boolean isInstance(TypeDefinition td, String wantedType) {
+        if (td.getInternalName().equals(wantedType))
+            return true;
+        BitSet supers = closure(td).supers;
+        Integer id = superIds.get(wantedType);
+        return id != null && supers.get(id);
+    }
+
+    /**
+     * @param td non-array type definition
+     * @return true if all superclasses and superinterfaces could be loaded
+     */
+    boolean hasCompleteHierarchy(TypeDefinition td) {
+        return closure(td).complete;
+    }
+}
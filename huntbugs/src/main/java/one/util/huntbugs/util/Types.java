@@ -97,6 +97,9 @@ public class Types {
         TypeDefinition td = type.resolve();
         if (td == null)
             return false;
+        TypeHierarchy hierarchy = TypeHierarchy.of(td);
+        if (hierarchy != null)
+            return hierarchy.isInstance(td, wantedType);
         for (TypeReference iface : td.getExplicitInterfaces()) {
             if (isInstance(iface, wantedType))
                 return true;
@@ -205,6 +208,9 @@ public class Types {
             return false;
         if(type.isArray())
             return hasCompleteHierarchy(type.getElementType().resolve());
+        TypeHierarchy hierarchy = TypeHierarchy.of(type);
+        if(hierarchy != null)
+            return hierarchy.hasCompleteHierarchy(type);
         TypeReference base = type.getBaseType();
         if(base != null && !hasCompleteHierarchy(base.resolve()))
             return false;
@@ -101,11 +101,11 @@ public class Role<T> {
         }
 
         public WarningAnnotation<MemberInfo> create(MemberReference mr) {
-            return create(new MemberInfo(mr));
+            return create(MemberInfo.of(mr));
         }
 
         public WarningAnnotation<MemberInfo> create(String internalTypeName, String name, String signature) {
-            return create(new MemberInfo(internalTypeName, name, signature));
+            return create(MemberInfo.of(internalTypeName, name, signature));
         }
         
         public static MemberRole forName(String name) {
@@ -15,7 +15,12 @@
  */
 package one.util.huntbugs.warning;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.strobel.assembler.metadata.MemberReference;
 import com.strobel.assembler.metadata.TypeReference;
@@ -137,20 +142,136 @@ public class WarningAnnotation<T> {
     }
 
     public static class MemberInfo {
+        // Keys are MemberInfo copies; Lookup probes are used for get only
+        private static final ConcurrentMap<Object, CanonicalRef> canonical = new ConcurrentHashMap<>();
+        private static final ThreadLocal<Lookup> lookup = ThreadLocal.withInitial(Lookup::new);
+        private static final ReferenceQueue<MemberInfo> collected = new ReferenceQueue<>();
+        // Direct-mapped per-thread cache: pairs of weakly referenced
+        // MemberReference and its MemberInfo, so the cache does not retain
+        // the metadata of already analyzed classes
+        private static final int REF_CACHE_SIZE = 512;
+        private static final ThreadLocal<Object[]> refCache = ThreadLocal.withInitial(
+            () -> new Object[REF_CACHE_SIZE * 2]);
+
+        /**
+         * Weak reference to the canonical MemberInfo which remembers the map
+         * key (an equal copy) to remove the entry once the referent is
+         * collected.
+         */
+        private static final class CanonicalRef extends WeakReference<MemberInfo> {
+            final MemberInfo key;
+
+            CanonicalRef(MemberInfo mi) {
+                super(mi, collected);
+                this.key = new MemberInfo(mi);
+            }
+        }
+
+        /**
+         * Reusable lookup key equal to the MemberInfo having the same
+         * components, so the canonical instance can be found without
+         * allocation
+         */
+        private static final class Lookup {
+            private String typeName, name, signature;
+            private int hashCode;
+
+            Lookup set(String typeName, String name, String signature) {
+                this.typeName = typeName;
+                this.name = name;
+                this.signature = signature;
+                this.hashCode = hash(typeName, name, signature);
+                return this;
+            }
+
+            @Override
+            public int hashCode() {
+                return hashCode;
+            }
+
+            @Override
+            public boolean equals(Object obj) {
+                if (!(obj instanceof MemberInfo))
+                    return false;
+                MemberInfo mi = (MemberInfo) obj;
+                return hashCode == mi.hashCode && name.equals(mi.name) && signature.equals(mi.signature)
+                    && typeName.equals(mi.type.typeName);
+            }
+        }
+
         private final TypeInfo type;
         private final String name;
         private final String signature;
+        private final int hashCode;
 
         public MemberInfo(String typeName, String name, String signature) {
             this.type = new TypeInfo(Objects.requireNonNull(typeName));
             this.name = Objects.requireNonNull(name);
             this.signature = Objects.requireNonNull(signature);
+            this.hashCode = hash(typeName, name, signature);
+        }
+
+        // Same as Objects.hash(name, type, signature) without varargs array
+        static int hash(String typeName, String name, String signature) {
+            return (31 * (31 + name.hashCode()) + typeName.hashCode()) * 31 + signature.hashCode();
         }
 
         public MemberInfo(MemberReference mr) {
-            this.type = new TypeInfo(mr.getDeclaringType().getInternalName());
-            this.name = mr.getName();
-            this.signature = mr.getErasedSignature();
+            this(mr.getDeclaringType().getInternalName(), mr.getName(), mr.getErasedSignature());
+        }
+
+        private MemberInfo(MemberInfo mi) {
+            this.type = mi.type;
+            this.name = mi.name;
+            this.signature = mi.signature;
+            this.hashCode = mi.hashCode;
+        }
+
+        /**
+         * @return canonical MemberInfo for given member: equal members
+         *         created via this method are usually the same object
+         */
+        public static MemberInfo of(String typeName, String name, String signature) {
+            CanonicalRef ref = canonical.get(lookup.get().set(typeName, name, signature));
+            MemberInfo result = ref == null ? null : ref.get();
+            if (result != null)
+                return result;
+            // Allocate only on a miss
+            MemberInfo mi = new MemberInfo(typeName, name, signature);
+            while (true) {
+                expungeCollected();
+                CanonicalRef newRef = new CanonicalRef(mi);
+                if (ref == null ? canonical.putIfAbsent(newRef.key, newRef) == null : canonical.replace(mi, ref,
+                    newRef))
+                    return mi;
+                ref = canonical.get(mi);
+                result = ref == null ? null : ref.get();
+                if (result != null)
+                    return result;
+            }
+        }
+
+        private static void expungeCollected() {
+            Reference<? extends MemberInfo> ref;
+            while ((ref = collected.poll()) != null) {
+                canonical.remove(((CanonicalRef) ref).key, ref);
+            }
+        }
+
+        /**
+         * @return canonical MemberInfo for given member reference, see
+         *         {@link #of(String, String, String)}
+         */
+        public static MemberInfo of(MemberReference mr) {
+            Object[] cache = refCache.get();
+            int slot = (System.identityHashCode(mr) & (REF_CACHE_SIZE - 1)) * 2;
+            Object ref = cache[slot];
+            if (ref != null && ((Reference<?>) ref).get() == mr)
+                return (MemberInfo) cache[slot + 1];
+            MemberInfo mi = of(mr.getDeclaringType().getInternalName(), mr.getName(), mr.getErasedSignature());
+            cache[slot] = new WeakReference<>(mr);
+            cache[slot + 1] = mi;
+            return mi;
         }
 
         public String getTypeName() {
@@ -185,7 +306,7 @@ public class WarningAnnotation<T> {
 
         @Override
         public int hashCode() {
-            return Objects.hash(name, type, signature);
+            return hashCode;
         }
 
         @Override
@@ -195,7 +316,7 @@ public class WarningAnnotation<T> {
             if (obj == null || getClass() != obj.getClass())
                 return false;
             MemberInfo other = (MemberInfo) obj;
-            return name.equals(other.name) && signature.equals(other.signature) && type.equals(other.type);
+            return hashCode == other.hashCode && name.equals(other.name) && signature.equals(other.signature) && type.equals(other.type);
         }
 
         public TypeInfo getReturnType() {
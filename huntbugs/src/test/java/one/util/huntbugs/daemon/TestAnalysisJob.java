@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 HuntBugs contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.daemon;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+public class TestAnalysisJob {
+    private static String write(AnalysisJob job) {
+        StringWriter sw = new StringWriter();
+        try (PrintWriter pw = new PrintWriter(sw)) {
+            job.write(pw);
+        }
+        return sw.toString();
+    }
+
+    private static AnalysisJob read(String text) throws IOException {
+        return AnalysisJob.read(new BufferedReader(new StringReader(text)));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        AnalysisJob job = new AnalysisJob();
+        job.addClassPath("/project/target/classes");
+        job.addClassPath("/project/lib/with space.jar");
+        job.addAuxClassPath("/repo/dep.jar");
+        job.setOption("minScore", "30");
+        job.setOption("classesPerFlush", "1000");
+        job.setXml("/project/target/huntbugs/report.xml");
+        job.setHtml("/project/target/huntbugs/report.html");
+        job.setDiff("/project/target/huntbugs/report.old.xml");
+        String text = write(job);
+        AnalysisJob copy = read(text);
+        assertEquals(text, write(copy));
+        assertEquals(job.getOptions(), copy.getOptions());
+        assertEquals(30, copy.createOptions().minScore);
+        assertEquals(Paths.get("/project/target/huntbugs/report.xml"), copy.getXml());
+        assertEquals(Paths.get("/project/target/huntbugs/report.html"), copy.getHtml());
+        assertEquals(Paths.get("/project/target/huntbugs/report.old.xml"), copy.getDiff());
+    }
+
+    @Test
+    public void testRoundTripEmpty() throws IOException {
+        AnalysisJob copy = read(write(new AnalysisJob()));
+        assertTrue(copy.getOptions().isEmpty());
+        assertNull(copy.getXml());
+        assertNull(copy.getHtml());
+        assertNull(copy.getDiff());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLineBreak() {
+        new AnalysisJob().addClassPath("/a\nend");
+    }
+
+    @Test
+    public void testMalformed() {
+        String[] requests = { "", "HUNTBUGS-JOB 0\nend\n", AnalysisJob.HEADER + "\n",
+                AnalysisJob.HEADER + "\nclasspath\nend\n", AnalysisJob.HEADER + "\nfoo bar\nend\n",
+                AnalysisJob.HEADER + "\noption minScore\nend\n" };
+        for (String request : requests) {
+            try {
+                read(request);
+                fail("Accepted: " + request);
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+}
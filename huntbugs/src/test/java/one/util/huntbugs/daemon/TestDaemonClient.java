@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016 HuntBugs contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.daemon;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestDaemonClient {
+    private Path dir;
+    private Path tokenFile;
+    private AnalysisDaemon daemon;
+    private Thread daemonThread;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("huntbugs-daemon");
+        tokenFile = dir.resolve("daemon.token");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (daemon != null) {
+            daemon.stop();
+            daemonThread.join(10000);
+        }
+        List<Path> paths = new ArrayList<>();
+        Files.walk(dir).forEach(paths::add);
+        for (int i = paths.size() - 1; i >= 0; i--) {
+            Files.deleteIfExists(paths.get(i));
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private int startDaemon() throws Exception {
+        int port = freePort();
+        daemon = new AnalysisDaemon(port, new PrintStream(new ByteArrayOutputStream()), tokenFile);
+        daemonThread = new Thread(() -> {
+            try {
+                daemon.run();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        daemonThread.setDaemon(true);
+        daemonThread.start();
+        // the token is written when the daemon listens
+        for (int i = 0; i < 100 && !Files.isRegularFile(tokenFile); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(Files.isRegularFile(tokenFile));
+        return port;
+    }
+
+    private AnalysisJob emptyJob() throws IOException {
+        Path classes = Files.createDirectories(dir.resolve("classes"));
+        AnalysisJob job = new AnalysisJob();
+        job.addClassPath(classes.toString());
+        job.setOption("addBootClassPath", "false");
+        job.setXml(dir.resolve("report.xml").toString());
+        return job;
+    }
+
+    @Test(expected = ConnectException.class)
+    public void testNoTokenFile() throws IOException {
+        new DaemonClient(freePort(), tokenFile).submit(new AnalysisJob(), msg -> {});
+    }
+
+    @Test(expected = ConnectException.class)
+    public void testNotListening() throws IOException {
+        // stale token left by a killed daemon
+        Files.write(tokenFile, "abc".getBytes(StandardCharsets.US_ASCII));
+        new DaemonClient(freePort(), tokenFile).submit(new AnalysisJob(), msg -> {});
+    }
+
+    @Test
+    public void testAnalyze() throws Exception {
+        int port = startDaemon();
+        if (tokenFile.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            assertEquals(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE), Files
+                    .getPosixFilePermissions(tokenFile));
+        }
+        DaemonClient.Result result = new DaemonClient(port, tokenFile).submit(emptyJob(), msg -> {});
+        assertEquals(0, result.getWarnings());
+        assertEquals(0, result.getMaxScore());
+        assertTrue(Files.isRegularFile(dir.resolve("report.xml")));
+        daemon.stop();
+        daemonThread.join(10000);
+        assertFalse(Files.exists(tokenFile));
+        daemon = null;
+    }
+
+    @Test
+    public void testError() throws Exception {
+        int port = startDaemon();
+        AnalysisJob job = new AnalysisJob();
+        job.addClassPath(dir.resolve("missing.jar").toString());
+        try {
+            new DaemonClient(port, tokenFile).submit(job, msg -> {});
+            fail("No error reported");
+        } catch (ConnectException e) {
+            throw e;
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Class path element not found"));
+        }
+    }
+
+    @Test
+    public void testWrongToken() throws Exception {
+        int port = startDaemon();
+        Path wrongToken = dir.resolve("wrong.token");
+        Files.write(wrongToken, "0123".getBytes(StandardCharsets.US_ASCII));
+        try {
+            new DaemonClient(port, wrongToken).submit(emptyJob(), msg -> {});
+            fail("Authenticated with wrong token");
+        } catch (ConnectException e) {
+            throw e;
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Authentication failed"));
+        }
+        assertFalse(Files.exists(dir.resolve("report.xml")));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 HuntBugs contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.flow;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.strobel.decompiler.ast.AstCode;
+import com.strobel.decompiler.ast.Expression;
+
+public class TestAnnotationStore {
+    private static Expression expr() {
+        return new Expression(AstCode.Nop, null, -1);
+    }
+
+    @Test
+    public void testColumns() {
+        AnnotationStore store = new AnnotationStore();
+        Expression e1 = expr(), e2 = expr();
+        int id1 = store.register(e1);
+        int id2 = store.register(e2);
+        assertNotEquals(id1, id2);
+        assertNull(store.get(e1, 0));
+        store.put(e1, 0, "a");
+        store.put(e2, 1, "b");
+        assertEquals("a", store.get(e1, 0));
+        assertNull(store.get(e1, 1));
+        assertNull(store.get(e2, 0));
+        assertEquals("b", store.get(e2, 1));
+        // column beyond the number of annotators known when store was created
+        int column = Annotators.count() + 1;
+        store.put(e2, column, "c");
+        assertEquals("c", store.get(e2, column));
+        assertNull(store.get(e1, column));
+        store.put(e1, 0, null);
+        assertNull(store.get(e1, 0));
+    }
+
+    @Test
+    public void testRegisterOnce() {
+        AnnotationStore store = new AnnotationStore();
+        Expression e = expr();
+        int id = store.register(e);
+        assertEquals(id, store.register(e));
+        assertEquals(id, store.id(e));
+        // expressions registered after the column was allocated
+        store.put(e, 0, "a");
+        Expression late = expr();
+        store.register(late);
+        assertNull(store.get(late, 0));
+        store.put(late, 0, "b");
+        assertEquals("b", store.get(late, 0));
+        assertEquals("a", store.get(e, 0));
+    }
+
+    @Test
+    public void testUnregistered() {
+        AnnotationStore store = new AnnotationStore();
+        Expression e = expr();
+        assertEquals(-1, store.id(e));
+        assertNull(store.get(e, 0));
+        store.remove(e, 0);
+        assertEquals(-1, store.id(e));
+        // like phi nodes: registered on the first write
+        store.put(e, 0, "a");
+        assertNotEquals(-1, store.id(e));
+        assertEquals("a", store.get(e, 0));
+    }
+
+    @Test
+    public void testRehash() {
+        AnnotationStore store = new AnnotationStore();
+        List<Expression> exprs = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Expression e = expr();
+            exprs.add(e);
+            assertEquals(i, store.register(e));
+            if (i % 3 == 0) {
+                store.put(e, 0, i);
+            }
+        }
+        for (int i = 0; i < exprs.size(); i++) {
+            assertEquals(i, store.id(exprs.get(i)));
+            assertEquals(i % 3 == 0 ? (Object) i : null, store.get(exprs.get(i), 0));
+        }
+    }
+
+    @Test
+    public void testClear() {
+        AnnotationStore store = new AnnotationStore();
+        Expression e = expr(), phi = expr();
+        store.register(e);
+        store.put(e, 0, "a");
+        store.put(phi, 0, "p");
+        store.clear();
+        assertEquals(-1, store.id(e));
+        assertNull(store.get(e, 0));
+        assertNull(store.get(phi, 0));
+        store.put(e, 0, "b");
+        assertEquals("b", store.get(e, 0));
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 HuntBugs contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.flow;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.strobel.decompiler.ast.AstCode;
+import com.strobel.decompiler.ast.Block;
+import com.strobel.decompiler.ast.Expression;
+
+public class TestBackLinkAnnotator {
+    private static Expression leaf() {
+        return new Expression(AstCode.Nop, null, -1);
+    }
+
+    private static Expression neg(Expression arg) {
+        return new Expression(AstCode.Neg, null, -1, arg);
+    }
+
+    private static Block block(Expression... exprs) {
+        Block block = new Block();
+        block.getBody().addAll(Arrays.asList(exprs));
+        return block;
+    }
+
+    @Test
+    public void testRows() {
+        Expression a = leaf(), b = leaf();
+        Expression p1 = neg(a), p2 = neg(a);
+        Expression add = new Expression(AstCode.Add, null, -1, b, a);
+        Expression dup = new Expression(AstCode.Add, null, -1, b, b);
+        Inf.BACKLINK.annotate(block(p1, add, p2, dup));
+        assertEquals(Arrays.asList(p1, add, p2), new ArrayList<>(Inf.BACKLINK.findUsages(a)));
+        // duplicate usages are stored once
+        assertEquals(Arrays.asList(add, dup), new ArrayList<>(Inf.BACKLINK.findUsages(b)));
+        assertEquals(2, Inf.BACKLINK.findUsages(b).size());
+        assertTrue(Inf.BACKLINK.findUsages(p1).isEmpty());
+    }
+
+    @Test
+    public void testLongRow() {
+        Expression a = leaf();
+        List<Expression> users = new ArrayList<>();
+        List<Expression> exprs = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Expression user = new Expression(AstCode.Add, null, -1, a, a);
+            users.add(user);
+            exprs.add(user);
+            // the same usage once again
+            exprs.add(user);
+        }
+        Inf.BACKLINK.annotate(block(exprs.toArray(new Expression[0])));
+        Set<Expression> usages = Inf.BACKLINK.findUsages(a);
+        assertEquals(users.size(), usages.size());
+        assertEquals(users, new ArrayList<>(usages));
+    }
+
+    @Test
+    public void testChained() {
+        Expression a = leaf();
+        Expression outer = neg(a);
+        Inf.BACKLINK.annotate(block(outer));
+        // e.g. lambda body annotated later
+        Expression inner1 = neg(a), inner2 = neg(a);
+        Inf.BACKLINK.annotate(block(inner1, inner2));
+        Set<Expression> usages = Inf.BACKLINK.findUsages(a);
+        assertEquals(3, usages.size());
+        assertEquals(Arrays.asList(inner1, inner2, outer), new ArrayList<>(usages));
+        assertTrue(usages.contains(outer));
+        try {
+            usages.add(leaf());
+            fail("Usages are modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016 HuntBugs contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.flow;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestPersistentMap {
+    // Small key range with colliding hash codes to exercise collision nodes
+    private static Integer key(Random r) {
+        return r.nextInt(200) * (r.nextBoolean() ? 1 : -1);
+    }
+
+    private static <K, V> Map<K, V> toMap(PersistentMap<K, V> map) {
+        Map<K, V> result = new HashMap<>();
+        map.forEach(result::put);
+        assertEquals(result.size(), map.size());
+        return result;
+    }
+
+    @Test
+    public void testPutRemove() {
+        Random r = new Random(1);
+        for (int iter = 0; iter < 50; iter++) {
+            Map<Object, Integer> expected = new HashMap<>();
+            PersistentMap<Object, Integer> map = PersistentMap.empty();
+            for (int i = 0; i < 300; i++) {
+                Object key = new CollidingKey(key(r));
+                if (r.nextInt(3) == 0) {
+                    expected.remove(key);
+                    map = map.remove(key);
+                } else {
+                    Integer value = r.nextInt(5);
+                    expected.put(key, value);
+                    map = map.put(key, value);
+                }
+                assertEquals(expected.get(key), map.get(key));
+            }
+            assertEquals(expected, toMap(map));
+        }
+    }
+
+    @Test
+    public void testMergeEquals() {
+        Random r = new Random(2);
+        for (int iter = 0; iter < 50; iter++) {
+            PersistentMap<Object, Integer> base = PersistentMap.empty();
+            for (int i = 0; i < 100; i++) {
+                base = base.put(new CollidingKey(key(r)), r.nextInt(5));
+            }
+            PersistentMap<Object, Integer> left = base, right = base;
+            for (int i = 0; i < 10; i++) {
+                left = left.put(new CollidingKey(key(r)), r.nextInt(5));
+                right = r.nextBoolean() ? right.put(new CollidingKey(key(r)), r.nextInt(5)) : right
+                        .remove(new CollidingKey(key(r)));
+            }
+            Map<Object, Integer> l = toMap(left), rt = toMap(right);
+            Map<Object, Integer> expected = new HashMap<>(l);
+            rt.forEach((k, v) -> expected.merge(k, v, Math::max));
+            assertEquals(expected, toMap(left.merge(right, (k, v1, v2) -> v1 == null ? v2 : v2 == null ? v1 : Math
+                    .max(v1, v2))));
+            assertEquals(l.equals(rt), left.equals(right, Objects::equals));
+            assertTrue(left.equals(toPersistent(l), Objects::equals));
+        }
+    }
+
+    @Test
+    public void testSharing() {
+        PersistentMap<Object, Integer> map = PersistentMap.empty();
+        for (int i = 0; i < 100; i++) {
+            map = map.put(i, i);
+        }
+        assertSame(map, map.put(5, map.get(5)));
+        assertSame(map, map.remove(1000));
+        assertSame(map, map.replaceAll((k, v) -> v));
+        assertSame(map, map.merge(map.put(5, 6), (k, v1, v2) -> v1));
+    }
+
+    private static PersistentMap<Object, Integer> toPersistent(Map<Object, Integer> map) {
+        PersistentMap<Object, Integer> result = PersistentMap.empty();
+        for (Map.Entry<Object, Integer> e : map.entrySet()) {
+            result = result.put(e.getKey(), e.getValue());
+        }
+        return result;
+    }
+
+    static class CollidingKey {
+        final int value;
+
+        CollidingKey(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int hashCode() {
+            return Math.abs(value);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof CollidingKey && ((CollidingKey) obj).value == value;
+        }
+    }
+}
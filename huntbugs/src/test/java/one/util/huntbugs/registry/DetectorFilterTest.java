@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016 HuntBugs contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.registry;
+
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import one.util.huntbugs.analysis.AnalysisOptions;
+import one.util.huntbugs.analysis.Context;
+import one.util.huntbugs.registry.anno.AstNodes;
+import one.util.huntbugs.registry.anno.AstVisitor;
+import one.util.huntbugs.registry.anno.ClassVisitor;
+import one.util.huntbugs.registry.anno.RequiredTypes;
+import one.util.huntbugs.registry.anno.WarningDefinition;
+import one.util.huntbugs.repo.Repository;
+import one.util.huntbugs.warning.Roles;
+import one.util.huntbugs.warning.Warning;
+import one.util.huntbugs.warning.WarningType;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.strobel.assembler.metadata.ClasspathTypeLoader;
+import com.strobel.assembler.metadata.CompositeTypeLoader;
+import com.strobel.assembler.metadata.MetadataSystem;
+import com.strobel.assembler.metadata.TypeDefinition;
+import com.strobel.decompiler.ast.AstCode;
+import com.strobel.decompiler.ast.Expression;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that detectors are not run on the classes or methods they cannot
+ * report anything for.
+ */
+public class DetectorFilterTest {
+    private static final String CATEGORY = "DetectorFilterTest";
+
+    private Context context;
+    private DetectorRegistry registry;
+    private MetadataSystem ms;
+
+    @Before
+    public void setUp() throws Exception {
+        AnalysisOptions options = new AnalysisOptions();
+        // only the detectors defined here may report anything
+        options.setRule(wt -> wt.getCategory().equals(CATEGORY) ? wt : new WarningType(wt.getCategory(), wt
+                .getName(), options.minScore - 1));
+        context = new Context(Repository.createNullRepository(), options);
+        registry = new DetectorRegistry(context);
+        String testClasses = Paths.get(getClass().getProtectionDomain().getCodeSource().getLocation().toURI())
+                .toString();
+        ms = new MetadataSystem(new CompositeTypeLoader(new ClasspathTypeLoader(testClasses),
+                new ClasspathTypeLoader()));
+    }
+
+    @Test
+    public void testRequiredTypes() {
+        assertTrue(registry.addDetector(ConcurrentUser.class));
+        registry.analyzeClass(lookUp(UsesConcurrent.class));
+        registry.analyzeClass(lookUp(UsesNothing.class));
+        List<Warning> warnings = warnings("ConcurrentUser");
+        assertEquals(1, warnings.size());
+        assertTrue(warnings.get(0).getClassName(), warnings.get(0).getClassName().endsWith("UsesConcurrent"));
+    }
+
+    @Test
+    public void testOpCodePrefilter() {
+        assertTrue(registry.addDetector(MonitorUser.class));
+        registry.analyzeClass(lookUp(UsesMonitor.class));
+        // the constructor is always decompiled, plain() is skipped
+        assertEquals(2, context.getStat("ValuesFlow"));
+        List<Warning> warnings = warnings("MonitorUser");
+        assertEquals(1, warnings.size());
+        assertEquals("sync", warnings.get(0).getAnnotation(Roles.METHOD).getName());
+    }
+
+    private TypeDefinition lookUp(Class<?> clazz) {
+        return ms.lookupType(clazz.getName().replace('.', '/')).resolve();
+    }
+
+    private List<Warning> warnings(String type) {
+        return context.warnings().filter(w -> w.getType().getName().equals(type)).collect(Collectors.toList());
+    }
+
+    @WarningDefinition(category = CATEGORY, name = "ConcurrentUser", maxScore = 80)
+    @RequiredTypes("java/util/concurrent/")
+    public static class ConcurrentUser {
+        @ClassVisitor
+        public void visit(ClassContext cc) {
+            cc.report("ConcurrentUser", 0);
+        }
+    }
+
+    @WarningDefinition(category = CATEGORY, name = "MonitorUser", maxScore = 80)
+    public static class MonitorUser {
+        @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = AstCode.MonitorEnter)
+        public void visit(Expression expr, MethodContext mc) {
+            mc.report("MonitorUser", 0, expr);
+        }
+    }
+
+    public static class UsesConcurrent {
+        final Object map = new ConcurrentHashMap<>();
+    }
+
+    public static class UsesNothing {
+        final Object map = new Object();
+    }
+
+    public static class UsesMonitor {
+        int value;
+
+        void sync() {
+            synchronized (this) {
+                value++;
+            }
+        }
+
+        void plain() {
+            value--;
+        }
+    }
+}
@@ -24,6 +24,8 @@ import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -55,6 +57,23 @@ public class DetectorRegistryTest {
         assertEquals(WARNINGS, getWarnings());
     }
 
+    @Test
+    public void sharedCatalog() throws Exception {
+        DetectorCatalog catalog = new DetectorCatalog(new AnalysisOptions());
+        Detector detector = catalog.getDetector(SharedDetector.class);
+        assertSame(detector, catalog.getDetector(SharedDetector.class));
+        assertNull(catalog.getDetector(DetectorRegistryTest.class));
+
+        Context otherContext = new Context(Repository.createNullRepository(), new AnalysisOptions());
+        DetectorRegistry first = new DetectorRegistry(context, catalog);
+        DetectorRegistry second = new DetectorRegistry(otherContext, catalog);
+        assertTrue(first.addDetector(SharedDetector.class));
+        assertTrue(second.addDetector(SharedDetector.class));
+        // warning types come from the same shared detector
+        assertSame(detector.getWarningType("SharedDetector"), first.getWarningType("SharedDetector"));
+        assertSame(detector.getWarningType("SharedDetector"), second.getWarningType("SharedDetector"));
+    }
+
     private long getWarnings() {
         return context.getStat("WarningTypes.Total");
     }
@@ -65,4 +84,9 @@ public class DetectorRegistryTest {
 
     }
 
-}
\ No newline at end of file
+    @WarningDefinition(category="DetectorRegistryTest", name="SharedDetector", maxScore=80)
+    private static class SharedDetector {
+
+    }
+
+}
@@ -28,6 +28,12 @@ public class TestNewGetClass {
         System.out.println(new TestNewGetClass().getClass());
     }
 
+    @AssertWarning("NewForGetClass")
+    public void testLambda() {
+        Runnable r = () -> System.out.println(new TestNewGetClass().getClass());
+        r.run();
+    }
+
     @AssertNoWarning("NewForGetClass")
     public void testOk() {
         TestNewGetClass x;
@@ -16,10 +16,12 @@
 package one.util.huntbugs.testdata;
 
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import one.util.huntbugs.registry.anno.AssertNoWarning;
+import one.util.huntbugs.registry.anno.AssertWarning;
 
 /**
  * @author Tagir Valeev
@@ -42,4 +44,33 @@ public class TestValuesFlow {
             mapTemp.put(key, e.getValue());
         }
     }
+
+    @AssertWarning("NullDereferenceGuaranteed")
+    void testNestedLoopsLambda(List<Runnable> list, String p) {
+        String s = null;
+        String a = "x", b = "x", c = "x", d = "x", e = "x", f = "x", g = "x", h = "x", i = "x", j = "x";
+        for (int x = 0; x < 10; x++) {
+            for (int y = 0; y < 10; y++) {
+                a = b; b = c; c = d; d = e; e = f; f = g; g = h; h = i; i = j; j = p;
+                list.add(() -> System.out.println(s.length()));
+            }
+        }
+        System.out.println(a);
+    }
+
+    @AssertNoWarning("Null*")
+    void testNestedLoopsParameter(String p, String q) {
+        if (p == null)
+            return;
+        String a = "x", b = "x", c = "x", d = "x", e = "x", f = "x", g = "x", h = "x", i = "x", j = "x";
+        for (int x = 0; x < 10; x++) {
+            for (int y = 0; y < 10; y++) {
+                a = b; b = c; c = d; d = e; e = f; f = g; g = h; h = i; i = j; j = q == null ? "" : q;
+                System.out.println(p.length());
+                if (y == 5)
+                    p = a;
+            }
+        }
+        System.out.println(p.length());
+    }
 }